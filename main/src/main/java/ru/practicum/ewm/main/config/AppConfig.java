@@ -6,6 +6,9 @@ import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateTimeSerializer;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -37,7 +40,12 @@ public class AppConfig {
     }
 
     @Bean
-    public StatisticClient statisticClient() {
-        return new StatisticRestTemplateClientImpl(serverUrl);
+    public StatisticClient statisticClient(ObjectProvider<MeterRegistry> meterRegistry) {
+        StatisticRestTemplateClientImpl client = new StatisticRestTemplateClientImpl(serverUrl);
+        meterRegistry.ifAvailable(registry -> FunctionCounter
+                .builder("stats.client.dropped-hits", client, StatisticRestTemplateClientImpl::getDroppedHits)
+                .description("Hits the statistic service shed with 429 on every attempt")
+                .register(registry));
+        return client;
     }
 }
@@ -31,7 +31,6 @@ import ru.practicum.ewm.main.user.model.User;
 import ru.practicum.ewm.main.user.repository.UserRepository;
 import ru.practicum.ewm.statistic.client.StatisticClient;
 import ru.practicum.ewm.statistic.dto.EndpointHitDto;
-import ru.practicum.ewm.statistic.dto.ViewStatsDto;
 
 import java.time.LocalDateTime;
 import java.util.Comparator;
@@ -329,25 +328,17 @@ public class EventServiceImpl implements EventService {
                 .collect(Collectors.toList());
         LocalDateTime earliestDate = sortedByCreatedASC.get(0).getCreatedOn().minusMinutes(1);
         LocalDateTime latestDate = LocalDateTime.now().withNano(0).plusMinutes(1);
-        List<String> uris = events.stream()
-                .map(event -> String.format("/events/%d", event.getId()))
+        List<Long> eventIds = events.stream()
+                .map(Event::getId)
                 .collect(Collectors.toList());
         boolean unique = true;
 
-        List<ViewStatsDto> stats = statisticClient.getViewStats(
+        return statisticClient.getEntityViews(
                 earliestDate,
                 latestDate,
-                uris,
+                eventIds,
                 unique
         );
-
-        return stats.stream()
-                .collect(Collectors.toMap(viewStatsDto -> {
-                    String uri = viewStatsDto.getUri();
-                    String[] uriElements = uri.split("/");
-
-                    return Long.parseLong(uriElements[uriElements.length - 1]);
-                }, ViewStatsDto::getHits));
     }
 
     private void setViewsToEventsDtos(List<? extends EventShortDto> eventDtos, Map<Long, Long> eventsViews) {
@@ -35,7 +35,6 @@ import ru.practicum.ewm.main.user.model.User;
 import ru.practicum.ewm.main.user.repository.UserRepository;
 import ru.practicum.ewm.statistic.client.StatisticClient;
 import ru.practicum.ewm.statistic.dto.EndpointHitDto;
-import ru.practicum.ewm.statistic.dto.ViewStatsDto;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
@@ -74,7 +73,7 @@ class EventServiceImplUnitTests {
     @Captor
     private ArgumentCaptor<LocalDateTime> endArgumentCaptor;
     @Captor
-    private ArgumentCaptor<List<String>> urisArgumentCaptor;
+    private ArgumentCaptor<List<Long>> eventIdsArgumentCaptor;
     @Captor
     private ArgumentCaptor<Boolean> uniqueArgumentCaptor;
     @Captor
@@ -242,7 +241,7 @@ class EventServiceImplUnitTests {
         }
 
         verify(statisticClient, times(1))
-                .getViewStats(startArgumentCaptor.capture(), any(), anyList(), anyBoolean());
+                .getEntityViews(startArgumentCaptor.capture(), any(), anyList(), anyBoolean());
 
         assertThat(startArgumentCaptor.getValue(), equalTo(event2CreatedOn.minusMinutes(1)));
     }
@@ -270,14 +269,14 @@ class EventServiceImplUnitTests {
         }
 
         verify(statisticClient, times(1))
-                .getViewStats(any(), endArgumentCaptor.capture(), anyList(), anyBoolean());
+                .getEntityViews(any(), endArgumentCaptor.capture(), anyList(), anyBoolean());
 
         assertThat(endArgumentCaptor.getValue().truncatedTo(ChronoUnit.SECONDS),
                 equalTo(LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS)));
     }
 
     @Test
-    void findUsersEvents_whenEventsFound_thenStatisticCalledWithUrisContainFoundEventsIds() {
+    void findUsersEvents_whenEventsFound_thenStatisticCalledWithFoundEventsIds() {
         int from = 0;
         int size = 10;
         Long userId = 0L;
@@ -303,10 +302,10 @@ class EventServiceImplUnitTests {
         }
 
         verify(statisticClient, times(1))
-                .getViewStats(any(), any(), urisArgumentCaptor.capture(), anyBoolean());
+                .getEntityViews(any(), any(), eventIdsArgumentCaptor.capture(), anyBoolean());
 
-        assertTrue(urisArgumentCaptor.getValue().contains(String.format("/events/%d", event1.getId())));
-        assertTrue(urisArgumentCaptor.getValue().contains(String.format("/events/%d", event2.getId())));
+        assertTrue(eventIdsArgumentCaptor.getValue().contains(event1.getId()));
+        assertTrue(eventIdsArgumentCaptor.getValue().contains(event2.getId()));
     }
 
     @Test
@@ -332,7 +331,7 @@ class EventServiceImplUnitTests {
         }
 
         verify(statisticClient, times(1))
-                .getViewStats(any(), any(), anyList(), uniqueArgumentCaptor.capture());
+                .getEntityViews(any(), any(), anyList(), uniqueArgumentCaptor.capture());
 
         assertTrue(uniqueArgumentCaptor.getValue());
     }
@@ -352,22 +351,12 @@ class EventServiceImplUnitTests {
         event1.setId(event1Id);
         event2.setCreatedOn(event2CreatedOn);
         event2.setId(event2Id);
-        ViewStatsDto event1Stat = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/1")
-                .hits(5L)
-                .build();
-        ViewStatsDto event2Stat = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/2")
-                .hits(10L)
-                .build();
         when(userRepository.userExists(userId))
                 .thenReturn(true);
         when(eventRepository.findUserEvents(userId, from, size))
                 .thenReturn(List.of(event1, event2));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(event2Stat, event1Stat));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(2L, 10L, 1L, 5L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(event1))
                     .thenReturn(TestDataProvider.getValidShortDto(event1Id));
@@ -396,17 +385,12 @@ class EventServiceImplUnitTests {
         event1.setId(event1Id);
         event2.setCreatedOn(event2CreatedOn);
         event2.setId(event2Id);
-        ViewStatsDto event2Stat = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/2")
-                .hits(10L)
-                .build();
         when(userRepository.userExists(userId))
                 .thenReturn(true);
         when(eventRepository.findUserEvents(userId, from, size))
                 .thenReturn(List.of(event1, event2));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(event2Stat));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(2L, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(event1))
                     .thenReturn(TestDataProvider.getValidShortDto(event1Id));
@@ -464,17 +448,17 @@ class EventServiceImplUnitTests {
         }
 
         verify(statisticClient, times(1))
-                .getViewStats(
+                .getEntityViews(
                         startArgumentCaptor.capture(),
                         endArgumentCaptor.capture(),
-                        urisArgumentCaptor.capture(),
+                        eventIdsArgumentCaptor.capture(),
                         uniqueArgumentCaptor.capture()
                 );
         assertThat(startArgumentCaptor.getValue(),
                 equalTo(foundEvent.getCreatedOn().minusMinutes(1)));
         assertThat(endArgumentCaptor.getValue(),
                 equalTo(LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS)));
-        assertThat(urisArgumentCaptor.getValue().get(0), equalTo(String.format("/events/%d", eventId)));
+        assertThat(eventIdsArgumentCaptor.getValue().get(0), equalTo(eventId));
         assertThat(uniqueArgumentCaptor.getValue(), equalTo(true));
     }
 
@@ -484,17 +468,12 @@ class EventServiceImplUnitTests {
         Long eventId = 1L;
         Event foundEvent = TestDataProvider.getValidNotSavedEvent(new User(), new Category());
         foundEvent.setId(eventId);
-        ViewStatsDto viewStatsDto = ViewStatsDto.builder()
-                .app("app")
-                .uri(String.format("/events/%d", eventId))
-                .hits(10L)
-                .build();
         when(userRepository.userExists(userId))
                 .thenReturn(true);
         when(eventRepository.findEventByInitiatorIdAndEventId(userId, eventId))
                 .thenReturn(Optional.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(eventId, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(foundEvent))
                     .thenReturn(TestDataProvider.getValidShortDto(foundEvent.getId()));
@@ -511,17 +490,12 @@ class EventServiceImplUnitTests {
         Long eventId = 1L;
         Event foundEvent = TestDataProvider.getValidNotSavedEvent(new User(), new Category());
         foundEvent.setId(eventId);
-        ViewStatsDto viewStatsDto = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/999")
-                .hits(10L)
-                .build();
         when(userRepository.userExists(userId))
                 .thenReturn(true);
         when(eventRepository.findEventByInitiatorIdAndEventId(userId, eventId))
                 .thenReturn(Optional.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(999L, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(foundEvent))
                     .thenReturn(TestDataProvider.getValidShortDto(foundEvent.getId()));
@@ -796,17 +770,17 @@ class EventServiceImplUnitTests {
         eventService.updateEventByUser(userId, eventId, updateRequest);
 
         verify(statisticClient, times(1))
-                .getViewStats(
+                .getEntityViews(
                         startArgumentCaptor.capture(),
                         endArgumentCaptor.capture(),
-                        urisArgumentCaptor.capture(),
+                        eventIdsArgumentCaptor.capture(),
                         uniqueArgumentCaptor.capture()
                 );
         assertThat(startArgumentCaptor.getValue(),
                 equalTo(foundEvent.getCreatedOn().minusMinutes(1)));
         assertThat(endArgumentCaptor.getValue(),
                 equalTo(LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS)));
-        assertThat(urisArgumentCaptor.getValue().get(0), equalTo(String.format("/events/%d", eventId)));
+        assertThat(eventIdsArgumentCaptor.getValue().get(0), equalTo(eventId));
         assertThat(uniqueArgumentCaptor.getValue(), equalTo(true));
     }
 
@@ -817,15 +791,10 @@ class EventServiceImplUnitTests {
         Event foundEvent = TestDataProvider.getValidNotSavedEvent(new User(), new Category());
         foundEvent.setId(eventId);
         UpdateEventUserRequestDto updateRequest = new UpdateEventUserRequestDto();
-        ViewStatsDto viewStatsDto = ViewStatsDto.builder()
-                .app("app")
-                .uri(String.format("/events/%d", eventId))
-                .hits(10L)
-                .build();
         when(eventRepository.findEventByInitiatorIdAndEventId(userId, eventId))
                 .thenReturn(Optional.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(eventId, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(foundEvent))
                     .thenReturn(TestDataProvider.getValidShortDto(foundEvent.getId()));
@@ -843,15 +812,10 @@ class EventServiceImplUnitTests {
         Event foundEvent = TestDataProvider.getValidNotSavedEvent(new User(), new Category());
         foundEvent.setId(eventId);
         UpdateEventUserRequestDto updateRequest = new UpdateEventUserRequestDto();
-        ViewStatsDto viewStatsDto = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/999")
-                .hits(10L)
-                .build();
         when(eventRepository.findEventByInitiatorIdAndEventId(userId, eventId))
                 .thenReturn(Optional.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(999L, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(foundEvent))
                     .thenReturn(TestDataProvider.getValidShortDto(foundEvent.getId()));
@@ -963,17 +927,17 @@ class EventServiceImplUnitTests {
         eventService.findEventsPublic(searchParams, ip);
 
         verify(statisticClient, times(1))
-                .getViewStats(
+                .getEntityViews(
                         startArgumentCaptor.capture(),
                         endArgumentCaptor.capture(),
-                        urisArgumentCaptor.capture(),
+                        eventIdsArgumentCaptor.capture(),
                         uniqueArgumentCaptor.capture()
                 );
         assertThat(startArgumentCaptor.getValue(),
                 equalTo(foundEvent.getCreatedOn().minusMinutes(1)));
         assertThat(endArgumentCaptor.getValue(),
                 equalTo(LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS)));
-        assertThat(urisArgumentCaptor.getValue().get(0), equalTo(String.format("/events/%d", eventId)));
+        assertThat(eventIdsArgumentCaptor.getValue().get(0), equalTo(eventId));
         assertThat(uniqueArgumentCaptor.getValue(), equalTo(true));
     }
 
@@ -984,15 +948,10 @@ class EventServiceImplUnitTests {
         PublicSearchParamsDto searchParams = PublicSearchParamsDto.builder().build();
         Event foundEvent = TestDataProvider.getValidNotSavedEvent(new User(), new Category());
         foundEvent.setId(eventId);
-        ViewStatsDto viewStatsDto = ViewStatsDto.builder()
-                .app("app")
-                .uri(String.format("/events/%d", eventId))
-                .hits(10L)
-                .build();
         when(eventRepository.findEventsPublic(searchParams))
                 .thenReturn(List.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(eventId, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(foundEvent))
                     .thenReturn(TestDataProvider.getValidShortDto(foundEvent.getId()));
@@ -1012,8 +971,8 @@ class EventServiceImplUnitTests {
         foundEvent.setId(eventId);
         when(eventRepository.findEventsPublic(searchParams))
                 .thenReturn(List.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of());
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of());
         when(rateDAO.getRatingsForEvents(List.of(foundEvent.getId())))
                 .thenReturn(Map.of(foundEvent.getId(), 50L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
@@ -1033,15 +992,10 @@ class EventServiceImplUnitTests {
         PublicSearchParamsDto searchParams = PublicSearchParamsDto.builder().build();
         Event foundEvent = TestDataProvider.getValidNotSavedEvent(new User(), new Category());
         foundEvent.setId(eventId);
-        ViewStatsDto viewStatsDto = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/999")
-                .hits(10L)
-                .build();
         when(eventRepository.findEventsPublic(searchParams))
                 .thenReturn(List.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(999L, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(foundEvent))
                     .thenReturn(TestDataProvider.getValidShortDto(foundEvent.getId()));
@@ -1061,8 +1015,8 @@ class EventServiceImplUnitTests {
         foundEvent.setId(eventId);
         when(eventRepository.findEventsPublic(searchParams))
                 .thenReturn(List.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of());
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of());
         when(rateDAO.getRatingsForEvents(List.of(foundEvent.getId())))
                 .thenReturn(Map.of());
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
@@ -1094,25 +1048,10 @@ class EventServiceImplUnitTests {
         event1.setId(event1Id);
         event2.setId(event2Id);
         event3.setId(event3Id);
-        ViewStatsDto viewStatsDto1 = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/1")
-                .hits(1L)
-                .build();
-        ViewStatsDto viewStatsDto2 = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/2")
-                .hits(10L)
-                .build();
-        ViewStatsDto viewStatsDto3 = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/3")
-                .hits(20L)
-                .build();
         when(eventRepository.findEventsPublic(searchParams))
                 .thenReturn(List.of(event1, event2, event3));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto1, viewStatsDto2, viewStatsDto3));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(1L, 1L, 2L, 10L, 3L, 20L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(event1))
                     .thenReturn(TestDataProvider.getValidShortDto(event1.getId()));
@@ -1149,8 +1088,8 @@ class EventServiceImplUnitTests {
         event3.setId(event3Id);
         when(eventRepository.findEventsPublic(searchParams))
                 .thenReturn(List.of(event1, event2, event3));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of());
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of());
         when(rateDAO.getRatingsForEvents(List.of(event1Id, event2Id, event3Id)))
                 .thenReturn(Map.of(event1Id, 10L,
                         event2Id, 20L,
@@ -1187,25 +1126,10 @@ class EventServiceImplUnitTests {
         event1.setId(event1Id);
         event2.setId(event2Id);
         event3.setId(event3Id);
-        ViewStatsDto viewStatsDto1 = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/1")
-                .hits(1L)
-                .build();
-        ViewStatsDto viewStatsDto2 = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/2")
-                .hits(10L)
-                .build();
-        ViewStatsDto viewStatsDto3 = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/3")
-                .hits(20L)
-                .build();
         when(eventRepository.findEventsPublic(searchParams))
                 .thenReturn(List.of(event1, event2, event3));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto1, viewStatsDto2, viewStatsDto3));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(1L, 1L, 2L, 10L, 3L, 20L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(event1))
                     .thenReturn(TestDataProvider.getValidShortDto(event1.getId()));
@@ -1241,8 +1165,8 @@ class EventServiceImplUnitTests {
         event3.setId(event3Id);
         when(eventRepository.findEventsPublic(searchParams))
                 .thenReturn(List.of(event1, event2, event3));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of());
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of());
         when(rateDAO.getRatingsForEvents(List.of(event1Id, event2Id, event3Id)))
                 .thenReturn(Map.of(event1Id, 10L,
                         event2Id, 20L,
@@ -1280,25 +1204,10 @@ class EventServiceImplUnitTests {
         event1.setId(event1Id);
         event2.setId(event2Id);
         event3.setId(event3Id);
-        ViewStatsDto viewStatsDto1 = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/1")
-                .hits(1L)
-                .build();
-        ViewStatsDto viewStatsDto2 = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/2")
-                .hits(10L)
-                .build();
-        ViewStatsDto viewStatsDto3 = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/3")
-                .hits(20L)
-                .build();
         when(eventRepository.findEventsPublic(searchParams))
                 .thenReturn(List.of(event1, event2, event3));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto1, viewStatsDto2, viewStatsDto3));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(1L, 1L, 2L, 10L, 3L, 20L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(event1))
                     .thenReturn(TestDataProvider.getValidShortDto(event1.getId()));
@@ -1333,8 +1242,8 @@ class EventServiceImplUnitTests {
         event3.setId(event3Id);
         when(eventRepository.findEventsPublic(searchParams))
                 .thenReturn(List.of(event1, event2, event3));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of());
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of());
         when(rateDAO.getRatingsForEvents(List.of(event1Id, event2Id, event3Id)))
                 .thenReturn(Map.of(event1Id, 10L,
                         event2Id, 20L,
@@ -1404,17 +1313,17 @@ class EventServiceImplUnitTests {
         eventService.findEventByIdPublic(eventId, ip);
 
         verify(statisticClient, times(1))
-                .getViewStats(
+                .getEntityViews(
                         startArgumentCaptor.capture(),
                         endArgumentCaptor.capture(),
-                        urisArgumentCaptor.capture(),
+                        eventIdsArgumentCaptor.capture(),
                         uniqueArgumentCaptor.capture()
                 );
         assertThat(startArgumentCaptor.getValue(),
                 equalTo(foundEvent.getCreatedOn().minusMinutes(1)));
         assertThat(endArgumentCaptor.getValue(),
                 equalTo(LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS)));
-        assertThat(urisArgumentCaptor.getValue().get(0), equalTo(String.format("/events/%d", eventId)));
+        assertThat(eventIdsArgumentCaptor.getValue().get(0), equalTo(eventId));
         assertThat(uniqueArgumentCaptor.getValue(), equalTo(true));
     }
 
@@ -1424,15 +1333,10 @@ class EventServiceImplUnitTests {
         String ip = "1.1.1.1";
         Event foundEvent = TestDataProvider.getValidNotSavedEvent(new User(), new Category());
         foundEvent.setId(eventId);
-        ViewStatsDto viewStatsDto = ViewStatsDto.builder()
-                .app("app")
-                .uri(String.format("/events/%d", eventId))
-                .hits(10L)
-                .build();
         when(eventRepository.findEventByIdAndState(eventId, EventState.PUBLISHED))
                 .thenReturn(Optional.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(eventId, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToFullDto(foundEvent))
                     .thenReturn(TestDataProvider.getValidFullDto(foundEvent.getId()));
@@ -1451,8 +1355,8 @@ class EventServiceImplUnitTests {
         foundEvent.setId(eventId);
         when(eventRepository.findEventByIdAndState(eventId, EventState.PUBLISHED))
                 .thenReturn(Optional.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of());
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of());
         when(rateDAO.getRatingForEvent(eventId))
                 .thenReturn(50L);
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
@@ -1471,15 +1375,10 @@ class EventServiceImplUnitTests {
         String ip = "1.1.1.1";
         Event foundEvent = TestDataProvider.getValidNotSavedEvent(new User(), new Category());
         foundEvent.setId(eventId);
-        ViewStatsDto viewStatsDto = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/999")
-                .hits(10L)
-                .build();
         when(eventRepository.findEventByIdAndState(eventId, EventState.PUBLISHED))
                 .thenReturn(Optional.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(999L, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToFullDto(foundEvent))
                     .thenReturn(TestDataProvider.getValidFullDto(foundEvent.getId()));
@@ -1498,8 +1397,8 @@ class EventServiceImplUnitTests {
         foundEvent.setId(eventId);
         when(eventRepository.findEventByIdAndState(eventId, EventState.PUBLISHED))
                 .thenReturn(Optional.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of());
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of());
         when(rateDAO.getRatingForEvent(eventId))
                 .thenReturn(0L);
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
@@ -1535,17 +1434,17 @@ class EventServiceImplUnitTests {
         eventService.findEventsAdmin(searchParams);
 
         verify(statisticClient, times(1))
-                .getViewStats(
+                .getEntityViews(
                         startArgumentCaptor.capture(),
                         endArgumentCaptor.capture(),
-                        urisArgumentCaptor.capture(),
+                        eventIdsArgumentCaptor.capture(),
                         uniqueArgumentCaptor.capture()
                 );
         assertThat(startArgumentCaptor.getValue(),
                 equalTo(foundEvent.getCreatedOn().minusMinutes(1)));
         assertThat(endArgumentCaptor.getValue(),
                 equalTo(LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS)));
-        assertThat(urisArgumentCaptor.getValue().get(0), equalTo(String.format("/events/%d", eventId)));
+        assertThat(eventIdsArgumentCaptor.getValue().get(0), equalTo(eventId));
         assertThat(uniqueArgumentCaptor.getValue(), equalTo(true));
     }
 
@@ -1555,15 +1454,10 @@ class EventServiceImplUnitTests {
         Long eventId = 1L;
         Event foundEvent = TestDataProvider.getValidNotSavedEvent(new User(), new Category());
         foundEvent.setId(eventId);
-        ViewStatsDto viewStatsDto = ViewStatsDto.builder()
-                .app("app")
-                .uri(String.format("/events/%d", eventId))
-                .hits(10L)
-                .build();
         when(eventRepository.findEventsAdmin(searchParams))
                 .thenReturn(List.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(eventId, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToFullDto(foundEvent))
                     .thenReturn(TestDataProvider.getValidFullDto(foundEvent.getId()));
@@ -1580,15 +1474,10 @@ class EventServiceImplUnitTests {
         Long eventId = 1L;
         Event foundEvent = TestDataProvider.getValidNotSavedEvent(new User(), new Category());
         foundEvent.setId(eventId);
-        ViewStatsDto viewStatsDto = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/999")
-                .hits(10L)
-                .build();
         when(eventRepository.findEventsAdmin(searchParams))
                 .thenReturn(List.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(999L, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToFullDto(foundEvent))
                     .thenReturn(TestDataProvider.getValidFullDto(foundEvent.getId()));
@@ -1867,17 +1756,17 @@ class EventServiceImplUnitTests {
         eventService.updateEventByAdmin(eventId, updateRequest);
 
         verify(statisticClient, times(1))
-                .getViewStats(
+                .getEntityViews(
                         startArgumentCaptor.capture(),
                         endArgumentCaptor.capture(),
-                        urisArgumentCaptor.capture(),
+                        eventIdsArgumentCaptor.capture(),
                         uniqueArgumentCaptor.capture()
                 );
         assertThat(startArgumentCaptor.getValue(),
                 equalTo(foundEvent.getCreatedOn().minusMinutes(1)));
         assertThat(endArgumentCaptor.getValue(),
                 equalTo(LocalDateTime.now().plusMinutes(1).truncatedTo(ChronoUnit.SECONDS)));
-        assertThat(urisArgumentCaptor.getValue().get(0), equalTo(String.format("/events/%d", eventId)));
+        assertThat(eventIdsArgumentCaptor.getValue().get(0), equalTo(eventId));
         assertThat(uniqueArgumentCaptor.getValue(), equalTo(true));
     }
 
@@ -1887,15 +1776,10 @@ class EventServiceImplUnitTests {
         Event foundEvent = TestDataProvider.getValidNotSavedEvent(new User(), new Category());
         foundEvent.setId(eventId);
         UpdateEventAdminRequestDto updateRequest = new UpdateEventAdminRequestDto();
-        ViewStatsDto viewStatsDto = ViewStatsDto.builder()
-                .app("app")
-                .uri(String.format("/events/%d", eventId))
-                .hits(10L)
-                .build();
         when(eventRepository.findEventById(eventId))
                 .thenReturn(Optional.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(eventId, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(foundEvent))
                     .thenReturn(TestDataProvider.getValidShortDto(foundEvent.getId()));
@@ -1912,15 +1796,10 @@ class EventServiceImplUnitTests {
         Event foundEvent = TestDataProvider.getValidNotSavedEvent(new User(), new Category());
         foundEvent.setId(eventId);
         UpdateEventAdminRequestDto updateRequest = new UpdateEventAdminRequestDto();
-        ViewStatsDto viewStatsDto = ViewStatsDto.builder()
-                .app("app")
-                .uri("/events/999")
-                .hits(10L)
-                .build();
         when(eventRepository.findEventById(eventId))
                 .thenReturn(Optional.of(foundEvent));
-        when(statisticClient.getViewStats(any(), any(), anyList(), anyBoolean()))
-                .thenReturn(List.of(viewStatsDto));
+        when(statisticClient.getEntityViews(any(), any(), anyList(), anyBoolean()))
+                .thenReturn(Map.of(999L, 10L));
         try (MockedStatic<EventMapper> eventMapperMock = Mockito.mockStatic(EventMapper.class)) {
             eventMapperMock.when(() -> EventMapper.mapToShortDto(foundEvent))
                     .thenReturn(TestDataProvider.getValidShortDto(foundEvent.getId()));
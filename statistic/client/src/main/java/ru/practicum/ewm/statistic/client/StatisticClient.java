@@ -5,9 +5,18 @@ import ru.practicum.ewm.statistic.dto.ViewStatsDto;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 public interface StatisticClient {
     void saveEndpointHit(EndpointHitDto endpointHitDto);
 
     List<ViewStatsDto> getViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+
+    /**
+     * Views of the entities whose ids the stats service extracts from their uris, e.g. {@code /events/{id}}.
+     * Entities without views are absent from the map.
+     */
+    Map<Long, Long> getEntityViews(LocalDateTime start, LocalDateTime end, List<Long> entityIds, boolean unique);
+
+    List<ViewStatsDto> getApproximateUniqueViewStats(LocalDateTime start, LocalDateTime end, List<String> uris);
 }
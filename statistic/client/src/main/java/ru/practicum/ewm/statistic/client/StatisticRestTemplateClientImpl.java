@@ -1,47 +1,170 @@
 package ru.practicum.ewm.statistic.client;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
 import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
 import org.springframework.web.util.DefaultUriBuilderFactory;
+import ru.practicum.ewm.statistic.dto.BinaryFormats;
 import ru.practicum.ewm.statistic.dto.EndpointHitDto;
+import ru.practicum.ewm.statistic.dto.EntityViewsDto;
 import ru.practicum.ewm.statistic.dto.Formats;
 import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsQueryDto;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
 
+@Slf4j
 @Component
 public class StatisticRestTemplateClientImpl implements StatisticClient {
     private static final String HIT_URI_PREFIX = "/hit";
     private static final String STATS_URI_PREFIX = "/stats";
+    private static final MediaType SMILE = MediaType.parseMediaType(BinaryFormats.SMILE_VALUE);
+    private static final String ACCEPT_POST = "Accept-Post";
+    // longer uri lists are posted to /stats/query instead of being put into the url
+    private static final int QUERY_BODY_MIN_URIS = 50;
+    // a hit shed with 429 is retried after Retry-After, within these bounds, and dropped beyond them
+    private static final int MAX_HIT_ATTEMPTS = 3;
+    private static final int MAX_PENDING_RETRIES = 1000;
+    private static final long MAX_RETRY_AFTER_SECONDS = 30;
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 1;
     private final RestTemplate restTemplate;
+    private final HttpEntity<Void> statsRequest;
+    private final boolean gzipRequests;
+    private final ScheduledExecutorService retryExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "statistic-hit-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger pendingRetries = new AtomicInteger();
+    private final AtomicLong droppedHits = new AtomicLong();
+    // switched on once the service shows it understands Smile
+    private volatile boolean binaryHits;
     DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Formats.DATE_TIME_PATTERN);
 
     public StatisticRestTemplateClientImpl(@Value("${statistic-service.url}") String serverUrl) {
+        this(serverUrl, false);
+    }
+
+    /**
+     * @param gzipRequests send request bodies gzipped, the service inflates them
+     */
+    public StatisticRestTemplateClientImpl(String serverUrl, boolean gzipRequests) {
+        this.gzipRequests = gzipRequests;
         this.restTemplate = new RestTemplateBuilder()
                 .uriTemplateHandler(new DefaultUriBuilderFactory(serverUrl))
                 .requestFactory(HttpComponentsClientHttpRequestFactory::new)
+                .additionalInterceptors(this::compressRequest, this::detectBinarySupport)
                 .build();
+        this.restTemplate.getMessageConverters()
+                .removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter);
+        this.restTemplate.getMessageConverters()
+                .add(new MappingJackson2SmileHttpMessageConverter(BinaryFormats.smileObjectMapper()));
+        HttpHeaders statsHeaders = new HttpHeaders();
+        statsHeaders.setAccept(List.of(SMILE, MediaType.APPLICATION_JSON));
+        this.statsRequest = new HttpEntity<>(statsHeaders);
     }
 
     @Override
     public void saveEndpointHit(EndpointHitDto endpointHitDto) {
+        saveEndpointHit(endpointHitDto, 1);
+    }
+
+    /**
+     * Hits dropped after the service kept answering 429 or while too many retries were pending.
+     */
+    public long getDroppedHits() {
+        return droppedHits.get();
+    }
+
+    private void saveEndpointHit(EndpointHitDto endpointHitDto, int attempt) {
+        boolean binary = binaryHits;
         RequestEntity<EndpointHitDto> requestEntity = RequestEntity
                 .post(HIT_URI_PREFIX)
+                .contentType(binary ? SMILE : MediaType.APPLICATION_JSON)
                 .body(endpointHitDto);
 
-        restTemplate.exchange(
-                requestEntity,
-                Void.class
-        );
+        try {
+            restTemplate.exchange(
+                    requestEntity,
+                    Void.class
+            );
+        } catch (HttpClientErrorException.UnsupportedMediaType e) {
+            if (!binary) {
+                throw e;
+            }
+            binaryHits = false;
+            saveEndpointHit(endpointHitDto, attempt);
+        } catch (HttpClientErrorException.TooManyRequests e) {
+            // a shed hit must not fail the request of the main service that recorded it
+            scheduleRetry(endpointHitDto, attempt, e.getResponseHeaders());
+        }
+    }
+
+    private void scheduleRetry(EndpointHitDto endpointHitDto, int attempt, HttpHeaders responseHeaders) {
+        if (attempt >= MAX_HIT_ATTEMPTS) {
+            dropHit(endpointHitDto, attempt);
+            return;
+        }
+        if (pendingRetries.incrementAndGet() > MAX_PENDING_RETRIES) {
+            pendingRetries.decrementAndGet();
+            dropHit(endpointHitDto, attempt);
+            return;
+        }
+        retryExecutor.schedule(() -> {
+            pendingRetries.decrementAndGet();
+            try {
+                saveEndpointHit(endpointHitDto, attempt + 1);
+            } catch (RuntimeException e) {
+                droppedHits.incrementAndGet();
+                log.warn("Retried hit {} {} dropped", endpointHitDto.getApp(), endpointHitDto.getUri(), e);
+            }
+        }, retryAfterSeconds(responseHeaders), TimeUnit.SECONDS);
+    }
+
+    private void dropHit(EndpointHitDto endpointHitDto, int attempts) {
+        droppedHits.incrementAndGet();
+        log.warn("Statistic service is overloaded, hit {} {} dropped after {} attempts",
+                endpointHitDto.getApp(), endpointHitDto.getUri(), attempts);
+    }
+
+    private static long retryAfterSeconds(HttpHeaders responseHeaders) {
+        String retryAfter = responseHeaders == null ? null : responseHeaders.getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter == null) {
+            return DEFAULT_RETRY_AFTER_SECONDS;
+        }
+        try {
+            return Math.min(MAX_RETRY_AFTER_SECONDS, Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            // an http-date is not worth parsing for a hit
+            return DEFAULT_RETRY_AFTER_SECONDS;
+        }
     }
 
     @Override
@@ -50,6 +173,9 @@ public class StatisticRestTemplateClientImpl implements StatisticClient {
             LocalDateTime end,
             List<String> uris,
             boolean unique) {
+        if (uris.size() >= QUERY_BODY_MIN_URIS) {
+            return queryViewStats(start, end, uris, unique);
+        }
         Map<String, Object> queryParams = Map.of(
                 "start", start.format(formatter),
                 "end", end.format(formatter),
@@ -61,10 +187,103 @@ public class StatisticRestTemplateClientImpl implements StatisticClient {
         return restTemplate.exchange(
                 STATS_URI_PREFIX + "?start={start}&end={end}&uris={uris}&unique={unique}",
                 HttpMethod.GET,
-                null,
+                statsRequest,
+                new ParameterizedTypeReference<List<ViewStatsDto>>() {
+                },
+                queryParams
+        ).getBody();
+    }
+
+    private List<ViewStatsDto> queryViewStats(
+            LocalDateTime start,
+            LocalDateTime end,
+            List<String> uris,
+            boolean unique) {
+        RequestEntity<ViewStatsQueryDto> requestEntity = RequestEntity
+                .post(STATS_URI_PREFIX + "/query")
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(SMILE, MediaType.APPLICATION_JSON)
+                .body(new ViewStatsQueryDto(start, end, uris, unique));
+
+        return restTemplate.exchange(
+                requestEntity,
+                new ParameterizedTypeReference<List<ViewStatsDto>>() {
+                }
+        ).getBody();
+    }
+
+    @Override
+    public Map<Long, Long> getEntityViews(
+            LocalDateTime start,
+            LocalDateTime end,
+            List<Long> entityIds,
+            boolean unique) {
+        Map<String, Object> queryParams = Map.of(
+                "start", start.format(formatter),
+                "end", end.format(formatter),
+                "ids", entityIds.stream().map(String::valueOf).collect(Collectors.joining(",")),
+                "unique", String.valueOf(unique)
+        );
+
+        EntityViewsDto views = restTemplate.exchange(
+                STATS_URI_PREFIX + "/entities?start={start}&end={end}&ids={ids}&unique={unique}",
+                HttpMethod.GET,
+                statsRequest,
+                EntityViewsDto.class,
+                queryParams
+        ).getBody();
+        Map<Long, Long> viewsById = new HashMap<>();
+        if (views != null) {
+            for (int i = 0; i < views.getIds().length; i++) {
+                viewsById.put(views.getIds()[i], views.getHits()[i]);
+            }
+        }
+        return viewsById;
+    }
+
+    @Override
+    public List<ViewStatsDto> getApproximateUniqueViewStats(
+            LocalDateTime start,
+            LocalDateTime end,
+            List<String> uris) {
+        Map<String, Object> queryParams = Map.of(
+                "start", start.format(formatter),
+                "end", end.format(formatter),
+                "uris", uris.toArray()
+        );
+
+        return restTemplate.exchange(
+                STATS_URI_PREFIX + "?start={start}&end={end}&uris={uris}&unique=true&approx=true",
+                HttpMethod.GET,
+                statsRequest,
                 new ParameterizedTypeReference<List<ViewStatsDto>>() {
                 },
                 queryParams
         ).getBody();
     }
+
+    private ClientHttpResponse compressRequest(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        if (!gzipRequests || body.length == 0) {
+            return execution.execute(request, body);
+        }
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 2 + 16);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        request.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return execution.execute(request, compressed.toByteArray());
+    }
+
+    private ClientHttpResponse detectBinarySupport(HttpRequest request, byte[] body,
+                                                   ClientHttpRequestExecution execution) throws IOException {
+        ClientHttpResponse response = execution.execute(request, body);
+        HttpHeaders headers = response.getHeaders();
+        String acceptPost = headers.getFirst(ACCEPT_POST);
+        if (SMILE.isCompatibleWith(headers.getContentType())
+                || acceptPost != null && acceptPost.contains(BinaryFormats.SMILE_VALUE)) {
+            binaryHits = true;
+        }
+        return response;
+    }
 }
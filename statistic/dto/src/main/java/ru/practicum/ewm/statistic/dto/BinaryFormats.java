@@ -0,0 +1,59 @@
+package ru.practicum.ewm.statistic.dto;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Jackson Smile encoding of the stats DTOs used between the client and the service. Timestamps are
+ * written as UTC epoch seconds instead of {@link Formats#DATE_TIME_PATTERN} strings.
+ */
+public class BinaryFormats {
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    private BinaryFormats() {
+    }
+
+    public static ObjectMapper smileObjectMapper() {
+        SimpleModule epochSeconds = new SimpleModule("EpochSecondsModule")
+                .addSerializer(LocalDateTime.class, new EpochSecondsSerializer())
+                .addDeserializer(LocalDateTime.class, new EpochSecondsDeserializer());
+        return new ObjectMapper(new SmileFactory())
+                .registerModule(epochSeconds)
+                .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    }
+
+    private static class EpochSecondsSerializer extends JsonSerializer<LocalDateTime> {
+        @Override
+        public void serialize(LocalDateTime value, JsonGenerator generator, SerializerProvider serializers)
+                throws IOException {
+            generator.writeNumber(value.toEpochSecond(ZoneOffset.UTC));
+        }
+    }
+
+    private static class EpochSecondsDeserializer extends JsonDeserializer<LocalDateTime> {
+        private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Formats.DATE_TIME_PATTERN);
+
+        @Override
+        public LocalDateTime deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            if (parser.currentToken() == JsonToken.VALUE_STRING) {
+                return LocalDateTime.parse(parser.getText(), formatter);
+            }
+            return LocalDateTime.ofEpochSecond(parser.getLongValue(), 0, ZoneOffset.UTC);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package ru.practicum.ewm.statistic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Views per entity id, {@code hits[i]} belonging to {@code ids[i]}. Entities without views are left out.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class EntityViewsDto {
+    private long[] ids;
+    private long[] hits;
+}
@@ -0,0 +1,16 @@
+package ru.practicum.ewm.statistic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HitBatchErrorDto {
+    private int index;
+    private String paramName;
+    private String error;
+}
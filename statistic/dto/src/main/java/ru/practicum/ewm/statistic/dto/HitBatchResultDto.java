@@ -0,0 +1,22 @@
+package ru.practicum.ewm.statistic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HitBatchResultDto {
+    private int received;
+    private int saved;
+    /**
+     * Items before this index are processed; less than {@code received} when saving failed midway.
+     */
+    private int committed;
+    private List<HitBatchErrorDto> errors;
+}
@@ -0,0 +1,22 @@
+package ru.practicum.ewm.statistic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class HitImportResultDto {
+    private int received;
+    private int imported;
+    private int rejected;
+    private int committed;
+    private long elapsedMillis;
+    private long rowsPerSecond;
+    private List<HitBatchErrorDto> errors;
+}
@@ -0,0 +1,20 @@
+package ru.practicum.ewm.statistic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * All-time counters of a uri that has been viewed since the requested cursor.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewStatsChangeDto {
+    private String app;
+    private String uri;
+    private Long hits;
+    private Long uniqueHits;
+}
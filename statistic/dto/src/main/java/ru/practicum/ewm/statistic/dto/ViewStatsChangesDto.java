@@ -0,0 +1,20 @@
+package ru.practicum.ewm.statistic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Counters changed after the requested cursor; {@code cursor} is passed as {@code since} of the next request.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewStatsChangesDto {
+    private long cursor;
+    private List<ViewStatsChangeDto> changes;
+}
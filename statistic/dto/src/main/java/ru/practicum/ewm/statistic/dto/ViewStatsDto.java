@@ -1,5 +1,6 @@
 package ru.practicum.ewm.statistic.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,4 +14,13 @@ public class ViewStatsDto {
     private String app;
     private String uri;
     private Long hits;
+    /**
+     * Set when {@code hits} is estimated: the range reaches into hits compacted into whole days.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean approximate;
+
+    public ViewStatsDto(String app, String uri, Long hits) {
+        this(app, uri, hits, null);
+    }
 }
@@ -0,0 +1,33 @@
+package ru.practicum.ewm.statistic.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.NotNull;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Body of {@code POST /stats/query}, for uri lists too long for the {@code GET /stats} query string.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewStatsQueryDto {
+
+    @NotNull
+    @JsonFormat(pattern = Formats.DATE_TIME_PATTERN)
+    private LocalDateTime start;
+
+    @NotNull
+    @JsonFormat(pattern = Formats.DATE_TIME_PATTERN)
+    private LocalDateTime end;
+
+    private List<String> uris;
+
+    private boolean unique;
+}
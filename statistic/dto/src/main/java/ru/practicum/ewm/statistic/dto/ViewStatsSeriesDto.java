@@ -0,0 +1,24 @@
+package ru.practicum.ewm.statistic.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Views of one uri per time bucket, one array per column. {@code timestamps} holds the UTC epoch second
+ * each bucket starts at; empty buckets are included with zero counts.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ViewStatsSeriesDto {
+    private String uri;
+    private String interval;
+    private List<Long> timestamps;
+    private List<Long> hits;
+    private List<Long> uniqueHits;
+}
@@ -0,0 +1,231 @@
+package ru.practicum.ewm.statistic.dto.ip;
+
+import lombok.experimental.UtilityClass;
+
+import java.util.Arrays;
+
+/**
+ * Parses textual IPv4 and IPv6 addresses without creating intermediate objects and packs them into
+ * fixed-width network-order bytes: 4 for IPv4 (and IPv4-mapped IPv6), 16 for IPv6.
+ */
+@UtilityClass
+public class IpAddressCodec {
+    public static final int IPV4_BYTES = 4;
+    public static final int IPV6_BYTES = 16;
+    public static final long INVALID = -1L;
+    private static final int IPV6_GROUPS = 8;
+
+    public boolean isValid(CharSequence address) {
+        return address != null && (parseIPv4(address) != INVALID || parseIPv6(address, null));
+    }
+
+    /**
+     * @return the address as an unsigned 32-bit value or {@link #INVALID}
+     */
+    public long parseIPv4(CharSequence address) {
+        return parseIPv4(address, 0, address.length());
+    }
+
+    /**
+     * Writes the 16 address bytes into {@code out} when it is not null.
+     *
+     * @return false if the address is not a valid IPv6 address
+     */
+    public boolean parseIPv6(CharSequence address, byte[] out) {
+        int length = address.length();
+        if (length < 2) {
+            return false;
+        }
+        if (out != null) {
+            Arrays.fill(out, 0, IPV6_BYTES, (byte) 0);
+        }
+        int groups = 0;
+        int compressAt = -1;
+        int i = 0;
+        if (address.charAt(0) == ':') {
+            if (address.charAt(1) != ':') {
+                return false;
+            }
+            compressAt = 0;
+            i = 2;
+        }
+        while (i < length) {
+            int groupStart = i;
+            int value = 0;
+            while (i < length && i - groupStart < 5) {
+                int digit = hexDigit(address.charAt(i));
+                if (digit < 0) {
+                    break;
+                }
+                value = (value << 4) | digit;
+                i++;
+            }
+            if (i < length && address.charAt(i) == '.') {
+                long ipv4 = parseIPv4(address, groupStart, length);
+                if (ipv4 == INVALID || groups > IPV6_GROUPS - 2) {
+                    return false;
+                }
+                writeGroup(out, groups++, (int) (ipv4 >>> 16));
+                writeGroup(out, groups++, (int) ipv4);
+                break;
+            }
+            int digits = i - groupStart;
+            if (digits == 0 || digits > 4 || groups == IPV6_GROUPS) {
+                return false;
+            }
+            writeGroup(out, groups++, value);
+            if (i == length) {
+                break;
+            }
+            if (address.charAt(i++) != ':' || i == length) {
+                return false;
+            }
+            if (address.charAt(i) == ':') {
+                if (compressAt >= 0) {
+                    return false;
+                }
+                compressAt = groups;
+                i++;
+            }
+        }
+        if (compressAt < 0) {
+            return groups == IPV6_GROUPS;
+        }
+        if (groups == IPV6_GROUPS) {
+            return false;
+        }
+        if (out != null) {
+            int shift = (IPV6_GROUPS - groups) * 2;
+            int compressedByte = compressAt * 2;
+            System.arraycopy(out, compressedByte, out, compressedByte + shift, groups * 2 - compressedByte);
+            Arrays.fill(out, compressedByte, compressedByte + shift, (byte) 0);
+        }
+        return true;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the address is neither IPv4 nor IPv6
+     */
+    public byte[] pack(CharSequence address) {
+        long ipv4 = parseIPv4(address);
+        if (ipv4 != INVALID) {
+            return toBytes((int) ipv4);
+        }
+        byte[] ipv6 = new byte[IPV6_BYTES];
+        if (!parseIPv6(address, ipv6)) {
+            throw new IllegalArgumentException("Wrong IP address format: " + address);
+        }
+        return isIPv4Mapped(ipv6) ? Arrays.copyOfRange(ipv6, IPV6_BYTES - IPV4_BYTES, IPV6_BYTES) : ipv6;
+    }
+
+    /**
+     * Formats packed bytes back to text; IPv6 is written in the RFC 5952 canonical form.
+     */
+    public String unpack(byte[] packed) {
+        if (packed.length == IPV4_BYTES) {
+            return (packed[0] & 0xff) + "." + (packed[1] & 0xff) + "." + (packed[2] & 0xff) + "." + (packed[3] & 0xff);
+        }
+        if (packed.length != IPV6_BYTES) {
+            throw new IllegalArgumentException("Packed IP address must have 4 or 16 bytes");
+        }
+        int zeroRunStart = -1;
+        int zeroRunLength = 0;
+        int group = 0;
+        while (group < IPV6_GROUPS) {
+            int runLength = 0;
+            while (group + runLength < IPV6_GROUPS && readGroup(packed, group + runLength) == 0) {
+                runLength++;
+            }
+            if (runLength > zeroRunLength && runLength > 1) {
+                zeroRunStart = group;
+                zeroRunLength = runLength;
+            }
+            group += Math.max(runLength, 1);
+        }
+        StringBuilder text = new StringBuilder(39);
+        for (group = 0; group < IPV6_GROUPS; group++) {
+            if (group == zeroRunStart) {
+                text.append("::");
+                group += zeroRunLength - 1;
+                continue;
+            }
+            if (text.length() > 0 && text.charAt(text.length() - 1) != ':') {
+                text.append(':');
+            }
+            text.append(Integer.toHexString(readGroup(packed, group)));
+        }
+        return text.toString();
+    }
+
+    public int toInt(byte[] packedIPv4) {
+        return (packedIPv4[0] & 0xff) << 24 | (packedIPv4[1] & 0xff) << 16
+                | (packedIPv4[2] & 0xff) << 8 | (packedIPv4[3] & 0xff);
+    }
+
+    public byte[] toBytes(int ipv4) {
+        return new byte[]{(byte) (ipv4 >>> 24), (byte) (ipv4 >>> 16), (byte) (ipv4 >>> 8), (byte) ipv4};
+    }
+
+    private long parseIPv4(CharSequence address, int from, int to) {
+        long result = 0;
+        int octets = 0;
+        int value = 0;
+        int digits = 0;
+        for (int i = from; i < to; i++) {
+            char c = address.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits > 0 && value == 0) {
+                    return INVALID;
+                }
+                value = value * 10 + (c - '0');
+                if (++digits > 3 || value > 255) {
+                    return INVALID;
+                }
+            } else if (c == '.' && digits > 0 && octets < 3) {
+                result = (result << 8) | value;
+                octets++;
+                value = 0;
+                digits = 0;
+            } else {
+                return INVALID;
+            }
+        }
+        if (digits == 0 || octets != 3) {
+            return INVALID;
+        }
+        return (result << 8) | value;
+    }
+
+    private int hexDigit(char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'a' && c <= 'f') {
+            return c - 'a' + 10;
+        }
+        if (c >= 'A' && c <= 'F') {
+            return c - 'A' + 10;
+        }
+        return -1;
+    }
+
+    private boolean isIPv4Mapped(byte[] ipv6) {
+        for (int i = 0; i < 10; i++) {
+            if (ipv6[i] != 0) {
+                return false;
+            }
+        }
+        return ipv6[10] == (byte) 0xff && ipv6[11] == (byte) 0xff;
+    }
+
+    private void writeGroup(byte[] out, int group, int value) {
+        if (out != null) {
+            out[group * 2] = (byte) (value >>> 8);
+            out[group * 2 + 1] = (byte) value;
+        }
+    }
+
+    private int readGroup(byte[] packed, int group) {
+        return (packed[group * 2] & 0xff) << 8 | (packed[group * 2 + 1] & 0xff);
+    }
+}
@@ -1,6 +1,6 @@
 package ru.practicum.ewm.statistic.dto.validator;
 
-import org.apache.commons.validator.routines.InetAddressValidator;
+import ru.practicum.ewm.statistic.dto.ip.IpAddressCodec;
 
 import javax.validation.ConstraintValidator;
 import javax.validation.ConstraintValidatorContext;
@@ -10,7 +10,6 @@ public class IPValidator implements ConstraintValidator<ValidateIP, String> {
     }
 
     public boolean isValid(String value, ConstraintValidatorContext constraintValidatorContext) {
-        InetAddressValidator validator = InetAddressValidator.getInstance();
-        return validator.isValid(value);
+        return IpAddressCodec.isValid(value);
     }
 }
@@ -0,0 +1,233 @@
+package ru.practicum.ewm.statistic.service.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.EqualsAndHashCode;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.EpochSeconds;
+import ru.practicum.ewm.statistic.service.repository.HitsDeletedEvent;
+import ru.practicum.ewm.statistic.service.repository.HitsExpiredEvent;
+import ru.practicum.ewm.statistic.service.repository.HitsSavedEvent;
+import ru.practicum.ewm.statistic.service.repository.UriTrie;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * LRU cache of {@code GET /stats} results. Ranges ending after now share one open-ended entry, so the
+ * sliding end time of the main service's queries keeps hitting it. A saved hit evicts only the entries
+ * for its uri (and the all-uri and matching prefix entries) whose range contains the hit's timestamp;
+ * compaction and retention evict the entries whose range starts before the expired hits end.
+ */
+@Component
+@Slf4j
+public class ViewStatsCache {
+    private static final long OPEN_END = Long.MAX_VALUE;
+    private final Clock clock;
+    private final boolean enabled;
+    private final int maxEntries;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter evictions;
+    private final Map<Key, List<ViewStatsDto>> entries;
+    private final Map<String, Set<Key>> keysByUri = new HashMap<>();
+    private final Map<String, Set<Key>> keysByUriPrefix = new HashMap<>();
+    private final Set<Key> allUrisKeys = new HashSet<>();
+    // bumped on every invalidation, a result computed across a bump is not stored
+    private final Map<String, Long> uriVersions = new HashMap<>();
+    private long allUrisVersion;
+
+    public ViewStatsCache(Clock clock,
+                          MeterRegistry meterRegistry,
+                          @Value("${statistic-service.cache.enabled:true}") boolean enabled,
+                          @Value("${statistic-service.cache.max-entries:10000}") int maxEntries) {
+        this.clock = clock;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.hits = meterRegistry.counter("stats.cache.requests", "result", "hit");
+        this.misses = meterRegistry.counter("stats.cache.requests", "result", "miss");
+        this.evictions = meterRegistry.counter("stats.cache.evictions");
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, List<ViewStatsDto>> eldest) {
+                if (size() <= ViewStatsCache.this.maxEntries) {
+                    return false;
+                }
+                unindex(eldest.getKey());
+                evictions.increment();
+                return true;
+            }
+        };
+        meterRegistry.gauge("stats.cache.size", this, ViewStatsCache::size);
+    }
+
+    public List<ViewStatsDto> get(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                  Supplier<List<ViewStatsDto>> loader) {
+        if (!enabled) {
+            return loader.get();
+        }
+        Key key = new Key(start, end, uris, unique, LocalDateTime.now(clock));
+        long version;
+        synchronized (this) {
+            List<ViewStatsDto> cached = entries.get(key);
+            if (cached != null) {
+                hits.increment();
+                return cached;
+            }
+            version = version(key);
+        }
+        misses.increment();
+        List<ViewStatsDto> stats = List.copyOf(loader.get());
+        synchronized (this) {
+            if (version == version(key)) {
+                entries.put(key, stats);
+                index(key);
+            }
+        }
+        return stats;
+    }
+
+    // after the recent windows, so a reload triggered by the invalidation already sees the new hits there
+    @Order(2)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onHitsSaved(HitsSavedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        for (EndpointHit endpointHit : event.getEndpointHits()) {
+            long timestamp = EpochSeconds.of(endpointHit.getTimestamp());
+            uriVersions.merge(endpointHit.getUri(), 1L, Long::sum);
+            allUrisVersion++;
+            Set<Key> uriKeys = keysByUri.get(endpointHit.getUri());
+            if (uriKeys != null) {
+                invalidate(uriKeys, timestamp);
+            }
+            for (Map.Entry<String, Set<Key>> prefixKeys : List.copyOf(keysByUriPrefix.entrySet())) {
+                if (endpointHit.getUri().startsWith(prefixKeys.getKey())) {
+                    invalidate(prefixKeys.getValue(), timestamp);
+                }
+            }
+            invalidate(allUrisKeys, timestamp);
+        }
+    }
+
+    @Order(2)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onHitsExpired(HitsExpiredEvent event) {
+        long before = EpochSeconds.of(event.getBefore());
+        for (Key key : List.copyOf(entries.keySet())) {
+            if (key.start < before) {
+                entries.remove(key);
+                unindex(key);
+            }
+        }
+        uriVersions.replaceAll((uri, version) -> version + 1);
+        allUrisVersion++;
+    }
+
+    @Order(2)
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onHitsDeleted(HitsDeletedEvent event) {
+        entries.clear();
+        keysByUri.clear();
+        keysByUriPrefix.clear();
+        allUrisKeys.clear();
+        uriVersions.replaceAll((uri, version) -> version + 1);
+        allUrisVersion++;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void invalidate(Set<Key> keys, long timestamp) {
+        for (Key key : List.copyOf(keys)) {
+            if (key.contains(timestamp)) {
+                entries.remove(key);
+                unindex(key);
+            }
+        }
+    }
+
+    private long version(Key key) {
+        if (key.uris == null || key.uris.stream().anyMatch(UriTrie::isPrefixPattern)) {
+            return allUrisVersion;
+        }
+        long version = 0;
+        for (String uri : key.uris) {
+            version += uriVersions.getOrDefault(uri, 0L);
+        }
+        return version;
+    }
+
+    private void index(Key key) {
+        if (key.uris == null) {
+            allUrisKeys.add(key);
+            return;
+        }
+        for (String uri : key.uris) {
+            keysByUriIndex(uri).computeIfAbsent(indexedUri(uri), u -> new HashSet<>()).add(key);
+        }
+    }
+
+    private void unindex(Key key) {
+        if (key.uris == null) {
+            allUrisKeys.remove(key);
+            return;
+        }
+        for (String uri : key.uris) {
+            Map<String, Set<Key>> index = keysByUriIndex(uri);
+            Set<Key> uriKeys = index.get(indexedUri(uri));
+            if (uriKeys != null) {
+                uriKeys.remove(key);
+                if (uriKeys.isEmpty()) {
+                    index.remove(indexedUri(uri));
+                }
+            }
+        }
+    }
+
+    private Map<String, Set<Key>> keysByUriIndex(String uri) {
+        return UriTrie.isPrefixPattern(uri) ? keysByUriPrefix : keysByUri;
+    }
+
+    private static String indexedUri(String uri) {
+        return UriTrie.isPrefixPattern(uri) ? UriTrie.prefixOf(uri) : uri;
+    }
+
+    @EqualsAndHashCode
+    private static class Key {
+        private final long start;
+        private final long end;
+        private final Set<String> uris;
+        private final boolean unique;
+
+        /**
+         * Hits are stored with whole seconds and counted when {@code start < timestamp < end}, so the
+         * bounds are widened to whole seconds without changing the result.
+         */
+        Key(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique, LocalDateTime now) {
+            this.start = EpochSeconds.of(start);
+            this.end = end.isAfter(now) ? OPEN_END : EpochSeconds.of(end) + (end.getNano() > 0 ? 1 : 0);
+            this.uris = uris == null || uris.isEmpty() ? null : Set.copyOf(uris);
+            this.unique = unique;
+        }
+
+        boolean contains(long timestamp) {
+            return start < timestamp && timestamp < end;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ru.practicum.ewm.statistic.service.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.ewm.statistic.service.limit.AdaptiveConcurrencyLimiter;
+import ru.practicum.ewm.statistic.service.limit.ConcurrencyLimitInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+
+/**
+ * Separate adaptive limits for single hits, bulk hit uploads, stats reads and streamed stats, so a storm
+ * on one endpoint class can't take every request thread and connection from the others.
+ */
+@Configuration
+public class ConcurrencyLimitConfig implements WebMvcConfigurer, MeterBinder {
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private final boolean enabled;
+    private final long retryAfterSeconds;
+    private final AdaptiveConcurrencyLimiter hitLimiter;
+    private final AdaptiveConcurrencyLimiter bulkLimiter;
+    private final AdaptiveConcurrencyLimiter statsLimiter;
+    private final AdaptiveConcurrencyLimiter streamLimiter;
+
+    public ConcurrencyLimitConfig(
+            @Value("${statistic-service.limit.enabled:false}") boolean enabled,
+            @Value("${statistic-service.limit.min-concurrency:4}") int minConcurrency,
+            @Value("${statistic-service.limit.hit-max-concurrency:200}") int hitMaxConcurrency,
+            @Value("${statistic-service.limit.bulk-max-concurrency:20}") int bulkMaxConcurrency,
+            @Value("${statistic-service.limit.stats-max-concurrency:50}") int statsMaxConcurrency,
+            @Value("${statistic-service.limit.stream-max-concurrency:10}") int streamMaxConcurrency,
+            @Value("${statistic-service.limit.latency-tolerance:2.0}") double latencyTolerance,
+            @Value("${statistic-service.limit.backoff-ratio:0.9}") double backoffRatio,
+            @Value("${statistic-service.limit.window-samples:20}") int windowSamples,
+            @Value("${statistic-service.limit.retry-after-seconds:1}") long retryAfterSeconds) {
+        this.enabled = enabled;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.hitLimiter = new AdaptiveConcurrencyLimiter("hit", minConcurrency, hitMaxConcurrency,
+                latencyTolerance, backoffRatio, windowSamples);
+        this.bulkLimiter = new AdaptiveConcurrencyLimiter("bulk", minConcurrency, bulkMaxConcurrency,
+                latencyTolerance, backoffRatio, windowSamples);
+        this.statsLimiter = new AdaptiveConcurrencyLimiter("stats", minConcurrency, statsMaxConcurrency,
+                latencyTolerance, backoffRatio, windowSamples);
+        this.streamLimiter = new AdaptiveConcurrencyLimiter("stream", minConcurrency, streamMaxConcurrency,
+                latencyTolerance, backoffRatio, windowSamples);
+    }
+
+    static boolean isStreamed(HttpServletRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        return "true".equals(request.getParameter("stream")) || accept != null && accept.contains(NDJSON_VALUE);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (!enabled) {
+            return;
+        }
+        registry.addInterceptor(new ConcurrencyLimitInterceptor(hitLimiter, retryAfterSeconds))
+                .addPathPatterns("/hit");
+        registry.addInterceptor(new ConcurrencyLimitInterceptor(bulkLimiter, retryAfterSeconds))
+                .addPathPatterns("/hits", "/admin/hits/import");
+        registry.addInterceptor(new ConcurrencyLimitInterceptor(statsLimiter, retryAfterSeconds,
+                        request -> !isStreamed(request)))
+                .addPathPatterns("/stats", "/stats/**");
+        registry.addInterceptor(new ConcurrencyLimitInterceptor(streamLimiter, retryAfterSeconds,
+                        ConcurrencyLimitConfig::isStreamed))
+                .addPathPatterns("/stats");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (AdaptiveConcurrencyLimiter limiter : List.of(hitLimiter, bulkLimiter, statsLimiter, streamLimiter)) {
+            Gauge.builder("stats.concurrency.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .tag("endpoint", limiter.getName())
+                    .register(registry);
+            Gauge.builder("stats.concurrency.in-flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .tag("endpoint", limiter.getName())
+                    .register(registry);
+            FunctionCounter.builder("stats.concurrency.rejected", limiter, AdaptiveConcurrencyLimiter::getRejected)
+                    .tag("endpoint", limiter.getName())
+                    .register(registry);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package ru.practicum.ewm.statistic.service.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import ru.practicum.ewm.statistic.service.repository.SqlDialect;
+
+import java.time.Clock;
+
+@Configuration
+@EnableScheduling
+public class StatisticServiceConfig {
+
+    @Bean
+    public SqlDialect sqlDialect(@Value("${spring.datasource.url}") String jdbcUrl) {
+        return SqlDialect.fromJdbcUrl(jdbcUrl);
+    }
+
+    @Bean
+    public Clock clock() {
+        return Clock.systemDefaultZone();
+    }
+}
@@ -0,0 +1,23 @@
+package ru.practicum.ewm.statistic.service.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import ru.practicum.ewm.statistic.dto.BinaryFormats;
+
+import java.util.List;
+
+/**
+ * Serves the DTOs as Smile when the client asks for {@link BinaryFormats#SMILE_VALUE}; JSON stays the
+ * default for everyone else.
+ */
+@Configuration
+public class WireFormatConfig implements WebMvcConfigurer {
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.removeIf(converter -> converter instanceof MappingJackson2SmileHttpMessageConverter);
+        converters.add(new MappingJackson2SmileHttpMessageConverter(BinaryFormats.smileObjectMapper()));
+    }
+}
@@ -0,0 +1,143 @@
+package ru.practicum.ewm.statistic.service.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.practicum.ewm.statistic.service.exception.PayloadTooLargeException;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Inflates request bodies sent with {@code Content-Encoding: gzip}. Reading past {@code max-inflated-bytes}
+ * of inflated body fails with {@link PayloadTooLargeException}, answered with 413, so a small compressed
+ * body can't expand without bound.
+ */
+@Component
+public class GzipRequestFilter extends OncePerRequestFilter {
+    private static final String GZIP = "gzip";
+    private final long maxInflatedBytes;
+
+    public GzipRequestFilter(@Value("${statistic-service.gzip.max-inflated-bytes:104857600}") long maxInflatedBytes) {
+        this.maxInflatedBytes = maxInflatedBytes;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        if (GZIP.equalsIgnoreCase(request.getHeader(HttpHeaders.CONTENT_ENCODING))) {
+            filterChain.doFilter(new GzipRequest(request, maxInflatedBytes), response);
+        } else {
+            filterChain.doFilter(request, response);
+        }
+    }
+
+    private static class GzipRequest extends HttpServletRequestWrapper {
+        private final long maxInflatedBytes;
+        private ServletInputStream inputStream;
+
+        GzipRequest(HttpServletRequest request, long maxInflatedBytes) {
+            super(request);
+            this.maxInflatedBytes = maxInflatedBytes;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new InflatingInputStream(new GZIPInputStream(super.getInputStream()), maxInflatedBytes);
+            }
+            return inputStream;
+        }
+
+        @Override
+        public int getContentLength() {
+            return -1;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return -1;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return isContentHeader(name) ? null : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            return isContentHeader(name) ? Collections.emptyEnumeration() : super.getHeaders(name);
+        }
+
+        private boolean isContentHeader(String name) {
+            return HttpHeaders.CONTENT_ENCODING.equalsIgnoreCase(name)
+                    || HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name);
+        }
+    }
+
+    private static class InflatingInputStream extends ServletInputStream {
+        private final InputStream inflater;
+        private final long maxInflatedBytes;
+        private long inflated;
+        private boolean finished;
+
+        InflatingInputStream(InputStream inflater, long maxInflatedBytes) {
+            this.inflater = inflater;
+            this.maxInflatedBytes = maxInflatedBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = inflater.read();
+            finished = value < 0;
+            count(finished ? 0 : 1);
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = inflater.read(buffer, offset, length);
+            finished = read < 0;
+            count(Math.max(0, read));
+            return read;
+        }
+
+        private void count(int bytes) {
+            inflated += bytes;
+            if (inflated > maxInflatedBytes) {
+                throw new PayloadTooLargeException("Inflated request body exceeds " + maxInflatedBytes + " bytes");
+            }
+        }
+
+        @Override
+        public boolean isFinished() {
+            return finished;
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException("Gzip request bodies are read blocking");
+        }
+
+        @Override
+        public void close() throws IOException {
+            inflater.close();
+        }
+    }
+}
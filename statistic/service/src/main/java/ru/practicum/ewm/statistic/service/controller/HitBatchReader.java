@@ -0,0 +1,238 @@
+package ru.practicum.ewm.statistic.service.controller;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.statistic.dto.EndpointHitDto;
+import ru.practicum.ewm.statistic.dto.Formats;
+import ru.practicum.ewm.statistic.dto.HitBatchErrorDto;
+import ru.practicum.ewm.statistic.dto.HitBatchResultDto;
+import ru.practicum.ewm.statistic.service.exception.InvalidParamException;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.ToIntFunction;
+
+/**
+ * Reads a bulk hit body item by item, validates every item with the {@link EndpointHitDto} constraints
+ * and hands valid items to the sink in chunks, so the whole body is never held in memory. The sink
+ * returns how many items of a chunk it accepted, filtered items are not counted as saved.
+ * Malformed or invalid items are reported in the result instead of failing the request; at most
+ * {@code max-reported-errors} of them are listed. Every chunk is committed on its own: when the sink
+ * fails, reading stops and {@code committed} tells from which item the body should be resent.
+ */
+@Component
+@Slf4j
+public class HitBatchReader {
+    private static final String CSV_HEADER = "app,uri,ip,timestamp";
+    private static final int CSV_FIELDS = 4;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+    private final int maxReportedErrors;
+    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Formats.DATE_TIME_PATTERN);
+
+    public HitBatchReader(ObjectMapper objectMapper,
+                          Validator validator,
+                          @Value("${statistic-service.bulk.chunk-size:1000}") int chunkSize,
+                          @Value("${statistic-service.bulk.max-reported-errors:1000}") int maxReportedErrors) {
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+        this.maxReportedErrors = maxReportedErrors;
+    }
+
+    public HitBatchResultDto readJsonArray(InputStream body, ToIntFunction<List<EndpointHitDto>> sink) throws IOException {
+        BatchState state = new BatchState(sink);
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new InvalidParamException("body", "Request body should be a JSON array of hits");
+            }
+            while (!state.isFailed() && parser.nextToken() != JsonToken.END_ARRAY) {
+                JsonNode item = objectMapper.readTree(parser);
+                try {
+                    state.accept(objectMapper.treeToValue(item, EndpointHitDto.class));
+                } catch (JsonProcessingException e) {
+                    state.reject("body", "Malformed hit: " + e.getOriginalMessage());
+                }
+            }
+        } catch (JsonParseException e) {
+            throw new InvalidParamException("body", "Malformed JSON array: " + e.getOriginalMessage());
+        }
+        return state.finish();
+    }
+
+    public HitBatchResultDto readNdjson(InputStream body, ToIntFunction<List<EndpointHitDto>> sink) throws IOException {
+        BatchState state = new BatchState(sink);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            while (!state.isFailed() && (line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    state.accept(objectMapper.readValue(line, EndpointHitDto.class));
+                } catch (JsonProcessingException e) {
+                    state.reject("body", "Malformed hit: " + e.getOriginalMessage());
+                }
+            }
+        }
+        return state.finish();
+    }
+
+    /**
+     * Reads {@code app,uri,ip,timestamp} lines; a header line with these names is skipped.
+     */
+    public HitBatchResultDto readCsv(InputStream body, ToIntFunction<List<EndpointHitDto>> sink) throws IOException {
+        BatchState state = new BatchState(sink);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String line;
+            boolean firstLine = true;
+            while (!state.isFailed() && (line = reader.readLine()) != null) {
+                if (line.isBlank() || (firstLine && line.equalsIgnoreCase(CSV_HEADER))) {
+                    firstLine = false;
+                    continue;
+                }
+                firstLine = false;
+                List<String> fields = parseCsvLine(line);
+                if (fields == null || fields.size() != CSV_FIELDS) {
+                    state.reject("body", "Expected CSV line " + CSV_HEADER);
+                    continue;
+                }
+                try {
+                    state.accept(EndpointHitDto.builder()
+                            .app(fields.get(0))
+                            .uri(fields.get(1))
+                            .ip(fields.get(2))
+                            .timestamp(LocalDateTime.parse(fields.get(3), formatter))
+                            .build());
+                } catch (DateTimeParseException e) {
+                    state.reject("timestamp", "Timestamp should match " + Formats.DATE_TIME_PATTERN);
+                }
+            }
+        }
+        return state.finish();
+    }
+
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>(CSV_FIELDS);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private class BatchState {
+        private final ToIntFunction<List<EndpointHitDto>> sink;
+        private final List<HitBatchErrorDto> errors = new ArrayList<>();
+        private List<EndpointHitDto> chunk = new ArrayList<>(chunkSize);
+        private int received;
+        private int saved;
+        private int committed;
+        private boolean failed;
+
+        BatchState(ToIntFunction<List<EndpointHitDto>> sink) {
+            this.sink = sink;
+        }
+
+        void accept(EndpointHitDto endpointHitDto) {
+            if (endpointHitDto == null) {
+                reject("body", "Hit should not be null");
+                return;
+            }
+            int index = received++;
+            Set<ConstraintViolation<EndpointHitDto>> violations = validator.validate(endpointHitDto);
+            if (!violations.isEmpty()) {
+                violations.forEach(violation -> addError(new HitBatchErrorDto(
+                        index,
+                        violation.getPropertyPath().toString(),
+                        violation.getMessage()
+                )));
+                return;
+            }
+            chunk.add(endpointHitDto);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void reject(String paramName, String error) {
+            addError(new HitBatchErrorDto(received++, paramName, error));
+        }
+
+        private void addError(HitBatchErrorDto error) {
+            if (errors.size() < maxReportedErrors) {
+                errors.add(error);
+            }
+        }
+
+        boolean isFailed() {
+            return failed;
+        }
+
+        HitBatchResultDto finish() {
+            flush();
+            return new HitBatchResultDto(received, saved, committed, errors);
+        }
+
+        private void flush() {
+            if (failed) {
+                return;
+            }
+            if (!chunk.isEmpty()) {
+                try {
+                    saved += sink.applyAsInt(chunk);
+                } catch (RuntimeException e) {
+                    log.error("Failed to save hits from item {}", committed, e);
+                    failed = true;
+                    // reported even past max-reported-errors, the client needs it to resume
+                    errors.add(new HitBatchErrorDto(committed, "body",
+                            "Hits from this item on were not saved: " + e.getMessage()));
+                    return;
+                }
+                chunk = new ArrayList<>(chunkSize);
+            }
+            committed = received;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ru.practicum.ewm.statistic.service.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.practicum.ewm.statistic.dto.HitBatchResultDto;
+import ru.practicum.ewm.statistic.dto.HitImportResultDto;
+import ru.practicum.ewm.statistic.service.service.StatisticService;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Backfill of historical hits, e.g. edge access logs. Hits bypass the ingestion mode and are
+ * loaded in chunks with {@code COPY} on PostgreSQL.
+ */
+@RestController
+@RequestMapping("/admin/hits/import")
+@Slf4j
+@RequiredArgsConstructor
+public class HitImportController {
+    private static final String CSV_VALUE = "text/csv";
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+
+    private final StatisticService statisticService;
+    private final HitBatchReader hitBatchReader;
+
+    @PostMapping(consumes = CSV_VALUE)
+    public ResponseEntity<HitImportResultDto> importCsv(InputStream body) throws IOException {
+        log.info("Start POST /admin/hits/import with CSV");
+        long startNanos = System.nanoTime();
+        HitBatchResultDto result = hitBatchReader.readCsv(body, statisticService::importEndpointHits);
+        return finish(result, startNanos);
+    }
+
+    @PostMapping(consumes = NDJSON_VALUE)
+    public ResponseEntity<HitImportResultDto> importNdjson(InputStream body) throws IOException {
+        log.info("Start POST /admin/hits/import with NDJSON");
+        long startNanos = System.nanoTime();
+        HitBatchResultDto result = hitBatchReader.readNdjson(body, statisticService::importEndpointHits);
+        return finish(result, startNanos);
+    }
+
+    private ResponseEntity<HitImportResultDto> finish(HitBatchResultDto result, long startNanos) {
+        long elapsedMillis = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000);
+        HitImportResultDto importResult = HitImportResultDto.builder()
+                .received(result.getReceived())
+                .imported(result.getSaved())
+                .rejected(result.getCommitted() - result.getSaved())
+                .committed(result.getCommitted())
+                .elapsedMillis(elapsedMillis)
+                .rowsPerSecond(result.getSaved() * 1000L / elapsedMillis)
+                .errors(result.getErrors())
+                .build();
+        log.info("Finish POST /admin/hits/import with imported: {}, rejected: {}, {} rows/s",
+                importResult.getImported(), importResult.getRejected(), importResult.getRowsPerSecond());
+        return ResponseEntity.status(StatisticServiceController.batchStatus(result)).body(importResult);
+    }
+}
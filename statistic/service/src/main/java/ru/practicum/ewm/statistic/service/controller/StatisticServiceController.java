@@ -3,16 +3,28 @@ package ru.practicum.ewm.statistic.service.controller;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.practicum.ewm.statistic.dto.BinaryFormats;
 import ru.practicum.ewm.statistic.dto.EndpointHitDto;
+import ru.practicum.ewm.statistic.dto.EntityViewsDto;
 import ru.practicum.ewm.statistic.dto.Formats;
+import ru.practicum.ewm.statistic.dto.HitBatchResultDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsChangesDto;
 import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsQueryDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsSeriesDto;
 import ru.practicum.ewm.statistic.service.service.StatisticService;
+import ru.practicum.ewm.statistic.service.service.ViewStatsStream;
 
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -21,15 +33,45 @@ import java.util.List;
 @Validated
 @RequiredArgsConstructor
 public class StatisticServiceController {
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    // tells clients they may send hits as Smile
+    private static final String ACCEPT_POST = "Accept-Post";
+    private static final String ACCEPTED_HIT_TYPES =
+            MediaType.APPLICATION_JSON_VALUE + ", " + BinaryFormats.SMILE_VALUE;
 
     private final StatisticService statisticService;
+    private final HitBatchReader hitBatchReader;
+    private final ViewStatsWriter viewStatsWriter;
 
     @PostMapping("/hit")
     public ResponseEntity<Void> saveEndpointHit(@RequestBody @Valid EndpointHitDto endpointHitDto) {
         log.info("Start POST /hit with {}", endpointHitDto);
         statisticService.saveEndpointHit(endpointHitDto);
         log.info("Finish POST /hit with {}", endpointHitDto);
-        return ResponseEntity.status(HttpStatus.CREATED).build();
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header(ACCEPT_POST, ACCEPTED_HIT_TYPES)
+                .build();
+    }
+
+    @PostMapping(value = "/hits", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<HitBatchResultDto> saveEndpointHits(InputStream body) throws IOException {
+        log.info("Start POST /hits with JSON array");
+        HitBatchResultDto result = hitBatchReader.readJsonArray(body, statisticService::saveEndpointHits);
+        log.info("Finish POST /hits with received: {}, saved: {}", result.getReceived(), result.getSaved());
+        return ResponseEntity.status(batchStatus(result)).body(result);
+    }
+
+    @PostMapping(value = "/hits", consumes = NDJSON_VALUE)
+    public ResponseEntity<HitBatchResultDto> saveEndpointHitsNdjson(InputStream body) throws IOException {
+        log.info("Start POST /hits with NDJSON stream");
+        HitBatchResultDto result = hitBatchReader.readNdjson(body, statisticService::saveEndpointHits);
+        log.info("Finish POST /hits with received: {}, saved: {}", result.getReceived(), result.getSaved());
+        return ResponseEntity.status(batchStatus(result)).body(result);
+    }
+
+    static HttpStatus batchStatus(HitBatchResultDto result) {
+        // the hits before committed are saved, the client resends the rest
+        return result.getCommitted() < result.getReceived() ? HttpStatus.SERVICE_UNAVAILABLE : HttpStatus.CREATED;
     }
 
     @GetMapping("/stats")
@@ -39,13 +81,130 @@ public class StatisticServiceController {
             @RequestParam(name = "end", required = true)
             @DateTimeFormat(pattern = Formats.DATE_TIME_PATTERN) LocalDateTime end,
             @RequestParam(name = "uris", required = false) List<String> uris,
+            @RequestParam(name = "unique", required = false, defaultValue = "false") boolean unique,
+            @RequestParam(name = "approx", required = false, defaultValue = "false") boolean approx
+    ) {
+        log.info("Start GET/stats with start: {}, end: {}, uris: {}, unique: {}, approx: {}",
+                start, end, uris, unique, approx);
+        List<ViewStatsDto> stats = unique && approx
+                ? statisticService.getApproximateUniqueViewStats(start, end, uris)
+                : statisticService.getViewStats(start, end, uris, unique);
+        log.info("Finish GET/stats with {} rows", stats.size());
+        return stats;
+    }
+
+    @PostMapping("/stats/query")
+    public List<ViewStatsDto> queryViewStats(@RequestBody @Valid ViewStatsQueryDto query) {
+        log.info("Start POST /stats/query with start: {}, end: {}, {} uris, unique: {}", query.getStart(),
+                query.getEnd(), query.getUris() != null ? query.getUris().size() : 0, query.isUnique());
+        List<ViewStatsDto> stats = statisticService.getViewStats(query.getStart(), query.getEnd(), query.getUris(),
+                query.isUnique());
+        log.info("Finish POST /stats/query with {} rows", stats.size());
+        return stats;
+    }
+
+    @GetMapping("/stats/entities")
+    public EntityViewsDto getEntityViews(
+            @RequestParam(name = "start", required = true)
+            @DateTimeFormat(pattern = Formats.DATE_TIME_PATTERN) LocalDateTime start,
+            @RequestParam(name = "end", required = true)
+            @DateTimeFormat(pattern = Formats.DATE_TIME_PATTERN) LocalDateTime end,
+            @RequestParam(name = "ids", required = true) List<Long> ids,
             @RequestParam(name = "unique", required = false, defaultValue = "false") boolean unique
     ) {
-        log.info("Start GET/stats with start: {}, end: {}, uris: {}, unique: {}",
-                start, end, uris, unique);
-        List<ViewStatsDto> stats = statisticService.getViewStats(start, end, uris, unique);
-        log.info("Finish GET/stats with {}", stats);
+        log.info("Start GET/stats/entities with start: {}, end: {}, ids: {}, unique: {}", start, end, ids, unique);
+        EntityViewsDto views = statisticService.getEntityViews(start, end, ids, unique);
+        log.info("Finish GET/stats/entities with {} entities", views.getIds().length);
+        return views;
+    }
+
+    @GetMapping("/stats/changes")
+    public ViewStatsChangesDto getViewStatsChanges(
+            @RequestParam(name = "since", required = false, defaultValue = "0") long since,
+            @RequestParam(name = "limit", required = false, defaultValue = "1000") int limit
+    ) {
+        log.info("Start GET/stats/changes with since: {}, limit: {}", since, limit);
+        ViewStatsChangesDto changes = statisticService.getViewStatsChanges(since, limit);
+        log.info("Finish GET/stats/changes with {} changes, cursor: {}", changes.getChanges().size(),
+                changes.getCursor());
+        return changes;
+    }
+
+    @GetMapping("/stats/top")
+    public List<ViewStatsDto> getTopViewStats(
+            @RequestParam(name = "start", required = true)
+            @DateTimeFormat(pattern = Formats.DATE_TIME_PATTERN) LocalDateTime start,
+            @RequestParam(name = "end", required = true)
+            @DateTimeFormat(pattern = Formats.DATE_TIME_PATTERN) LocalDateTime end,
+            @RequestParam(name = "app", required = false) String app,
+            @RequestParam(name = "n", required = false, defaultValue = "10") int n
+    ) {
+        log.info("Start GET/stats/top with start: {}, end: {}, app: {}, n: {}", start, end, app, n);
+        List<ViewStatsDto> stats = statisticService.getTopViewStats(start, end, app, n);
+        log.info("Finish GET/stats/top with {} rows", stats.size());
         return stats;
     }
 
+    @GetMapping("/stats/timeseries")
+    public ViewStatsSeriesDto getViewStatsSeries(
+            @RequestParam(name = "uri", required = true) String uri,
+            @RequestParam(name = "start", required = true)
+            @DateTimeFormat(pattern = Formats.DATE_TIME_PATTERN) LocalDateTime start,
+            @RequestParam(name = "end", required = true)
+            @DateTimeFormat(pattern = Formats.DATE_TIME_PATTERN) LocalDateTime end,
+            @RequestParam(name = "interval", required = false, defaultValue = "hour") String interval,
+            @RequestParam(name = "unique", required = false, defaultValue = "true") boolean unique
+    ) {
+        log.info("Start GET/stats/timeseries with uri: {}, start: {}, end: {}, interval: {}, unique: {}",
+                uri, start, end, interval, unique);
+        ViewStatsSeriesDto series = statisticService.getViewStatsSeries(start, end, uri, interval, unique);
+        log.info("Finish GET/stats/timeseries with {} buckets", series.getTimestamps().size());
+        return series;
+    }
+
+    @GetMapping(value = "/stats", params = "stream=true")
+    public ResponseEntity<StreamingResponseBody> streamViewStats(
+            @RequestParam(name = "start", required = true)
+            @DateTimeFormat(pattern = Formats.DATE_TIME_PATTERN) LocalDateTime start,
+            @RequestParam(name = "end", required = true)
+            @DateTimeFormat(pattern = Formats.DATE_TIME_PATTERN) LocalDateTime end,
+            @RequestParam(name = "uris", required = false) List<String> uris,
+            @RequestParam(name = "unique", required = false, defaultValue = "false") boolean unique,
+            @RequestParam(name = "approx", required = false, defaultValue = "false") boolean approx,
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept
+    ) {
+        boolean ndjson = accept != null && accept.contains(NDJSON_VALUE);
+        return streamingResponse(start, end, uris, unique, approx, ndjson);
+    }
+
+    @GetMapping(value = "/stats", produces = NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamViewStatsNdjson(
+            @RequestParam(name = "start", required = true)
+            @DateTimeFormat(pattern = Formats.DATE_TIME_PATTERN) LocalDateTime start,
+            @RequestParam(name = "end", required = true)
+            @DateTimeFormat(pattern = Formats.DATE_TIME_PATTERN) LocalDateTime end,
+            @RequestParam(name = "uris", required = false) List<String> uris,
+            @RequestParam(name = "unique", required = false, defaultValue = "false") boolean unique,
+            @RequestParam(name = "approx", required = false, defaultValue = "false") boolean approx
+    ) {
+        return streamingResponse(start, end, uris, unique, approx, true);
+    }
+
+    private ResponseEntity<StreamingResponseBody> streamingResponse(LocalDateTime start, LocalDateTime end,
+                                                                    List<String> uris, boolean unique,
+                                                                    boolean approx, boolean ndjson) {
+        log.info("Start streaming GET/stats with start: {}, end: {}, uris: {}, unique: {}, approx: {}, ndjson: {}",
+                start, end, uris, unique, approx, ndjson);
+        ViewStatsStream stats = statisticService.streamViewStats(start, end, uris, unique, approx);
+        StreamingResponseBody body = outputStream -> {
+            long rows = ndjson
+                    ? viewStatsWriter.writeNdjson(stats, outputStream)
+                    : viewStatsWriter.writeJsonArray(stats, outputStream);
+            log.info("Finish streaming GET/stats with {} rows", rows);
+        };
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.parseMediaType(NDJSON_VALUE) : MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
 }
@@ -0,0 +1,64 @@
+package ru.practicum.ewm.statistic.service.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.statistic.service.service.ViewStatsStream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+/**
+ * Writes stats rows to the response as they are read, either as one JSON array or as NDJSON lines.
+ */
+@Component
+@RequiredArgsConstructor
+public class ViewStatsWriter {
+    private final ObjectMapper objectMapper;
+
+    public long writeJsonArray(ViewStatsStream stats, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = createGenerator(outputStream)) {
+            generator.writeStartArray();
+            long rows = writeRows(stats, generator, false);
+            generator.writeEndArray();
+            return rows;
+        }
+    }
+
+    public long writeNdjson(ViewStatsStream stats, OutputStream outputStream) throws IOException {
+        try (JsonGenerator generator = createGenerator(outputStream)) {
+            return writeRows(stats, generator, true);
+        }
+    }
+
+    private JsonGenerator createGenerator(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory()
+                .createGenerator(outputStream)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null);
+        return generator;
+    }
+
+    private long writeRows(ViewStatsStream stats, JsonGenerator generator, boolean lineSeparated)
+            throws IOException {
+        long[] rows = new long[1];
+        try {
+            stats.forEach(row -> {
+                try {
+                    generator.writeObject(row);
+                    if (lineSeparated) {
+                        generator.writeRaw('\n');
+                    }
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+}
@@ -0,0 +1,8 @@
+package ru.practicum.ewm.statistic.service.exception;
+
+public class PayloadTooLargeException extends RuntimeException {
+
+    public PayloadTooLargeException(String message) {
+        super(message);
+    }
+}
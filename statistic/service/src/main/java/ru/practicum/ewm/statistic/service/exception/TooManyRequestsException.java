@@ -0,0 +1,13 @@
+package ru.practicum.ewm.statistic.service.exception;
+
+import lombok.Getter;
+
+public class TooManyRequestsException extends RuntimeException {
+    @Getter
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,178 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.StatisticServiceRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accepts hits into a bounded queue and persists them from a single background writer
+ * with batched inserts. A batch is flushed as soon as it reaches {@code batch-size} hits
+ * or {@code flush-interval-ms} after its first hit, whichever comes first.
+ * When the queue is full the hit is written synchronously by the caller, so nothing is dropped.
+ * A failed batch is saved hit by hit; hits failing on a database outage are retried every
+ * {@code retry-interval-ms} until saved or the writer stops; hits the database rejects for good are dropped.
+ * Bulk requests are already batched by the caller and bypass the queue.
+ */
+@Component
+@ConditionalOnProperty(name = "statistic-service.ingestion.mode", havingValue = "buffered")
+@Slf4j
+public class BufferedHitIngestor implements HitIngestor {
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+    private static final long POLL_TIMEOUT_MS = 100;
+    private final StatisticServiceRepository repository;
+    private final BlockingQueue<EndpointHit> queue;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final long retryIntervalMs;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public BufferedHitIngestor(StatisticServiceRepository repository,
+                               @Value("${statistic-service.ingestion.queue-capacity:10000}") int queueCapacity,
+                               @Value("${statistic-service.ingestion.batch-size:500}") int batchSize,
+                               @Value("${statistic-service.ingestion.flush-interval-ms:200}") long flushIntervalMs,
+                               @Value("${statistic-service.ingestion.retry-interval-ms:1000}") long retryIntervalMs) {
+        this.repository = repository;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.flushIntervalMs = flushIntervalMs;
+        this.retryIntervalMs = retryIntervalMs;
+        this.writer = new Thread(this::writeLoop, "hit-batch-writer");
+    }
+
+    @PostConstruct
+    public void start() {
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        writer.join(SHUTDOWN_TIMEOUT_MS);
+        if (!queue.isEmpty()) {
+            log.warn("Hit writer stopped with {} hits still queued, flushing them on shutdown thread", queue.size());
+            List<EndpointHit> rest = new ArrayList<>(queue.size());
+            queue.drainTo(rest);
+            flush(rest);
+        }
+    }
+
+    @Override
+    public void ingest(EndpointHit endpointHit) {
+        if (!running || !queue.offer(endpointHit)) {
+            log.warn("Hit queue is full or closed, saving {} synchronously", endpointHit);
+            repository.save(endpointHit);
+        }
+    }
+
+    @Override
+    public void ingestAll(List<EndpointHit> endpointHits) {
+        repository.saveAll(endpointHits);
+    }
+
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    private void writeLoop() {
+        while (running || !queue.isEmpty()) {
+            List<EndpointHit> batch = new ArrayList<>(batchSize);
+            try {
+                collectBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+            }
+        }
+    }
+
+    private void collectBatch(List<EndpointHit> batch) throws InterruptedException {
+        EndpointHit first = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return;
+        }
+        batch.add(first);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMs);
+        while (batch.size() < batchSize && running) {
+            queue.drainTo(batch, batchSize - batch.size());
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= batchSize || remaining <= 0) {
+                return;
+            }
+            long pollTimeout = Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(POLL_TIMEOUT_MS));
+            EndpointHit next = queue.poll(pollTimeout, TimeUnit.NANOSECONDS);
+            if (next != null) {
+                batch.add(next);
+            }
+        }
+    }
+
+    private void flush(List<EndpointHit> batch) {
+        try {
+            repository.saveAll(batch);
+            log.debug("Flushed batch of {} hits", batch.size());
+            return;
+        } catch (RuntimeException e) {
+            log.error("Failed to flush batch of {} hits, saving them one by one", batch.size(), e);
+        }
+        List<EndpointHit> pending = saveOneByOne(batch);
+        while (!pending.isEmpty()) {
+            if (!running || !pause(retryIntervalMs)) {
+                log.error("Hit writer stopped, {} unsaved hits are lost", pending.size());
+                return;
+            }
+            pending = saveOneByOne(pending);
+        }
+    }
+
+    /**
+     * @return the hits to retry, from the first one that failed on a database outage
+     */
+    private List<EndpointHit> saveOneByOne(List<EndpointHit> hits) {
+        for (int i = 0; i < hits.size(); i++) {
+            try {
+                repository.save(hits.get(i));
+            } catch (RuntimeException e) {
+                if (isRetryable(e)) {
+                    log.error("Failed to save {} hits, retrying in {} ms", hits.size() - i, retryIntervalMs, e);
+                    return hits.subList(i, hits.size());
+                }
+                log.error("Dropping hit {} rejected by the database", hits.get(i), e);
+            }
+        }
+        return List.of();
+    }
+
+    static boolean isRetryable(RuntimeException e) {
+        return e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException
+                || e instanceof DataAccessResourceFailureException;
+    }
+
+    private boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
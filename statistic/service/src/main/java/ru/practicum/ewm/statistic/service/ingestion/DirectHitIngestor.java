@@ -0,0 +1,26 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.StatisticServiceRepository;
+
+import java.util.List;
+
+@Component
+@ConditionalOnProperty(name = "statistic-service.ingestion.mode", havingValue = "direct", matchIfMissing = true)
+@RequiredArgsConstructor
+public class DirectHitIngestor implements HitIngestor {
+    private final StatisticServiceRepository repository;
+
+    @Override
+    public void ingest(EndpointHit endpointHit) {
+        repository.save(endpointHit);
+    }
+
+    @Override
+    public void ingestAll(List<EndpointHit> endpointHits) {
+        repository.saveAll(endpointHits);
+    }
+}
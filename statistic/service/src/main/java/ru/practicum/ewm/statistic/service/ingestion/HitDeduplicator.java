@@ -0,0 +1,94 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.time.Clock;
+import java.time.ZoneOffset;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Drops exact repeats of an (app, uri, ip) whose timestamps fall into the same {@code window-ms} bucket,
+ * as sent by refresh storms and retries. Seen keys are spread over lock-striped, insertion-ordered maps and
+ * expire two windows after they were first seen. A repeat has the visitor's ip, so unique views don't change.
+ */
+@Component
+@Order(1)
+public class HitDeduplicator implements HitFilter {
+    private static final int STRIPES = 64;
+    private final Clock clock;
+    private final boolean enabled;
+    private final long windowMs;
+    private final long ttlMs;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final Counter accepted;
+    private final Counter dropped;
+
+    public HitDeduplicator(Clock clock,
+                           MeterRegistry meterRegistry,
+                           @Value("${statistic-service.dedupe.enabled:false}") boolean enabled,
+                           @Value("${statistic-service.dedupe.window-ms:1000}") long windowMs) {
+        this.clock = clock;
+        this.enabled = enabled;
+        this.windowMs = windowMs;
+        this.ttlMs = 2 * windowMs;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.accepted = meterRegistry.counter("stats.ingestion.dedupe", "result", "accepted");
+        this.dropped = meterRegistry.counter("stats.ingestion.dedupe", "result", "dropped");
+        meterRegistry.gauge("stats.ingestion.dedupe.ratio", this, HitDeduplicator::getDropRatio);
+    }
+
+    @Override
+    public boolean accept(EndpointHit endpointHit) {
+        if (!enabled) {
+            return true;
+        }
+        long bucket = endpointHit.getTimestamp().toInstant(ZoneOffset.UTC).toEpochMilli() / windowMs;
+        Key key = new Key(endpointHit.getApp(), endpointHit.getUri(), endpointHit.getIp(), bucket);
+        Stripe stripe = stripes[Math.floorMod(key.hashCode(), STRIPES)];
+        long now = clock.millis();
+        boolean first;
+        synchronized (stripe) {
+            stripe.expire(now - ttlMs);
+            first = stripe.seen.putIfAbsent(key, now) == null;
+        }
+        (first ? accepted : dropped).increment();
+        return first;
+    }
+
+    /**
+     * Share of checked hits dropped as repeats since start.
+     */
+    public double getDropRatio() {
+        double checked = accepted.count() + dropped.count();
+        return checked == 0 ? 0 : dropped.count() / checked;
+    }
+
+    private static class Stripe {
+        // insertion ordered, so the eldest keys are expired first
+        private final Map<Key, Long> seen = new LinkedHashMap<>();
+
+        void expire(long seenBefore) {
+            Iterator<Long> firstSeen = seen.values().iterator();
+            while (firstSeen.hasNext() && firstSeen.next() < seenBefore) {
+                firstSeen.remove();
+            }
+        }
+    }
+
+    @lombok.Value
+    private static class Key {
+        String app;
+        String uri;
+        String ip;
+        long bucket;
+    }
+}
@@ -0,0 +1,14 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+/**
+ * Stage applied to every posted hit before it is ingested; filters run in their {@code @Order}.
+ */
+public interface HitFilter {
+
+    /**
+     * @return false to drop the hit
+     */
+    boolean accept(EndpointHit endpointHit);
+}
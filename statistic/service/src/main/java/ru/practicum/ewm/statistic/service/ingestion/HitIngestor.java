@@ -0,0 +1,12 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.util.List;
+
+public interface HitIngestor {
+
+    void ingest(EndpointHit endpointHit);
+
+    void ingestAll(List<EndpointHit> endpointHits);
+}
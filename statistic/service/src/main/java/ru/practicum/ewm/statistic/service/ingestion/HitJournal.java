@@ -0,0 +1,309 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.practicum.ewm.statistic.dto.ip.IpAddressCodec;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.EpochSeconds;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only hit log of memory-mapped segment files. A position is {@code segment * segmentSize + offset},
+ * every hit is one {@code [length][crc32][payload]} record, and a zero length marks the unused tail of a
+ * rolled segment. Concurrent {@link #sync} calls share one {@code force()}, so fsyncs are grouped under
+ * load. Positions below the checkpoint have been applied and their segments are deleted.
+ */
+@Slf4j
+public class HitJournal implements Closeable {
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private static final String SEGMENT_PREFIX = "hits-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+    private final Path directory;
+    private final int segmentSize;
+    private final NavigableMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+    private final AtomicLong durable = new AtomicLong();
+    private final Object syncLock = new Object();
+    private long currentSegment;
+    private MappedByteBuffer current;
+    private long written;
+    private volatile long checkpoint;
+
+    public HitJournal(Path directory, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+        Path checkpointFile = directory.resolve(CHECKPOINT_FILE);
+        if (Files.exists(checkpointFile)) {
+            checkpoint = Long.parseLong(Files.readString(checkpointFile).trim());
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+                    long segment = Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+                            name.length() - SEGMENT_SUFFIX.length()));
+                    segments.put(segment, map(file));
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            currentSegment = checkpoint / segmentSize;
+            current = map(segmentFile(currentSegment));
+            segments.put(currentSegment, current);
+            written = checkpoint;
+        } else {
+            currentSegment = segments.lastKey();
+            current = segments.get(currentSegment);
+            written = recoverEnd(currentSegment, current);
+        }
+        durable.set(written);
+        log.info("Hit journal opened in {} with {} bytes to apply", directory, getPendingBytes());
+    }
+
+    /**
+     * Appends the hits as one unit: segments the batch rolls into are mapped before anything is written,
+     * and a failure while writing rewinds to the batch start, so neither the applier nor recovery sees
+     * a part of a batch the caller was told failed.
+     *
+     * @return the position after the appended hits, to be passed to {@link #sync}
+     */
+    public synchronized long append(List<EndpointHit> endpointHits) throws IOException {
+        List<byte[]> payloads = new ArrayList<>(endpointHits.size());
+        long end = written;
+        for (EndpointHit endpointHit : endpointHits) {
+            byte[] payload = encode(endpointHit);
+            if (HEADER_SIZE + payload.length > segmentSize) {
+                throw new IOException("Hit does not fit into a journal segment: " + endpointHit);
+            }
+            if (!fits(end, payload.length)) {
+                end = (end / segmentSize + 1) * segmentSize;
+            }
+            end += HEADER_SIZE + payload.length;
+            payloads.add(payload);
+        }
+        List<MappedByteBuffer> next = new ArrayList<>();
+        for (long segment = currentSegment + 1; segment <= (end - 1) / segmentSize; segment++) {
+            next.add(map(segmentFile(segment)));
+        }
+
+        long batchStart = written;
+        long batchSegment = currentSegment;
+        MappedByteBuffer batchBuffer = current;
+        try {
+            for (byte[] payload : payloads) {
+                if (written / segmentSize != currentSegment || !fits(written, payload.length)) {
+                    roll(next.remove(0));
+                }
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                current.position(offset(written));
+                current.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+                written += HEADER_SIZE + payload.length;
+            }
+        } catch (RuntimeException e) {
+            for (long segment = batchSegment + 1; segment <= currentSegment; segment++) {
+                clear(segments.remove(segment), 0);
+            }
+            currentSegment = batchSegment;
+            current = batchBuffer;
+            written = batchStart;
+            if (written / segmentSize == currentSegment) {
+                clear(current, offset(written));
+            }
+            throw new IOException("Failed to append hits to the journal", e);
+        }
+        return written;
+    }
+
+    /**
+     * Returns once everything before {@code position} is on disk.
+     */
+    public void sync(long position) {
+        if (durable.get() >= position) {
+            return;
+        }
+        synchronized (syncLock) {
+            if (durable.get() >= position) {
+                return;
+            }
+            MappedByteBuffer buffer;
+            long end;
+            synchronized (this) {
+                buffer = current;
+                end = written;
+            }
+            buffer.force();
+            durable.accumulateAndGet(end, Math::max);
+        }
+    }
+
+    /**
+     * Reads durable hits starting at {@code from} into {@code target}.
+     *
+     * @return the position after the last hit read
+     */
+    public long read(long from, int maxHits, List<EndpointHit> target) {
+        long position = from;
+        long limit = durable.get();
+        int read = 0;
+        while (read < maxHits && position < limit) {
+            ByteBuffer segment = segments.get(position / segmentSize).duplicate();
+            int offset = offset(position);
+            int length = offset + HEADER_SIZE <= segmentSize ? segment.getInt(offset) : 0;
+            if (length == 0) {
+                position = (position / segmentSize + 1) * segmentSize;
+                continue;
+            }
+            byte[] payload = new byte[length];
+            segment.position(offset + HEADER_SIZE);
+            segment.get(payload);
+            target.add(decode(payload));
+            position += HEADER_SIZE + length;
+            read++;
+        }
+        return position;
+    }
+
+    /**
+     * Persists that everything before {@code position} has been applied and deletes fully applied segments.
+     */
+    public void checkpoint(long position) throws IOException {
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.write(ByteBuffer.wrap(Long.toString(position).getBytes(StandardCharsets.US_ASCII)));
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+        checkpoint = position;
+        long applied = position / segmentSize;
+        for (Long segment : List.copyOf(segments.headMap(applied).keySet())) {
+            segments.remove(segment);
+            Files.deleteIfExists(segmentFile(segment));
+        }
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Bytes between the checkpoint and the durable end, including the unused tails of rolled segments.
+     */
+    public long getPendingBytes() {
+        return durable.get() - checkpoint;
+    }
+
+    @Override
+    public void close() {
+        sync(Long.MAX_VALUE);
+    }
+
+    // durable is advanced by sync once the whole batch is written, the rolled segment is already forced
+    private void roll(MappedByteBuffer next) {
+        current.force();
+        currentSegment++;
+        current = next;
+        segments.put(currentSegment, current);
+        written = currentSegment * segmentSize;
+    }
+
+    private boolean fits(long position, int payloadLength) {
+        return offset(position) + HEADER_SIZE + payloadLength <= segmentSize;
+    }
+
+    private static void clear(MappedByteBuffer buffer, int from) {
+        for (int i = from; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    private long recoverEnd(long segment, MappedByteBuffer buffer) {
+        int offset = 0;
+        ByteBuffer view = buffer.duplicate();
+        while (offset + HEADER_SIZE <= segmentSize) {
+            int length = view.getInt(offset);
+            if (length <= 0 || offset + HEADER_SIZE + length > segmentSize) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            view.position(offset + HEADER_SIZE);
+            view.get(payload);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != view.getInt(offset + Integer.BYTES)) {
+                log.warn("Torn record at offset {} of journal segment {}, discarding the tail", offset, segment);
+                break;
+            }
+            offset += HEADER_SIZE + length;
+        }
+        // a torn tail must not be mistaken for records once shorter ones are written over it
+        clear(buffer, offset);
+        buffer.force();
+        return segment * segmentSize + offset;
+    }
+
+    private MappedByteBuffer map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+    }
+
+    private Path segmentFile(long segment) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, segment, SEGMENT_SUFFIX));
+    }
+
+    private int offset(long position) {
+        return (int) (position % segmentSize);
+    }
+
+    private static byte[] encode(EndpointHit endpointHit) {
+        byte[] app = endpointHit.getApp().getBytes(StandardCharsets.UTF_8);
+        byte[] uri = endpointHit.getUri().getBytes(StandardCharsets.UTF_8);
+        byte[] ip = IpAddressCodec.pack(endpointHit.getIp());
+        ByteBuffer buffer = ByteBuffer.allocate(3 * Integer.BYTES + app.length + uri.length + ip.length + Long.BYTES);
+        buffer.putInt(app.length).put(app)
+                .putInt(uri.length).put(uri)
+                .putInt(ip.length).put(ip)
+                .putLong(EpochSeconds.of(endpointHit.getTimestamp()));
+        return buffer.array();
+    }
+
+    private static EndpointHit decode(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.wrap(payload);
+        String app = new String(readBytes(buffer), StandardCharsets.UTF_8);
+        String uri = new String(readBytes(buffer), StandardCharsets.UTF_8);
+        String ip = IpAddressCodec.unpack(readBytes(buffer));
+        return EndpointHit.builder()
+                .app(app)
+                .uri(uri)
+                .ip(ip)
+                .timestamp(EpochSeconds.toLocalDateTime(buffer.getLong()))
+                .build();
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getInt()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,186 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.statistic.dto.ip.IpAddressCodec;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.FlaggedHitRepository;
+import ru.practicum.ewm.statistic.service.sketch.HyperLogLog;
+import ru.practicum.ewm.statistic.service.sketch.SlidingCountMinSketch;
+
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks hits per ip over the last {@code window-seconds} in a {@link SlidingCountMinSketch} and flags the
+ * ones above {@code threshold}, e.g. of scrapers. The sketch only overestimates, so an ip it reports above
+ * the threshold becomes a candidate whose hits are then counted exactly, and only candidates with more than
+ * {@code threshold} exact hits in a window are flagged; at most {@code max-candidates} are counted at a time.
+ * The sketch is sized so that {@code expected-hits-per-window} hits overestimate an ip by less than the
+ * threshold. Flagged hits never reach {@code endpoint_hit}, so no stats count them. With {@code action=tag}
+ * they are kept apart in {@link FlaggedHitRepository}, buffered and written every {@code flush-interval-ms}
+ * or every {@code FLUSH_BATCH} hits; with {@code action=drop} only {@code stats.ingestion.ip-rate} counts them.
+ */
+@Component
+@Order(2)
+@Slf4j
+public class IpRateFilter implements HitFilter {
+    private static final int MIN_WIDTH = 1024;
+    private static final int MAX_WIDTH = 1 << 16;
+    private static final int DEPTH = 4;
+    private static final int SLOTS = 6;
+    private static final int FLUSH_BATCH = 1000;
+    private final Clock clock;
+    private final FlaggedHitRepository flaggedHitRepository;
+    private final boolean enabled;
+    private final long threshold;
+    private final long slotMillis;
+    private final int maxCandidates;
+    private final boolean drop;
+    private final SlidingCountMinSketch rates;
+    private final Map<String, ExactRate> candidates = new ConcurrentHashMap<>();
+    private final Counter accepted;
+    private final Counter flagged;
+    private List<EndpointHit> pendingFlagged = new ArrayList<>();
+
+    public IpRateFilter(Clock clock,
+                        MeterRegistry meterRegistry,
+                        FlaggedHitRepository flaggedHitRepository,
+                        @Value("${statistic-service.ip-rate.enabled:false}") boolean enabled,
+                        @Value("${statistic-service.ip-rate.window-seconds:60}") int windowSeconds,
+                        @Value("${statistic-service.ip-rate.threshold:600}") long threshold,
+                        @Value("${statistic-service.ip-rate.expected-hits-per-window:1000000}")
+                        long expectedHitsPerWindow,
+                        @Value("${statistic-service.ip-rate.max-candidates:10000}") int maxCandidates,
+                        @Value("${statistic-service.ip-rate.action:tag}") String action) {
+        this.clock = clock;
+        this.flaggedHitRepository = flaggedHitRepository;
+        this.enabled = enabled;
+        this.threshold = threshold;
+        this.slotMillis = Math.max(1, windowSeconds * 1000L / SLOTS);
+        this.maxCandidates = maxCandidates;
+        this.drop = "drop".equals(action.toLowerCase(Locale.ROOT));
+        this.rates = new SlidingCountMinSketch(width(expectedHitsPerWindow, threshold), DEPTH, SLOTS, slotMillis);
+        this.accepted = meterRegistry.counter("stats.ingestion.ip-rate", "result", "accepted");
+        this.flagged = meterRegistry.counter("stats.ingestion.ip-rate", "result", drop ? "dropped" : "tagged");
+    }
+
+    /**
+     * Count-Min overestimates by at most {@code e / width} of all counted hits with probability
+     * {@code 1 - e^-depth}.
+     */
+    static int width(long expectedHitsPerWindow, long threshold) {
+        double width = Math.ceil(Math.E * expectedHitsPerWindow / Math.max(1, threshold));
+        return (int) Math.min(MAX_WIDTH, Math.max(MIN_WIDTH, width));
+    }
+
+    @Override
+    public boolean accept(EndpointHit endpointHit) {
+        if (!enabled) {
+            return true;
+        }
+        long now = clock.millis();
+        long estimate = rates.add(HyperLogLog.hash(IpAddressCodec.pack(endpointHit.getIp())), now);
+        long rate = estimate > threshold ? countExactly(endpointHit.getIp(), now / slotMillis) : 0;
+        if (rate <= threshold) {
+            accepted.increment();
+            return true;
+        }
+        flagged.increment();
+        if (rate == threshold + 1) {
+            log.warn("Ip {} exceeded {} hits per window, its hits are {}", endpointHit.getIp(), threshold,
+                    drop ? "dropped" : "tagged");
+        }
+        if (!drop) {
+            tag(endpointHit);
+        }
+        return false;
+    }
+
+    @Scheduled(fixedDelayString = "${statistic-service.ip-rate.flush-interval-ms:1000}")
+    @PreDestroy
+    public void flushFlagged() {
+        List<EndpointHit> flushed;
+        synchronized (this) {
+            if (pendingFlagged.isEmpty()) {
+                return;
+            }
+            flushed = pendingFlagged;
+            pendingFlagged = new ArrayList<>();
+        }
+        try {
+            flaggedHitRepository.addFlagged(flushed);
+        } catch (RuntimeException e) {
+            log.warn("Failed to save {} flagged hits, they are only counted in the metric", flushed.size(), e);
+        }
+    }
+
+    private void tag(EndpointHit endpointHit) {
+        boolean full;
+        synchronized (this) {
+            pendingFlagged.add(endpointHit);
+            full = pendingFlagged.size() >= FLUSH_BATCH;
+        }
+        if (full) {
+            flushFlagged();
+        }
+    }
+
+    /**
+     * @return hits of the candidate ip in the window since it became a candidate, 0 when no more candidates
+     * can be counted
+     */
+    private long countExactly(String ip, long time) {
+        ExactRate rate = candidates.get(ip);
+        if (rate == null) {
+            if (candidates.size() >= maxCandidates) {
+                candidates.values().removeIf(candidate -> candidate.isIdle(time));
+                if (candidates.size() >= maxCandidates) {
+                    return 0;
+                }
+            }
+            rate = candidates.computeIfAbsent(ip, key -> new ExactRate());
+        }
+        return rate.add(time);
+    }
+
+    private static class ExactRate {
+        private final long[] counts = new long[SLOTS];
+        private final long[] slotTimes = new long[SLOTS];
+
+        synchronized long add(long time) {
+            int slot = (int) Math.floorMod(time, (long) SLOTS);
+            if (slotTimes[slot] != time) {
+                slotTimes[slot] = time;
+                counts[slot] = 0;
+            }
+            counts[slot]++;
+            long total = 0;
+            for (int i = 0; i < SLOTS; i++) {
+                if (slotTimes[i] > time - SLOTS) {
+                    total += counts[i];
+                }
+            }
+            return total;
+        }
+
+        synchronized boolean isIdle(long time) {
+            for (long slotTime : slotTimes) {
+                if (slotTime > time - SLOTS) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
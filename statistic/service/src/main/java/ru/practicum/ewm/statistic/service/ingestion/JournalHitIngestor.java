@@ -0,0 +1,185 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.StatisticServiceRepository;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Acknowledges hits once they are fsynced to a local {@link HitJournal}, so ingestion does not wait for
+ * the database and survives its outages. A background applier replays the journal into the database in
+ * batches and checkpoints after every saved batch. A batch failing on a database outage is retried until it
+ * is saved; a batch the database rejects is applied hit by hit, and the rejected hits are logged, moved to
+ * the {@code dead-letter} journal under the journal directory and checkpointed past. A crash between a save
+ * and its checkpoint replays that batch once more.
+ * When the journal itself can't be written the hit is saved synchronously, so nothing is dropped.
+ */
+@Component
+@ConditionalOnProperty(name = "statistic-service.ingestion.mode", havingValue = "journal")
+@Slf4j
+public class JournalHitIngestor implements HitIngestor {
+    private static final long SHUTDOWN_TIMEOUT_MS = 30_000;
+    private static final String DEAD_LETTER_DIR = "dead-letter";
+    private final StatisticServiceRepository repository;
+    private final Path directory;
+    private final int segmentSize;
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final long retryIntervalMs;
+    private final Thread applier;
+    private final AtomicLong deadLetterHits = new AtomicLong();
+    private HitJournal journal;
+    private HitJournal deadLetter;
+    private volatile boolean running = true;
+
+    public JournalHitIngestor(StatisticServiceRepository repository,
+                              @Value("${statistic-service.journal.dir:./hit-journal}") Path directory,
+                              @Value("${statistic-service.journal.segment-size:67108864}") int segmentSize,
+                              @Value("${statistic-service.ingestion.batch-size:500}") int batchSize,
+                              @Value("${statistic-service.ingestion.flush-interval-ms:200}") long pollIntervalMs,
+                              @Value("${statistic-service.journal.retry-interval-ms:1000}") long retryIntervalMs) {
+        this.repository = repository;
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.retryIntervalMs = retryIntervalMs;
+        this.applier = new Thread(this::applyLoop, "hit-journal-applier");
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        journal = new HitJournal(directory, segmentSize);
+        deadLetter = new HitJournal(directory.resolve(DEAD_LETTER_DIR), segmentSize);
+        applier.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        applier.join(SHUTDOWN_TIMEOUT_MS);
+        journal.close();
+        deadLetter.close();
+        if (journal.getPendingBytes() > 0) {
+            log.warn("Hit journal applier stopped with {} bytes left, they are applied on next start",
+                    journal.getPendingBytes());
+        }
+    }
+
+    @Override
+    public void ingest(EndpointHit endpointHit) {
+        ingestAll(List.of(endpointHit));
+    }
+
+    @Override
+    public void ingestAll(List<EndpointHit> endpointHits) {
+        long position;
+        try {
+            position = journal.append(endpointHits);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to append {} hits to the journal, saving them synchronously", endpointHits.size(), e);
+            repository.saveAll(endpointHits);
+            return;
+        }
+        journal.sync(position);
+    }
+
+    public long getPendingBytes() {
+        return journal.getPendingBytes();
+    }
+
+    /**
+     * Hits rejected by the database since start and moved to the dead-letter journal.
+     */
+    public long getDeadLetterHits() {
+        return deadLetterHits.get();
+    }
+
+    private void applyLoop() {
+        long position = journal.getCheckpoint();
+        while (running || journal.getPendingBytes() > 0) {
+            List<EndpointHit> batch = new ArrayList<>(batchSize);
+            long next = journal.read(position, batchSize, batch);
+            try {
+                if (!batch.isEmpty()) {
+                    applyBatch(batch, position, next);
+                }
+                if (next > position) {
+                    journal.checkpoint(next);
+                    position = next;
+                }
+                if (batch.isEmpty() && (!running || !pause(pollIntervalMs))) {
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                log.error("Failed to apply batch of {} journaled hits, retrying in {} ms",
+                        batch.size(), retryIntervalMs, e);
+                // hits applied one by one are checkpointed already
+                position = journal.getCheckpoint();
+                if (!running || !pause(retryIntervalMs)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void applyBatch(List<EndpointHit> batch, long from, long to) throws IOException {
+        try {
+            repository.saveAll(batch);
+            log.debug("Applied batch of {} journaled hits", batch.size());
+        } catch (RuntimeException e) {
+            if (BufferedHitIngestor.isRetryable(e)) {
+                throw e;
+            }
+            log.error("Journaled batch of {} hits rejected by the database, applying them one by one",
+                    batch.size(), e);
+            applyOneByOne(from, to);
+        }
+    }
+
+    private void applyOneByOne(long from, long to) throws IOException {
+        long position = from;
+        while (position < to) {
+            List<EndpointHit> hit = new ArrayList<>(1);
+            long next = journal.read(position, 1, hit);
+            if (next <= position) {
+                return;
+            }
+            if (!hit.isEmpty()) {
+                try {
+                    repository.saveAll(hit);
+                } catch (RuntimeException e) {
+                    if (BufferedHitIngestor.isRetryable(e)) {
+                        throw e;
+                    }
+                    log.error("Moving journaled hit {} rejected by the database to the dead-letter journal",
+                            hit.get(0), e);
+                    deadLetter.sync(deadLetter.append(hit));
+                    deadLetterHits.incrementAndGet();
+                }
+            }
+            journal.checkpoint(next);
+            position = next;
+        }
+    }
+
+    private boolean pause(long millis) {
+        try {
+            Thread.sleep(millis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
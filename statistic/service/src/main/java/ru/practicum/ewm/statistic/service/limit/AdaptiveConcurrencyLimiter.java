@@ -0,0 +1,93 @@
+package ru.practicum.ewm.statistic.service.limit;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * AIMD concurrency limit driven by request latency, adjusted once per window of {@code windowSamples}
+ * completed requests. The lowest window minimum is taken as the no-load latency; a window whose 90th
+ * percentile is above {@code latencyTolerance} times that shrinks the limit by {@code backoffRatio}
+ * once, otherwise the limit grows by one if at least half of it was in use during the window. Single
+ * slow requests thus neither shrink the limit nor compound into several back-offs.
+ * The no-load latency slowly drifts up so a permanently slower database resets the baseline.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final int BASELINE_DRIFT = 10;
+    private static final double PERCENTILE = 0.9;
+    @Getter
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double latencyTolerance;
+    private final double backoffRatio;
+    private final long[] window;
+    private int samples;
+    private double limit;
+    private int inFlight;
+    private int peakInFlight;
+    private long noLoadLatencyNanos;
+    private long rejected;
+
+    public AdaptiveConcurrencyLimiter(String name, int minLimit, int maxLimit, double latencyTolerance,
+                                      double backoffRatio, int windowSamples) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Concurrency limits should satisfy 1 <= min <= max");
+        }
+        if (windowSamples < 1) {
+            throw new IllegalArgumentException("Sampling window should hold at least one request");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTolerance = latencyTolerance;
+        this.backoffRatio = backoffRatio;
+        this.window = new long[windowSamples];
+        this.limit = Math.max(minLimit, maxLimit / 2);
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            rejected++;
+            return false;
+        }
+        inFlight++;
+        peakInFlight = Math.max(peakInFlight, inFlight);
+        return true;
+    }
+
+    public synchronized void release(long latencyNanos) {
+        inFlight--;
+        window[samples++] = latencyNanos;
+        if (samples < window.length) {
+            return;
+        }
+        Arrays.sort(window);
+        long windowMin = window[0];
+        long windowPercentile = window[(int) Math.ceil(window.length * PERCENTILE) - 1];
+        if (noLoadLatencyNanos == 0 || windowMin < noLoadLatencyNanos) {
+            noLoadLatencyNanos = windowMin;
+        } else {
+            noLoadLatencyNanos += (windowMin - noLoadLatencyNanos) / BASELINE_DRIFT;
+        }
+        if (windowPercentile > noLoadLatencyNanos * latencyTolerance) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+        } else if (peakInFlight * 2 >= (int) limit) {
+            limit = Math.min(maxLimit, limit + 1);
+        }
+        samples = 0;
+        peakInFlight = inFlight;
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+}
@@ -0,0 +1,58 @@
+package ru.practicum.ewm.statistic.service.limit;
+
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import ru.practicum.ewm.statistic.service.exception.TooManyRequestsException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.function.Predicate;
+
+/**
+ * Holds a slot of the limiter for the whole request, including the async part of streamed responses.
+ * Requests the predicate rejects pass through, so endpoints sharing a path can use separate limiters.
+ */
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final long retryAfterSeconds;
+    private final Predicate<HttpServletRequest> limited;
+
+    public ConcurrencyLimitInterceptor(AdaptiveConcurrencyLimiter limiter, long retryAfterSeconds) {
+        this(limiter, retryAfterSeconds, request -> true);
+    }
+
+    public ConcurrencyLimitInterceptor(AdaptiveConcurrencyLimiter limiter, long retryAfterSeconds,
+                                       Predicate<HttpServletRequest> limited) {
+        this.limiter = limiter;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.limited = limited;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (request.getAttribute(startAttribute()) != null || !limited.test(request)) {
+            return true;
+        }
+        if (!limiter.tryAcquire()) {
+            throw new TooManyRequestsException(
+                    String.format("Too many concurrent %s requests, limit: %d", limiter.getName(), limiter.getLimit()),
+                    retryAfterSeconds
+            );
+        }
+        request.setAttribute(startAttribute(), System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        Object start = request.getAttribute(startAttribute());
+        if (start != null) {
+            request.removeAttribute(startAttribute());
+            limiter.release(System.nanoTime() - (long) start);
+        }
+    }
+
+    private String startAttribute() {
+        return ConcurrencyLimitInterceptor.class.getName() + "." + limiter.getName();
+    }
+}
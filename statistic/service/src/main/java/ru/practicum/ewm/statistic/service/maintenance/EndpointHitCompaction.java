@@ -0,0 +1,51 @@
+package ru.practicum.ewm.statistic.service.maintenance;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.statistic.service.repository.HitCompactionRepository;
+import ru.practicum.ewm.statistic.service.repository.RollupGranularity;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+
+/**
+ * Folds raw hits older than {@code age-days} whole days into per (uri, day) rows and deletes them, one
+ * transaction per {@code batch-size} hits, so compaction never holds long locks on {@code endpoint_hit}.
+ */
+@Component
+@Slf4j
+public class EndpointHitCompaction {
+    private final HitCompactionRepository compactionRepository;
+    private final Clock clock;
+    private final int ageDays;
+    private final int batchSize;
+
+    public EndpointHitCompaction(HitCompactionRepository compactionRepository,
+                                 Clock clock,
+                                 @Value("${statistic-service.compaction.age-days:0}") int ageDays,
+                                 @Value("${statistic-service.compaction.batch-size:5000}") int batchSize) {
+        this.compactionRepository = compactionRepository;
+        this.clock = clock;
+        this.ageDays = ageDays;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${statistic-service.compaction.cron:0 30 3 * * *}")
+    public void compact() {
+        if (ageDays <= 0) {
+            return;
+        }
+        LocalDateTime cutoff = RollupGranularity.DAY.floor(LocalDateTime.now(clock)).minusDays(ageDays);
+        long compacted = 0;
+        int batch;
+        do {
+            batch = compactionRepository.compactBatch(cutoff, batchSize);
+            compacted += batch;
+        } while (batch == batchSize);
+        if (compacted > 0) {
+            log.info("Compacted {} raw hits before {}", compacted, cutoff);
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package ru.practicum.ewm.statistic.service.maintenance;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.statistic.service.repository.EpochSeconds;
+import ru.practicum.ewm.statistic.service.repository.HitsExpiredEvent;
+import ru.practicum.ewm.statistic.service.repository.SqlDialect;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Keeps monthly range partitions of {@code endpoint_hit} on PostgreSQL: creates the current and
+ * {@code months-ahead} upcoming partitions and drops partitions older than {@code retention-months}.
+ * Hits outside every monthly partition land in {@code endpoint_hit_default}; they are moved into the partition
+ * of their month once it is created. Expired months are trimmed from the rollups, sketches, compacted days and
+ * change log in the same pass, so no query still counts the dropped hits.
+ */
+@Component
+@Slf4j
+public class EndpointHitPartitionMaintenance {
+    private static final String PARTITION_PREFIX = "endpoint_hit_";
+    private static final DateTimeFormatter PARTITION_SUFFIX = DateTimeFormatter.ofPattern("'y'yyyy'm'MM");
+    private static final String DEFAULT_PARTITION = "endpoint_hit_default";
+    private static final List<String> BUCKETED_AGGREGATES = List.of("hit_rollup_minute", "hit_rollup_hour",
+            "hit_rollup_day", "hit_unique_sketch", "hit_compacted_day", "hit_flagged");
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SqlDialect sqlDialect;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final int monthsAhead;
+    private final int retentionMonths;
+
+    public EndpointHitPartitionMaintenance(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            SqlDialect sqlDialect,
+            ApplicationEventPublisher eventPublisher,
+            PlatformTransactionManager transactionManager,
+            Clock clock,
+            @Value("${statistic-service.partitioning.months-ahead:3}") int monthsAhead,
+            @Value("${statistic-service.partitioning.retention-months:0}") int retentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sqlDialect = sqlDialect;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+    }
+
+    public static String partitionName(YearMonth month) {
+        return PARTITION_PREFIX + month.format(PARTITION_SUFFIX);
+    }
+
+    public static Optional<YearMonth> partitionMonth(String partitionName) {
+        if (!partitionName.startsWith(PARTITION_PREFIX)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(YearMonth.parse(partitionName.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX));
+        } catch (RuntimeException e) {
+            return Optional.empty();
+        }
+    }
+
+    public static YearMonth currentMonth(Clock clock) {
+        // partition bounds are UTC epoch seconds, whatever the server zone is
+        return YearMonth.now(clock.withZone(ZoneOffset.UTC));
+    }
+
+    public static List<YearMonth> monthsToCreate(YearMonth current, int monthsAhead) {
+        return Stream.iterate(current, month -> month.plusMonths(1))
+                .limit(monthsAhead + 1L)
+                .collect(Collectors.toList());
+    }
+
+    public static List<String> partitionsToDrop(List<String> partitionNames, YearMonth current, int retentionMonths) {
+        if (retentionMonths <= 0) {
+            return List.of();
+        }
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        return partitionNames.stream()
+                .filter(name -> partitionMonth(name)
+                        .map(month -> month.isBefore(oldestKept))
+                        .orElse(false))
+                .collect(Collectors.toList());
+    }
+
+    @PostConstruct
+    public void init() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${statistic-service.partitioning.cron:0 0 3 * * *}")
+    public void maintainPartitions() {
+        if (sqlDialect != SqlDialect.POSTGRESQL || !isPartitioned()) {
+            return;
+        }
+        YearMonth current = currentMonth(clock);
+        List<String> partitions = findPartitions();
+        monthsToCreate(current, monthsAhead).stream()
+                .filter(month -> !partitions.contains(partitionName(month)))
+                .forEach(month -> transactionTemplate.executeWithoutResult(status -> createPartition(month)));
+        if (retentionMonths <= 0) {
+            return;
+        }
+        YearMonth oldestKept = current.minusMonths(retentionMonths);
+        LocalDateTime cutoff = oldestKept.atDay(1).atStartOfDay();
+        boolean expired = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+            List<String> expiredPartitions = partitionsToDrop(partitions, current, retentionMonths);
+            expiredPartitions.forEach(this::dropPartition);
+            int deleted = deleteExpiredFromDefault(oldestKept);
+            trimAggregates(cutoff);
+            return !expiredPartitions.isEmpty() || deleted > 0;
+        }));
+        if (expired) {
+            eventPublisher.publishEvent(new HitsExpiredEvent(cutoff));
+        }
+    }
+
+    private boolean isPartitioned() {
+        String query = "select count(*) from pg_partitioned_table p " +
+                "join pg_class c on c.oid = p.partrelid " +
+                "where c.relname = 'endpoint_hit'";
+
+        Integer count = jdbcTemplate.queryForObject(query, new MapSqlParameterSource(), Integer.class);
+        if (count == null || count == 0) {
+            log.warn("endpoint_hit is not partitioned, partition maintenance is skipped");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * PostgreSQL refuses to create a partition while the default partition holds rows of its range, so such rows
+     * are moved with the default partition detached. Any failure rolls the whole move back and is rethrown.
+     */
+    private void createPartition(YearMonth month) {
+        String partition = partitionName(month);
+        MapSqlParameterSource namedParams = new MapSqlParameterSource()
+                .addValue("from", monthStart(month))
+                .addValue("to", monthStart(month.plusMonths(1)));
+        String createQuery = String.format("create table if not exists %s partition of endpoint_hit " +
+                "for values from (%d) to (%d)", partition, monthStart(month), monthStart(month.plusMonths(1)));
+        String countQuery = "select count(*) from (select 1 from " + DEFAULT_PARTITION + " " +
+                "where timestamp >= :from and timestamp < :to limit 1) d";
+
+        Integer stranded = jdbcTemplate.queryForObject(countQuery, namedParams, Integer.class);
+        if (stranded == null || stranded == 0) {
+            jdbcTemplate.update(createQuery, new MapSqlParameterSource());
+            return;
+        }
+        jdbcTemplate.update("alter table endpoint_hit detach partition " + DEFAULT_PARTITION,
+                new MapSqlParameterSource());
+        jdbcTemplate.update(createQuery, new MapSqlParameterSource());
+        int moved = jdbcTemplate.update("insert into " + partition + " " +
+                "(hit_id, app_id, uri_id, ip, timestamp) overriding system value " +
+                "select hit_id, app_id, uri_id, ip, timestamp from " + DEFAULT_PARTITION + " " +
+                "where timestamp >= :from and timestamp < :to", namedParams);
+        jdbcTemplate.update("delete from " + DEFAULT_PARTITION + " where timestamp >= :from and timestamp < :to",
+                namedParams);
+        jdbcTemplate.update("alter table endpoint_hit attach partition " + DEFAULT_PARTITION + " default",
+                new MapSqlParameterSource());
+        log.info("Created partition {} and moved {} hits into it from the default partition", partition, moved);
+    }
+
+    private List<String> findPartitions() {
+        String query = "select c.relname from pg_inherits i " +
+                "join pg_class c on c.oid = i.inhrelid " +
+                "join pg_class p on p.oid = i.inhparent " +
+                "where p.relname = 'endpoint_hit'";
+
+        return jdbcTemplate.queryForList(query, new MapSqlParameterSource(), String.class);
+    }
+
+    private void dropPartition(String partitionName) {
+        log.info("Dropping expired partition {}", partitionName);
+        jdbcTemplate.update("drop table if exists " + partitionName, new MapSqlParameterSource());
+    }
+
+    private int deleteExpiredFromDefault(YearMonth oldestKept) {
+        String query = "delete from " + DEFAULT_PARTITION + " where timestamp < :cutoff";
+
+        int deleted = jdbcTemplate.update(query, new MapSqlParameterSource("cutoff", monthStart(oldestKept)));
+        if (deleted > 0) {
+            log.info("Deleted {} expired hits from default partition", deleted);
+        }
+        return deleted;
+    }
+
+    private void trimAggregates(LocalDateTime cutoff) {
+        MapSqlParameterSource namedParams = new MapSqlParameterSource()
+                .addValue("bucket", EpochSeconds.of(cutoff))
+                .addValue("changedAt", EpochSeconds.of(cutoff) * 1000);
+        BUCKETED_AGGREGATES.forEach(table ->
+                jdbcTemplate.update("delete from " + table + " where bucket < :bucket", namedParams));
+        jdbcTemplate.update("delete from hit_change_log where changed_at < :changedAt", namedParams);
+    }
+
+    private static long monthStart(YearMonth month) {
+        return EpochSeconds.of(month.atDay(1).atStartOfDay());
+    }
+}
@@ -0,0 +1,26 @@
+package ru.practicum.ewm.statistic.service.maintenance;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.statistic.service.repository.HitChangeLogRepository;
+
+/**
+ * Periodically drops superseded change log entries, so the log grows with the number of viewed uris
+ * rather than with the number of saved batches.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class HitChangeLogCompaction {
+    private final HitChangeLogRepository changeLogRepository;
+
+    @Scheduled(cron = "${statistic-service.changes.compaction-cron:0 */10 * * * *}")
+    public void compact() {
+        int deleted = changeLogRepository.compact();
+        if (deleted > 0) {
+            log.info("Compacted {} superseded change log entries", deleted);
+        }
+    }
+}
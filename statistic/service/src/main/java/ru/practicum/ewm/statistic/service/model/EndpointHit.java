@@ -18,4 +18,6 @@ public class EndpointHit {
     private String uri;
     private String ip;
     private LocalDateTime timestamp;
+    private Integer appId;
+    private Integer uriId;
 }
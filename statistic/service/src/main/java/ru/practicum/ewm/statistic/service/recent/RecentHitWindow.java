@@ -0,0 +1,271 @@
+package ru.practicum.ewm.statistic.service.recent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ip.IpAddressCodec;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.EpochSeconds;
+import ru.practicum.ewm.statistic.service.repository.HitDictionaryRepository;
+import ru.practicum.ewm.statistic.service.repository.HitsDeletedEvent;
+import ru.practicum.ewm.statistic.service.repository.HitsSavedEvent;
+import ru.practicum.ewm.statistic.service.repository.StatisticServiceRepository;
+
+import javax.annotation.PostConstruct;
+import java.nio.ByteBuffer;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Per-minute hit counters and visitor sets of the last {@code minutes} minutes. Stats over ranges that end
+ * inside the window are answered from memory; only the partial edge minutes are read from the database, and
+ * the part of a non-unique range that starts before the window comes from {@link StatisticServiceRepository}.
+ */
+@Component
+@Slf4j
+public class RecentHitWindow {
+    private static final long MINUTE = 60;
+    // hits slightly ahead of the clock still get their own slot
+    private static final int FUTURE_MINUTES = 5;
+    private final StatisticServiceRepository repository;
+    private final HitDictionaryRepository dictionaryRepository;
+    private final Clock clock;
+    private final boolean enabled;
+    private final int minutes;
+    private final int rebuildThreads;
+    private final Slot[] slots;
+    private volatile boolean ready;
+
+    public RecentHitWindow(StatisticServiceRepository repository,
+                           HitDictionaryRepository dictionaryRepository,
+                           Clock clock,
+                           @Value("${statistic-service.recent-window.enabled:true}") boolean enabled,
+                           @Value("${statistic-service.recent-window.minutes:1440}") int minutes,
+                           @Value("${statistic-service.recent-window.rebuild-threads:4}") int rebuildThreads) {
+        this.repository = repository;
+        this.dictionaryRepository = dictionaryRepository;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.minutes = minutes;
+        this.rebuildThreads = rebuildThreads;
+        this.slots = new Slot[minutes + FUTURE_MINUTES];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long nowMinute = currentMinute();
+        long from = (nowMinute - minutes + 1) * MINUTE;
+        long to = (nowMinute + 1 + FUTURE_MINUTES) * MINUTE;
+        long chunkMinutes = Math.max(1, (to - from) / MINUTE / (rebuildThreads * 4L));
+        ExecutorService executor = Executors.newFixedThreadPool(rebuildThreads);
+        try {
+            List<CompletableFuture<Void>> scans = new ArrayList<>();
+            for (long chunkFrom = from; chunkFrom < to; chunkFrom += chunkMinutes * MINUTE) {
+                LocalDateTime scanFrom = EpochSeconds.toLocalDateTime(chunkFrom);
+                LocalDateTime scanTo = EpochSeconds.toLocalDateTime(Math.min(chunkFrom + chunkMinutes * MINUTE, to));
+                scans.add(CompletableFuture.runAsync(
+                        () -> repository.scanHits(scanFrom, scanTo, this::addHit), executor));
+            }
+            CompletableFuture.allOf(scans.toArray(CompletableFuture[]::new)).join();
+            ready = true;
+            log.info("Recent hit window of {} minutes rebuilt with {} threads", minutes, rebuildThreads);
+        } catch (CompletionException e) {
+            log.error("Failed to rebuild recent hit window, recent stats are served from the database", e);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Order(1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHitsSaved(HitsSavedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        for (EndpointHit endpointHit : event.getEndpointHits()) {
+            addHit(endpointHit.getAppId(), endpointHit.getUriId(), IpAddressCodec.pack(endpointHit.getIp()),
+                    EpochSeconds.of(endpointHit.getTimestamp()));
+        }
+    }
+
+    @Order(1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHitsDeleted(HitsDeletedEvent event) {
+        for (Slot slot : slots) {
+            synchronized (slot) {
+                slot.reset(-1);
+            }
+        }
+    }
+
+    /**
+     * @return empty when the range can't be answered from the window
+     */
+    public Optional<List<ViewStatsDto>> getViewStats(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                                     boolean unique) {
+        if (!ready) {
+            return Optional.empty();
+        }
+        long nowMinute = currentMinute();
+        long windowFrom = (nowMinute - minutes + 1) * MINUTE;
+        // hits are stored with whole seconds: timestamp > start and timestamp < end
+        long firstSecond = EpochSeconds.of(start) + 1;
+        long endSecond = EpochSeconds.of(end) + (end.getNano() > 0 ? 1 : 0);
+        long memoryFrom = Math.max(ceilMinute(firstSecond), windowFrom);
+        long memoryTo = Math.min(Math.floorDiv(endSecond, MINUTE) * MINUTE, (nowMinute + 1) * MINUTE);
+        if (memoryFrom >= memoryTo) {
+            return Optional.empty();
+        }
+        boolean olderPart = memoryFrom - firstSecond > MINUTE;
+        if (olderPart && unique) {
+            return Optional.empty();
+        }
+
+        Set<Integer> uriIds = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = new HashSet<>(dictionaryRepository.findUriIds(uris));
+            if (uriIds.isEmpty()) {
+                return Optional.of(List.of());
+            }
+        }
+        Map<Long, Visitors> visitors = new HashMap<>();
+        for (long minute = memoryFrom / MINUTE; minute < memoryTo / MINUTE; minute++) {
+            Slot slot = slots[slotIndex(minute)];
+            synchronized (slot) {
+                if (slot.minute == minute) {
+                    slot.collect(visitors, uriIds, unique);
+                }
+            }
+        }
+        if (!olderPart) {
+            scanInto(visitors, firstSecond, memoryFrom, uriIds, unique);
+        }
+        scanInto(visitors, memoryTo, endSecond, uriIds, unique);
+
+        Map<List<String>, Long> hits = new HashMap<>();
+        visitors.forEach((key, keyVisitors) -> hits.merge(
+                List.of(dictionaryRepository.getAppName(appId(key)), dictionaryRepository.getUri(uriId(key))),
+                unique ? keyVisitors.ips.size() : keyVisitors.hits,
+                Long::sum));
+        if (olderPart) {
+            repository.getViewStats(start, EpochSeconds.toLocalDateTime(memoryFrom), uris, false)
+                    .forEach(stats -> hits.merge(List.of(stats.getApp(), stats.getUri()), stats.getHits(), Long::sum));
+        }
+        return Optional.of(hits.entrySet().stream()
+                .map(entry -> new ViewStatsDto(entry.getKey().get(0), entry.getKey().get(1), entry.getValue()))
+                .sorted(Comparator.comparing(ViewStatsDto::getHits).reversed())
+                .collect(Collectors.toList()));
+    }
+
+    private void scanInto(Map<Long, Visitors> visitors, long from, long to, Set<Integer> uriIds, boolean unique) {
+        if (from >= to) {
+            return;
+        }
+        repository.scanHits(EpochSeconds.toLocalDateTime(from), EpochSeconds.toLocalDateTime(to),
+                (appId, uriId, ip, timestamp) -> {
+                    if (uriIds == null || uriIds.contains(uriId)) {
+                        visitors.computeIfAbsent(key(appId, uriId), k -> new Visitors()).add(ip, unique);
+                    }
+                });
+    }
+
+    private void addHit(int appId, int uriId, byte[] ip, long timestamp) {
+        long minute = Math.floorDiv(timestamp, MINUTE);
+        long nowMinute = currentMinute();
+        if (minute <= nowMinute - minutes || minute > nowMinute + FUTURE_MINUTES) {
+            return;
+        }
+        Slot slot = slots[slotIndex(minute)];
+        synchronized (slot) {
+            if (slot.minute < minute) {
+                slot.reset(minute);
+            } else if (slot.minute > minute) {
+                return;
+            }
+            slot.visitors.computeIfAbsent(key(appId, uriId), k -> new Visitors()).add(ip, true);
+        }
+    }
+
+    private long currentMinute() {
+        return Math.floorDiv(EpochSeconds.of(LocalDateTime.now(clock)), MINUTE);
+    }
+
+    private int slotIndex(long minute) {
+        return (int) Math.floorMod(minute, (long) slots.length);
+    }
+
+    private static long ceilMinute(long second) {
+        return Math.floorDiv(second + MINUTE - 1, MINUTE) * MINUTE;
+    }
+
+    private static long key(int appId, int uriId) {
+        return ((long) appId << Integer.SIZE) | (uriId & 0xffffffffL);
+    }
+
+    private static int appId(long key) {
+        return (int) (key >>> Integer.SIZE);
+    }
+
+    private static int uriId(long key) {
+        return (int) key;
+    }
+
+    private static class Slot {
+        private long minute = -1;
+        private final Map<Long, Visitors> visitors = new HashMap<>();
+
+        void reset(long minute) {
+            this.minute = minute;
+            visitors.clear();
+        }
+
+        void collect(Map<Long, Visitors> target, Set<Integer> uriIds, boolean unique) {
+            visitors.forEach((key, slotVisitors) -> {
+                if (uriIds == null || uriIds.contains(uriId(key))) {
+                    target.computeIfAbsent(key, k -> new Visitors()).merge(slotVisitors, unique);
+                }
+            });
+        }
+    }
+
+    private static class Visitors {
+        private long hits;
+        private final Set<ByteBuffer> ips = new HashSet<>();
+
+        void add(byte[] ip, boolean trackIp) {
+            hits++;
+            if (trackIp) {
+                ips.add(ByteBuffer.wrap(ip));
+            }
+        }
+
+        void merge(Visitors other, boolean trackIps) {
+            hits += other.hits;
+            if (trackIps) {
+                ips.addAll(other.ips);
+            }
+        }
+    }
+}
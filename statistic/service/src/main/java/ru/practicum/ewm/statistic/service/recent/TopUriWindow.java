@@ -0,0 +1,238 @@
+package ru.practicum.ewm.statistic.service.recent;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.EpochSeconds;
+import ru.practicum.ewm.statistic.service.repository.HitDictionaryRepository;
+import ru.practicum.ewm.statistic.service.repository.HitsDeletedEvent;
+import ru.practicum.ewm.statistic.service.repository.HitsSavedEvent;
+import ru.practicum.ewm.statistic.service.repository.StatisticServiceRepository;
+import ru.practicum.ewm.statistic.service.sketch.CountMinSketch;
+
+import javax.annotation.PostConstruct;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.stream.Collectors;
+
+/**
+ * Most viewed uris of the last {@code minutes} minutes. Every minute has a Count-Min sketch and a heap of
+ * its {@code capacity} heaviest (app, uri) pairs, both updated as hits are saved. A top-n query sums the
+ * sketch estimates of the candidates of the covered minutes; the partial edge minutes are counted exactly
+ * from the database.
+ */
+@Component
+@Slf4j
+public class TopUriWindow {
+    private static final long MINUTE = 60;
+    private static final int FUTURE_MINUTES = 5;
+    private final StatisticServiceRepository repository;
+    private final HitDictionaryRepository dictionaryRepository;
+    private final Clock clock;
+    private final boolean enabled;
+    private final int minutes;
+    private final int capacity;
+    private final Slot[] slots;
+    private volatile boolean ready;
+
+    public TopUriWindow(StatisticServiceRepository repository,
+                        HitDictionaryRepository dictionaryRepository,
+                        Clock clock,
+                        @Value("${statistic-service.top-window.enabled:true}") boolean enabled,
+                        @Value("${statistic-service.top-window.minutes:1440}") int minutes,
+                        @Value("${statistic-service.top-window.capacity:100}") int capacity) {
+        this.repository = repository;
+        this.dictionaryRepository = dictionaryRepository;
+        this.clock = clock;
+        this.enabled = enabled;
+        this.minutes = minutes;
+        this.capacity = capacity;
+        this.slots = new Slot[minutes + FUTURE_MINUTES];
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+    }
+
+    @PostConstruct
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        long nowMinute = currentMinute();
+        repository.scanHits(EpochSeconds.toLocalDateTime((nowMinute - minutes + 1) * MINUTE),
+                EpochSeconds.toLocalDateTime((nowMinute + 1 + FUTURE_MINUTES) * MINUTE),
+                (appId, uriId, ip, timestamp) -> addHit(appId, uriId, timestamp));
+        ready = true;
+        log.info("Top uri window of {} minutes rebuilt", minutes);
+    }
+
+    @Order(1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHitsSaved(HitsSavedEvent event) {
+        if (!enabled) {
+            return;
+        }
+        for (EndpointHit endpointHit : event.getEndpointHits()) {
+            addHit(endpointHit.getAppId(), endpointHit.getUriId(), EpochSeconds.of(endpointHit.getTimestamp()));
+        }
+    }
+
+    @Order(1)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHitsDeleted(HitsDeletedEvent event) {
+        for (Slot slot : slots) {
+            synchronized (slot) {
+                slot.reset(-1);
+            }
+        }
+    }
+
+    /**
+     * @param appId only uris of this app when not null
+     * @return empty when the range starts before the window or more than {@code capacity} rows are requested
+     */
+    public Optional<List<ViewStatsDto>> getTopViewStats(LocalDateTime start, LocalDateTime end, Integer appId,
+                                                        int n) {
+        if (!ready || n > capacity) {
+            return Optional.empty();
+        }
+        long nowMinute = currentMinute();
+        long windowFrom = (nowMinute - minutes + 1) * MINUTE;
+        long firstSecond = EpochSeconds.of(start) + 1;
+        long endSecond = EpochSeconds.of(end) + (end.getNano() > 0 ? 1 : 0);
+        if (firstSecond < windowFrom) {
+            return Optional.empty();
+        }
+        long memoryFrom = Math.floorDiv(firstSecond + MINUTE - 1, MINUTE) * MINUTE;
+        long memoryTo = Math.min(Math.floorDiv(endSecond, MINUTE) * MINUTE, (nowMinute + 1) * MINUTE);
+
+        Map<Long, Long> counts = new HashMap<>();
+        if (memoryFrom < memoryTo) {
+            scanInto(counts, firstSecond, memoryFrom, appId);
+            scanInto(counts, memoryTo, endSecond, appId);
+            Map<Long, Long> estimates = new HashMap<>();
+            for (long minute = memoryFrom / MINUTE; minute < memoryTo / MINUTE; minute++) {
+                Slot slot = slots[slotIndex(minute)];
+                synchronized (slot) {
+                    if (slot.minute == minute) {
+                        slot.candidates.keySet().stream()
+                                .filter(key -> appId == null || appId(key) == appId)
+                                .forEach(key -> estimates.putIfAbsent(key, 0L));
+                    }
+                }
+            }
+            counts.keySet().forEach(key -> estimates.putIfAbsent(key, 0L));
+            for (long minute = memoryFrom / MINUTE; minute < memoryTo / MINUTE; minute++) {
+                Slot slot = slots[slotIndex(minute)];
+                synchronized (slot) {
+                    if (slot.minute == minute && slot.sketch != null) {
+                        estimates.replaceAll((key, estimate) -> estimate + slot.sketch.estimate(key));
+                    }
+                }
+            }
+            estimates.forEach((key, estimate) -> counts.merge(key, estimate, Long::sum));
+        } else {
+            scanInto(counts, firstSecond, endSecond, appId);
+        }
+
+        return Optional.of(counts.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                .limit(n)
+                .map(entry -> new ViewStatsDto(dictionaryRepository.getAppName(appId(entry.getKey())),
+                        dictionaryRepository.getUri(uriId(entry.getKey())), entry.getValue()))
+                .collect(Collectors.toList()));
+    }
+
+    private void scanInto(Map<Long, Long> counts, long from, long to, Integer appId) {
+        if (from >= to) {
+            return;
+        }
+        repository.scanHits(EpochSeconds.toLocalDateTime(from), EpochSeconds.toLocalDateTime(to),
+                (hitAppId, uriId, ip, timestamp) -> {
+                    if (appId == null || appId == hitAppId) {
+                        counts.merge(key(hitAppId, uriId), 1L, Long::sum);
+                    }
+                });
+    }
+
+    private void addHit(int appId, int uriId, long timestamp) {
+        long minute = Math.floorDiv(timestamp, MINUTE);
+        long nowMinute = currentMinute();
+        if (minute <= nowMinute - minutes || minute > nowMinute + FUTURE_MINUTES) {
+            return;
+        }
+        Slot slot = slots[slotIndex(minute)];
+        synchronized (slot) {
+            if (slot.minute < minute) {
+                slot.reset(minute);
+            } else if (slot.minute > minute) {
+                return;
+            }
+            slot.add(key(appId, uriId), capacity);
+        }
+    }
+
+    private long currentMinute() {
+        return Math.floorDiv(EpochSeconds.of(LocalDateTime.now(clock)), MINUTE);
+    }
+
+    private int slotIndex(long minute) {
+        return (int) Math.floorMod(minute, (long) slots.length);
+    }
+
+    private static long key(int appId, int uriId) {
+        return ((long) appId << Integer.SIZE) | (uriId & 0xffffffffL);
+    }
+
+    private static int appId(long key) {
+        return (int) (key >>> Integer.SIZE);
+    }
+
+    private static int uriId(long key) {
+        return (int) key;
+    }
+
+    private static class Slot {
+        private long minute = -1;
+        private CountMinSketch sketch;
+        private final Map<Long, Long> candidates = new HashMap<>();
+        private final PriorityQueue<Long> heap = new PriorityQueue<>(Comparator.comparing(candidates::get));
+
+        void reset(long minute) {
+            this.minute = minute;
+            // allocated lazily, most slots of an idle window stay empty
+            sketch = null;
+            candidates.clear();
+            heap.clear();
+        }
+
+        void add(long key, int capacity) {
+            if (sketch == null) {
+                sketch = new CountMinSketch();
+            }
+            long estimate = sketch.add(key, 1);
+            if (candidates.containsKey(key)) {
+                heap.remove(key);
+                candidates.put(key, estimate);
+                heap.add(key);
+            } else if (candidates.size() < capacity) {
+                candidates.put(key, estimate);
+                heap.add(key);
+            } else if (candidates.get(heap.peek()) < estimate) {
+                candidates.remove(heap.poll());
+                candidates.put(key, estimate);
+                heap.add(key);
+            }
+        }
+    }
+}
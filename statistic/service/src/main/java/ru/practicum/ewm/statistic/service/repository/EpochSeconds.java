@@ -0,0 +1,21 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.experimental.UtilityClass;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Hit timestamps are stored as UTC epoch seconds; the API's local date-times are read as UTC.
+ */
+@UtilityClass
+public class EpochSeconds {
+
+    public long of(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public LocalDateTime toLocalDateTime(long epochSecond) {
+        return LocalDateTime.ofEpochSecond(epochSecond, 0, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,16 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.util.List;
+
+/**
+ * Hits of ips flagged by the rate filter, counted per (app, uri, ip, hour) in {@code hit_flagged} apart from
+ * {@code endpoint_hit}, so they stay visible without being counted in any stats.
+ */
+public interface FlaggedHitRepository {
+
+    void addFlagged(List<EndpointHit> endpointHits);
+
+    void deleteAll();
+}
@@ -0,0 +1,71 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.statistic.dto.ip.IpAddressCodec;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Component
+@RequiredArgsConstructor
+public class FlaggedHitRepositoryJDBCImpl implements FlaggedHitRepository {
+    private static final RollupGranularity FLAGGED_GRANULARITY = RollupGranularity.HOUR;
+    private static final Comparator<FlaggedKey> KEY_ORDER = Comparator.comparing(FlaggedKey::getUriId)
+            .thenComparing(FlaggedKey::getBucket)
+            .thenComparing(FlaggedKey::getIp, Arrays::compare)
+            .thenComparing(FlaggedKey::getAppId);
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SqlDialect sqlDialect;
+    private final HitDictionaryRepository dictionaryRepository;
+
+    @Override
+    public void addFlagged(List<EndpointHit> endpointHits) {
+        if (endpointHits.isEmpty()) {
+            return;
+        }
+        dictionaryRepository.encode(endpointHits);
+        // sorted so concurrent flushes lock rows in the same order
+        Map<FlaggedKey, Long> counts = new TreeMap<>(KEY_ORDER);
+        for (EndpointHit endpointHit : endpointHits) {
+            counts.merge(new FlaggedKey(
+                    endpointHit.getAppId(),
+                    endpointHit.getUriId(),
+                    IpAddressCodec.pack(endpointHit.getIp()),
+                    FLAGGED_GRANULARITY.floor(endpointHit.getTimestamp())
+            ), 1L, Long::sum);
+        }
+        String query = sqlDialect.counterUpsert("hit_flagged", "hits",
+                "uri_id integer", "bucket bigint", "ip varbinary", "app_id integer");
+
+        jdbcTemplate.batchUpdate(query, counts.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("app_id", entry.getKey().getAppId())
+                        .addValue("uri_id", entry.getKey().getUriId())
+                        .addValue("ip", entry.getKey().getIp())
+                        .addValue("bucket", EpochSeconds.of(entry.getKey().getBucket()))
+                        .addValue("hits", entry.getValue()))
+                .toArray(SqlParameterSource[]::new));
+    }
+
+    @Override
+    public void deleteAll() {
+        jdbcTemplate.update("delete from hit_flagged", new MapSqlParameterSource());
+    }
+
+    @lombok.Value
+    private static class FlaggedKey {
+        Integer appId;
+        Integer uriId;
+        byte[] ip;
+        LocalDateTime bucket;
+    }
+}
@@ -0,0 +1,18 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.util.List;
+
+/**
+ * Structure derived from raw hits and kept up to date in the transaction that inserts them.
+ */
+public interface HitAggregateRepository {
+    void addHits(List<EndpointHit> endpointHits);
+
+    boolean isEmpty();
+
+    void rebuildFromRawHits();
+
+    void deleteAll();
+}
@@ -0,0 +1,17 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import ru.practicum.ewm.statistic.dto.ViewStatsChangesDto;
+
+public interface HitChangeLogRepository extends HitAggregateRepository {
+    /**
+     * Current counters of the uris logged after {@code since}, reading at most {@code limit} log entries.
+     */
+    ViewStatsChangesDto findChanges(long since, int limit);
+
+    /**
+     * Deletes every log entry that has a later entry for the same uri.
+     *
+     * @return number of deleted entries
+     */
+    int compact();
+}
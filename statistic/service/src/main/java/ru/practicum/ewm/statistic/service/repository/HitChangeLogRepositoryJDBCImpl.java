@@ -0,0 +1,233 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewm.statistic.dto.ViewStatsChangeDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsChangesDto;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.sketch.HyperLogLog;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Append-only log of the (app, uri) pairs touched by every saved batch. Identity ids are taken before commit,
+ * so a transaction can commit an id lower than one already read; readers therefore page by a sequence number
+ * assigned to committed entries only, under a row lock on {@code hit_change_sequence}, which orders it by
+ * the time an entry became visible. Compaction keeps the latest entry of every pair, which a reader at any
+ * cursor still sees.
+ */
+@Component
+public class HitChangeLogRepositoryJDBCImpl implements HitChangeLogRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final HitDictionaryRepository dictionaryRepository;
+    private final HitVisitorRepository visitorRepository;
+    private final HitCompactionRepository compactionRepository;
+    private final Clock clock;
+    private final int sequenceBatchSize;
+
+    public HitChangeLogRepositoryJDBCImpl(NamedParameterJdbcTemplate jdbcTemplate,
+                                          HitDictionaryRepository dictionaryRepository,
+                                          HitVisitorRepository visitorRepository,
+                                          HitCompactionRepository compactionRepository,
+                                          Clock clock,
+                                          @Value("${statistic-service.changes.sequence-batch-size:10000}")
+                                          int sequenceBatchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dictionaryRepository = dictionaryRepository;
+        this.visitorRepository = visitorRepository;
+        this.compactionRepository = compactionRepository;
+        this.clock = clock;
+        this.sequenceBatchSize = sequenceBatchSize;
+    }
+
+    @Override
+    public void addHits(List<EndpointHit> endpointHits) {
+        long changedAt = clock.millis();
+        // one entry per pair and batch, in key order so the log reads like the rollups
+        Set<Long> keys = endpointHits.stream()
+                .map(endpointHit -> key(endpointHit.getAppId(), endpointHit.getUriId()))
+                .collect(Collectors.toCollection(TreeSet::new));
+        String query = "insert into hit_change_log (app_id, uri_id, changed_at) " +
+                "values (:app_id, :uri_id, :changed_at)";
+
+        jdbcTemplate.batchUpdate(query, keys.stream()
+                .map(key -> new MapSqlParameterSource()
+                        .addValue("app_id", appId(key))
+                        .addValue("uri_id", uriId(key))
+                        .addValue("changed_at", changedAt))
+                .toArray(SqlParameterSource[]::new));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        String query = "select count(*) from (select 1 from hit_change_log limit 1) c";
+
+        Integer count = jdbcTemplate.queryForObject(query, new MapSqlParameterSource(), Integer.class);
+        return count == null || count == 0;
+    }
+
+    @Override
+    public void rebuildFromRawHits() {
+        deleteAll();
+        String query = "insert into hit_change_log (app_id, uri_id, changed_at) " +
+                "select app_id, uri_id, :changed_at from endpoint_hit " +
+                "group by app_id, uri_id";
+
+        jdbcTemplate.update(query, new MapSqlParameterSource("changed_at", clock.millis()));
+    }
+
+    @Override
+    public void deleteAll() {
+        jdbcTemplate.update("delete from hit_change_log", new MapSqlParameterSource());
+    }
+
+    @Override
+    @Transactional
+    public ViewStatsChangesDto findChanges(long since, int limit) {
+        sequenceCommittedEntries();
+        String query = "select change_seq, app_id, uri_id from hit_change_log " +
+                "where change_seq > :since " +
+                "order by change_seq " +
+                "limit :limit";
+        MapSqlParameterSource namedParams = new MapSqlParameterSource()
+                .addValue("since", since)
+                .addValue("limit", limit);
+        Set<Long> changedKeys = new LinkedHashSet<>();
+
+        long cursor = jdbcTemplate.query(query, namedParams, resultSet -> {
+            long last = since;
+            while (resultSet.next()) {
+                changedKeys.add(key(resultSet.getInt("app_id"), resultSet.getInt("uri_id")));
+                last = resultSet.getLong("change_seq");
+            }
+            return last;
+        });
+        return new ViewStatsChangesDto(cursor, findCounters(changedKeys));
+    }
+
+    /**
+     * Numbers the committed entries that have no sequence number yet after the last assigned one. The row lock
+     * makes concurrent readers wait, so no reader sees a number before all lower ones are committed.
+     */
+    private void sequenceCommittedEntries() {
+        MapSqlParameterSource lockParams = new MapSqlParameterSource("sequenceId", 1);
+        jdbcTemplate.update("update hit_change_sequence set last_seq = last_seq where sequence_id = :sequenceId",
+                lockParams);
+        Long lastSeq = jdbcTemplate.queryForObject("select last_seq from hit_change_sequence " +
+                "where sequence_id = :sequenceId", lockParams, Long.class);
+        List<Long> changeIds = jdbcTemplate.queryForList("select change_id from hit_change_log " +
+                        "where change_seq is null order by change_id limit :limit",
+                new MapSqlParameterSource("limit", sequenceBatchSize), Long.class);
+        if (lastSeq == null || changeIds.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] params = new SqlParameterSource[changeIds.size()];
+        for (int i = 0; i < params.length; i++) {
+            params[i] = new MapSqlParameterSource("change_id", changeIds.get(i))
+                    .addValue("change_seq", lastSeq + i + 1);
+        }
+        jdbcTemplate.batchUpdate("update hit_change_log set change_seq = :change_seq where change_id = :change_id",
+                params);
+        jdbcTemplate.update("update hit_change_sequence set last_seq = :lastSeq where sequence_id = :sequenceId",
+                lockParams.addValue("lastSeq", lastSeq + params.length));
+    }
+
+    @Override
+    public int compact() {
+        String query = "delete from hit_change_log c where exists (" +
+                "select 1 from hit_change_log n " +
+                "where n.uri_id = c.uri_id and n.app_id = c.app_id and n.change_seq > c.change_seq)";
+
+        return jdbcTemplate.update(query, new MapSqlParameterSource());
+    }
+
+    private List<ViewStatsChangeDto> findCounters(Set<Long> keys) {
+        if (keys.isEmpty()) {
+            return List.of();
+        }
+        List<Integer> uriIds = keys.stream()
+                .map(HitChangeLogRepositoryJDBCImpl::uriId)
+                .distinct()
+                .collect(Collectors.toList());
+        MapSqlParameterSource namedParams = new MapSqlParameterSource();
+        String uriFilter = UriIdPredicate.of(uriIds, namedParams);
+        Map<Long, Long> hits = new HashMap<>();
+        jdbcTemplate.query("select app_id, uri_id, sum(hits) as hits from hit_rollup_day " +
+                "where " + uriFilter + " group by app_id, uri_id", namedParams, resultSet -> {
+            hits.put(key(resultSet.getInt("app_id"), resultSet.getInt("uri_id")), resultSet.getLong("hits"));
+        });
+        Map<Long, Long> visitors = findVisitors(uriIds, uriFilter, namedParams);
+
+        List<ViewStatsChangeDto> changes = new ArrayList<>(keys.size());
+        for (Long key : keys) {
+            changes.add(new ViewStatsChangeDto(
+                    dictionaryRepository.getAppName(appId(key)),
+                    dictionaryRepository.getUri(uriId(key)),
+                    hits.getOrDefault(key, 0L),
+                    visitors.getOrDefault(key, 0L)));
+        }
+        return changes;
+    }
+
+    /**
+     * All-time visitors from {@code uri_visitor_count}, or, when retention keeps it empty, of the retained
+     * hits: exact from raw hits, estimated once some of them were compacted into day sketches.
+     */
+    private Map<Long, Long> findVisitors(List<Integer> uriIds, String uriFilter,
+                                         MapSqlParameterSource namedParams) {
+        Map<Long, Long> visitors = new HashMap<>();
+        if (visitorRepository.isEnabled()) {
+            jdbcTemplate.query("select app_id, uri_id, visitors from uri_visitor_count " +
+                    "where " + uriFilter, namedParams, resultSet -> {
+                visitors.put(key(resultSet.getInt("app_id"), resultSet.getInt("uri_id")),
+                        resultSet.getLong("visitors"));
+            });
+            return visitors;
+        }
+        Optional<LocalDateTime> horizon = compactionRepository.findHorizon();
+        if (horizon.isEmpty()) {
+            jdbcTemplate.query("select app_id, uri_id, count(distinct ip) as visitors from endpoint_hit " +
+                    "where " + uriFilter + " group by app_id, uri_id", namedParams, resultSet -> {
+                visitors.put(key(resultSet.getInt("app_id"), resultSet.getInt("uri_id")),
+                        resultSet.getLong("visitors"));
+            });
+            return visitors;
+        }
+        Map<Long, HyperLogLog> sketches = new HashMap<>();
+        compactionRepository.mergeVisitors(EpochSeconds.toLocalDateTime(0), horizon.get(), uriIds)
+                .forEach((viewKey, sketch) -> sketches.put(key(viewKey.getAppId(), viewKey.getUriId()), sketch));
+        jdbcTemplate.query("select app_id, uri_id, ip from endpoint_hit " +
+                "where " + uriFilter + " group by app_id, uri_id, ip", namedParams, resultSet -> {
+            sketches.computeIfAbsent(key(resultSet.getInt("app_id"), resultSet.getInt("uri_id")),
+                    k -> new HyperLogLog()).add(HyperLogLog.hash(resultSet.getBytes("ip")));
+        });
+        sketches.forEach((key, sketch) -> visitors.put(key, sketch.estimate()));
+        return visitors;
+    }
+
+    private static long key(int appId, int uriId) {
+        return ((long) appId << Integer.SIZE) | (uriId & 0xffffffffL);
+    }
+
+    private static int appId(long key) {
+        return (int) (key >>> Integer.SIZE);
+    }
+
+    private static int uriId(long key) {
+        return (int) key;
+    }
+}
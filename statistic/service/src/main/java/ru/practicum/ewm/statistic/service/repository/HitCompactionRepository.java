@@ -0,0 +1,34 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import ru.practicum.ewm.statistic.service.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Per (app, uri, day) rows that raw hits are folded into once they are old enough to be queried only in
+ * aggregate. Every row keeps the hit count and a {@link HyperLogLog} of the visitor IPs.
+ */
+public interface HitCompactionRepository {
+    /**
+     * Folds up to {@code batchSize} raw hits older than {@code cutoff} into the compacted rows and deletes them.
+     *
+     * @return the number of raw hits compacted
+     */
+    int compactBatch(LocalDateTime cutoff, int batchSize);
+
+    /**
+     * @return the end of the last compacted day, raw hits before it have been compacted; cached until the next
+     * compaction
+     */
+    Optional<LocalDateTime> findHorizon();
+
+    /**
+     * @param uriIds uri ids to filter by, or null for all uris
+     */
+    Map<ViewKey, HyperLogLog> mergeVisitors(LocalDateTime from, LocalDateTime to, List<Integer> uriIds);
+
+    void deleteAll();
+}
@@ -0,0 +1,175 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewm.statistic.service.sketch.HyperLogLog;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+@Component
+@RequiredArgsConstructor
+public class HitCompactionRepositoryJDBCImpl implements HitCompactionRepository {
+    private static final RollupGranularity COMPACTION_GRANULARITY = RollupGranularity.DAY;
+    private static final Comparator<DayKey> KEY_ORDER = Comparator.comparing(DayKey::getUriId)
+            .thenComparing(DayKey::getBucket)
+            .thenComparing(DayKey::getAppId);
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SqlDialect sqlDialect;
+    private final ApplicationEventPublisher eventPublisher;
+    // null until loaded
+    private volatile Optional<LocalDateTime> horizon;
+
+    @Override
+    @Transactional
+    public int compactBatch(LocalDateTime cutoff, int batchSize) {
+        String selectQuery = "select hit_id, app_id, uri_id, ip, timestamp from endpoint_hit " +
+                "where timestamp < :cutoff order by timestamp limit :limit";
+        MapSqlParameterSource namedParams = new MapSqlParameterSource("cutoff", EpochSeconds.of(cutoff))
+                .addValue("limit", batchSize);
+        List<Long> hitIds = new ArrayList<>(batchSize);
+        Map<DayKey, CompactedDay> days = new TreeMap<>(KEY_ORDER);
+
+        jdbcTemplate.query(selectQuery, namedParams, resultSet -> {
+            hitIds.add(resultSet.getLong("hit_id"));
+            long bucket = EpochSeconds.of(COMPACTION_GRANULARITY.floor(
+                    EpochSeconds.toLocalDateTime(resultSet.getLong("timestamp"))));
+            DayKey key = new DayKey(resultSet.getInt("app_id"), resultSet.getInt("uri_id"), bucket);
+            CompactedDay day = days.computeIfAbsent(key, k -> new CompactedDay());
+            day.hits++;
+            day.visitors.add(HyperLogLog.hash(resultSet.getBytes("ip")));
+        });
+        if (hitIds.isEmpty()) {
+            return 0;
+        }
+        mergeIntoStored(days);
+
+        String deleteQuery = "delete from endpoint_hit where timestamp < :cutoff and hit_id in (:hitIds)";
+        int deleted = jdbcTemplate.update(deleteQuery, namedParams.addValue("hitIds", hitIds));
+        if (deleted != hitIds.size()) {
+            // another compaction deleted some of these hits, they must not be counted twice
+            throw new ConcurrencyFailureException("Compacted " + hitIds.size() + " hits but deleted " + deleted);
+        }
+        eventPublisher.publishEvent(new HitsExpiredEvent(cutoff));
+        invalidateHorizon();
+        return deleted;
+    }
+
+    @Override
+    public Optional<LocalDateTime> findHorizon() {
+        Optional<LocalDateTime> cached = horizon;
+        if (cached == null) {
+            cached = loadHorizon();
+            horizon = cached;
+        }
+        return cached;
+    }
+
+    private Optional<LocalDateTime> loadHorizon() {
+        String query = "select max(bucket) from hit_compacted_day";
+
+        Long lastDay = jdbcTemplate.queryForObject(query, new MapSqlParameterSource(), Long.class);
+        return Optional.ofNullable(lastDay)
+                .map(bucket -> EpochSeconds.toLocalDateTime(bucket + COMPACTION_GRANULARITY.getSeconds()));
+    }
+
+    @Override
+    public Map<ViewKey, HyperLogLog> mergeVisitors(LocalDateTime from, LocalDateTime to, List<Integer> uriIds) {
+        MapSqlParameterSource namedParams = new MapSqlParameterSource();
+        String query = "select app_id, uri_id, sketch from hit_compacted_day " +
+                buildFilter(from, to, uriIds, namedParams);
+        Map<ViewKey, HyperLogLog> visitors = new HashMap<>();
+
+        jdbcTemplate.query(query, namedParams, resultSet -> {
+            visitors.computeIfAbsent(new ViewKey(resultSet.getInt("app_id"), resultSet.getInt("uri_id")),
+                    key -> new HyperLogLog()).merge(HyperLogLog.fromBytes(resultSet.getBytes("sketch")));
+        });
+        return visitors;
+    }
+
+    @Override
+    public void deleteAll() {
+        jdbcTemplate.update("delete from hit_compacted_day", new MapSqlParameterSource());
+        invalidateHorizon();
+    }
+
+    private void invalidateHorizon() {
+        horizon = null;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            // a query racing the commit may cache the old horizon again
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    horizon = null;
+                }
+            });
+        }
+    }
+
+    private String buildFilter(LocalDateTime from, LocalDateTime to, List<Integer> uriIds,
+                               MapSqlParameterSource namedParams) {
+        namedParams.addValue("from", EpochSeconds.of(from))
+                .addValue("to", EpochSeconds.of(to));
+        String uriFilter = uriIds != null ? "and " + UriIdPredicate.of(uriIds, namedParams) + " " : "";
+        return "where bucket >= :from and bucket < :to " + uriFilter;
+    }
+
+    private void mergeIntoStored(Map<DayKey, CompactedDay> days) {
+        String insertQuery = sqlDialect.insertIgnore("hit_compacted_day",
+                List.of("uri_id integer", "bucket bigint", "app_id integer"),
+                List.of("hits bigint", "sketch varbinary"));
+        byte[] emptySketch = new HyperLogLog().toBytes();
+        jdbcTemplate.batchUpdate(insertQuery, days.keySet().stream()
+                .map(key -> toParams(key).addValue("hits", 0L).addValue("sketch", emptySketch))
+                .toArray(SqlParameterSource[]::new));
+
+        String selectQuery = "select sketch from hit_compacted_day " +
+                "where uri_id = :uri_id and bucket = :bucket and app_id = :app_id for update";
+        SqlParameterSource[] updateParams = days.entrySet().stream()
+                .map(entry -> {
+                    MapSqlParameterSource keyParams = toParams(entry.getKey());
+                    byte[] stored = jdbcTemplate.queryForObject(selectQuery, keyParams, byte[].class);
+                    HyperLogLog merged = HyperLogLog.fromBytes(stored);
+                    merged.merge(entry.getValue().visitors);
+                    return keyParams.addValue("hits", entry.getValue().hits)
+                            .addValue("sketch", merged.toBytes());
+                })
+                .toArray(SqlParameterSource[]::new);
+        String updateQuery = "update hit_compacted_day set hits = hits + :hits, sketch = :sketch " +
+                "where uri_id = :uri_id and bucket = :bucket and app_id = :app_id";
+        jdbcTemplate.batchUpdate(updateQuery, updateParams);
+    }
+
+    private MapSqlParameterSource toParams(DayKey key) {
+        return new MapSqlParameterSource()
+                .addValue("app_id", key.getAppId())
+                .addValue("uri_id", key.getUriId())
+                .addValue("bucket", key.getBucket());
+    }
+
+    @lombok.Value
+    private static class DayKey {
+        int appId;
+        int uriId;
+        long bucket;
+    }
+
+    private static class CompactedDay {
+        private final HyperLogLog visitors = new HyperLogLog();
+        private long hits;
+    }
+}
@@ -0,0 +1,36 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Maps app names and uris to the integer ids stored in {@code endpoint_hit} and the aggregates.
+ */
+public interface HitDictionaryRepository {
+    /**
+     * Sets {@code appId} and {@code uriId} of every hit, registering unknown names.
+     */
+    void encode(List<EndpointHit> endpointHits);
+
+    /**
+     * Ids of the already registered uris; unknown uris are skipped. A uri ending with {@code *} matches every
+     * registered uri starting with the part before it.
+     */
+    List<Integer> findUriIds(Collection<String> uris);
+
+    /**
+     * Ids of the registered uris of these entities, mapped to their entity id. The entity id is extracted from
+     * the uri by the configured {@code statistic-service.entity-uri-pattern} when the uri is registered.
+     */
+    Map<Integer, Long> findEntityUriIds(Collection<Long> entityIds);
+
+    Optional<Integer> findAppId(String app);
+
+    String getAppName(int appId);
+
+    String getUri(int uriId);
+}
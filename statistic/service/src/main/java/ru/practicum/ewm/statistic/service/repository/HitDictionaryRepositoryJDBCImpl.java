@@ -0,0 +1,243 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+@Component
+public class HitDictionaryRepositoryJDBCImpl implements HitDictionaryRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SqlDialect sqlDialect;
+    private final Pattern entityUriPattern;
+    // every registered uri, kept complete so prefix patterns expand without a query
+    private final UriTrie uriTrie = new UriTrie();
+    private final Map<Long, Set<Integer>> uriIdsByEntityId = new ConcurrentHashMap<>();
+    private final Dictionary apps = new Dictionary("app_dictionary", "app_id", "app_name", null);
+    private final Dictionary uris = new Dictionary("uri_dictionary", "uri_id", "app_uri", uriTrie);
+
+    public HitDictionaryRepositoryJDBCImpl(NamedParameterJdbcTemplate jdbcTemplate,
+                                           SqlDialect sqlDialect,
+                                           @Value("${statistic-service.entity-uri-pattern:/events/(\\d+)}")
+                                           String entityUriPattern) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sqlDialect = sqlDialect;
+        this.entityUriPattern = Pattern.compile(entityUriPattern);
+    }
+
+    @PostConstruct
+    public void loadUris() {
+        List<SqlParameterSource> missingEntityIds = new ArrayList<>();
+        jdbcTemplate.query("select uri_id, app_uri, entity_id from uri_dictionary", resultSet -> {
+            int uriId = resultSet.getInt("uri_id");
+            String uri = resultSet.getString("app_uri");
+            uris.cache(uriId, uri);
+            Long entityId = entityIdOf(uri);
+            if (entityId != null && resultSet.getObject("entity_id") == null) {
+                missingEntityIds.add(new MapSqlParameterSource("uri_id", uriId).addValue("entity_id", entityId));
+            }
+        });
+        // uris registered before entity ids were extracted
+        jdbcTemplate.batchUpdate("update uri_dictionary set entity_id = :entity_id where uri_id = :uri_id",
+                missingEntityIds.toArray(SqlParameterSource[]::new));
+    }
+
+    @Override
+    public void encode(List<EndpointHit> endpointHits) {
+        Map<String, Integer> appIds = apps.register(endpointHits.stream()
+                .map(EndpointHit::getApp)
+                .collect(Collectors.toList()));
+        Map<String, Integer> uriIds = uris.register(endpointHits.stream()
+                .map(EndpointHit::getUri)
+                .collect(Collectors.toList()));
+        for (EndpointHit endpointHit : endpointHits) {
+            endpointHit.setAppId(appIds.get(endpointHit.getApp()));
+            endpointHit.setUriId(uriIds.get(endpointHit.getUri()));
+        }
+    }
+
+    @Override
+    public List<Integer> findUriIds(Collection<String> uriNames) {
+        uris.load(uriNames.stream()
+                .filter(uri -> !UriTrie.isPrefixPattern(uri) && !uris.ids.containsKey(uri))
+                .collect(Collectors.toCollection(TreeSet::new)));
+        return uriNames.stream()
+                .flatMap(uri -> UriTrie.isPrefixPattern(uri)
+                        ? uriTrie.findByPrefix(UriTrie.prefixOf(uri)).stream()
+                        : Stream.ofNullable(uris.ids.get(uri)))
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public Map<Integer, Long> findEntityUriIds(Collection<Long> entityIds) {
+        Set<Long> missing = entityIds.stream()
+                .filter(entityId -> !uriIdsByEntityId.containsKey(entityId))
+                .collect(Collectors.toCollection(TreeSet::new));
+        if (!missing.isEmpty()) {
+            MapSqlParameterSource namedParams = new MapSqlParameterSource();
+            String query = "select uri_id, app_uri from uri_dictionary where " +
+                    SqlArrayValue.in("entity_id", "entityIds", "bigint", missing, namedParams);
+            jdbcTemplate.query(query, namedParams, resultSet -> {
+                uris.cache(resultSet.getInt("uri_id"), resultSet.getString("app_uri"));
+            });
+        }
+        Map<Integer, Long> entityIdsByUriId = new HashMap<>();
+        for (Long entityId : entityIds) {
+            uriIdsByEntityId.getOrDefault(entityId, Set.of())
+                    .forEach(uriId -> entityIdsByUriId.put(uriId, entityId));
+        }
+        return entityIdsByUriId;
+    }
+
+    @Override
+    public Optional<Integer> findAppId(String app) {
+        if (!apps.ids.containsKey(app)) {
+            apps.load(Set.of(app));
+        }
+        return Optional.ofNullable(apps.ids.get(app));
+    }
+
+    @Override
+    public String getAppName(int appId) {
+        return apps.getName(appId);
+    }
+
+    @Override
+    public String getUri(int uriId) {
+        return uris.getName(uriId);
+    }
+
+    private Long entityIdOf(String uri) {
+        Matcher matcher = entityUriPattern.matcher(uri);
+        if (!matcher.matches()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(matcher.group(1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private class Dictionary {
+        private final String table;
+        private final String idColumn;
+        private final String nameColumn;
+        private final UriTrie trie;
+        private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+        private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+        Dictionary(String table, String idColumn, String nameColumn, UriTrie trie) {
+            this.table = table;
+            this.idColumn = idColumn;
+            this.nameColumn = nameColumn;
+            this.trie = trie;
+        }
+
+        /**
+         * Inserts missing names in the caller's transaction and caches their ids only after it commits,
+         * so a cached id never points to a rolled back row.
+         */
+        Map<String, Integer> register(Collection<String> candidates) {
+            Map<String, Integer> registered = new HashMap<>();
+            Set<String> missing = new TreeSet<>();
+            for (String name : candidates) {
+                Integer id = ids.get(name);
+                if (id != null) {
+                    registered.put(name, id);
+                } else {
+                    missing.add(name);
+                }
+            }
+            if (missing.isEmpty()) {
+                return registered;
+            }
+            // uris carry the entity id extracted from them
+            List<String> valueColumns = trie != null ? List.of("entity_id bigint") : List.of();
+            String query = sqlDialect.insertIgnore(table, List.of(nameColumn + " varchar"), valueColumns);
+            jdbcTemplate.batchUpdate(query, missing.stream()
+                    .map(name -> {
+                        MapSqlParameterSource params = new MapSqlParameterSource(nameColumn, name);
+                        return trie != null ? params.addValue("entity_id", entityIdOf(name)) : params;
+                    })
+                    .toArray(SqlParameterSource[]::new));
+            Map<Integer, String> inserted = find(missing);
+            inserted.forEach((id, name) -> registered.put(name, id));
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        inserted.forEach(Dictionary.this::cache);
+                    }
+                });
+            } else {
+                inserted.forEach(this::cache);
+            }
+            return registered;
+        }
+
+        void load(Set<String> candidates) {
+            find(candidates).forEach(this::cache);
+        }
+
+        private Map<Integer, String> find(Set<String> candidates) {
+            Map<Integer, String> found = new HashMap<>();
+            if (candidates.isEmpty()) {
+                return found;
+            }
+            MapSqlParameterSource namedParams = new MapSqlParameterSource();
+            String query = "select " + idColumn + ", " + nameColumn + " from " + table +
+                    " where " + SqlArrayValue.in(nameColumn, "names", "varchar", candidates, namedParams);
+
+            jdbcTemplate.query(query, namedParams,
+                    resultSet -> {
+                        found.put(resultSet.getInt(idColumn), resultSet.getString(nameColumn));
+                    });
+            return found;
+        }
+
+        String getName(int id) {
+            String name = names.get(id);
+            if (name != null) {
+                return name;
+            }
+            String query = "select " + nameColumn + " from " + table + " where " + idColumn + " = :id";
+
+            name = jdbcTemplate.queryForObject(query, new MapSqlParameterSource("id", id), String.class);
+            cache(id, name);
+            return name;
+        }
+
+        private void cache(int id, String name) {
+            ids.put(name, id);
+            names.put(id, name);
+            if (trie != null) {
+                trie.put(name, id);
+                Long entityId = entityIdOf(name);
+                if (entityId != null) {
+                    uriIdsByEntityId.computeIfAbsent(entityId, e -> ConcurrentHashMap.newKeySet()).add(id);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+public interface HitRollupRepository extends HitAggregateRepository {
+}
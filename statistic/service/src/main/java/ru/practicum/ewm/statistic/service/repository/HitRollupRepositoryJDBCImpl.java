@@ -0,0 +1,96 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+@Component
+@RequiredArgsConstructor
+public class HitRollupRepositoryJDBCImpl implements HitRollupRepository {
+    private static final Comparator<RollupKey> KEY_ORDER = Comparator.comparing(RollupKey::getUriId)
+            .thenComparing(RollupKey::getBucket)
+            .thenComparing(RollupKey::getAppId);
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SqlDialect sqlDialect;
+
+    @Override
+    public void addHits(List<EndpointHit> endpointHits) {
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            String query = sqlDialect.counterUpsert(granularity.getTable(), "hits",
+                    "uri_id integer", "bucket bigint", "app_id integer");
+            jdbcTemplate.batchUpdate(query, toBatchParams(countByBucket(endpointHits, granularity)));
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        String query = "select count(*) from (select 1 from hit_rollup_minute limit 1) r";
+
+        Integer count = jdbcTemplate.queryForObject(query, new MapSqlParameterSource(), Integer.class);
+        return count == null || count == 0;
+    }
+
+    @Override
+    public void rebuildFromRawHits() {
+        deleteAll();
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            String bucket = "timestamp - mod(timestamp, " + granularity.getSeconds() + ")";
+            // compacted hits are gone from endpoint_hit, their days are the finest buckets left for them
+            String query = "insert into " + granularity.getTable() + " (app_id, uri_id, bucket, hits) " +
+                    "select app_id, uri_id, bucket, sum(hits) from (" +
+                    "select app_id, uri_id, " + bucket + " as bucket, 1 as hits from endpoint_hit " +
+                    "union all " +
+                    "select app_id, uri_id, bucket, hits from hit_compacted_day) h " +
+                    "group by app_id, uri_id, bucket";
+
+            jdbcTemplate.update(query, new MapSqlParameterSource());
+        }
+    }
+
+    @Override
+    public void deleteAll() {
+        for (RollupGranularity granularity : RollupGranularity.values()) {
+            jdbcTemplate.update("delete from " + granularity.getTable(), new MapSqlParameterSource());
+        }
+    }
+
+    private Map<RollupKey, Long> countByBucket(List<EndpointHit> endpointHits, RollupGranularity granularity) {
+        // sorted so concurrent batches lock rollup rows in the same order
+        Map<RollupKey, Long> counts = new TreeMap<>(KEY_ORDER);
+        for (EndpointHit endpointHit : endpointHits) {
+            RollupKey key = new RollupKey(
+                    endpointHit.getAppId(),
+                    endpointHit.getUriId(),
+                    granularity.floor(endpointHit.getTimestamp())
+            );
+            counts.merge(key, 1L, Long::sum);
+        }
+        return counts;
+    }
+
+    private SqlParameterSource[] toBatchParams(Map<RollupKey, Long> counts) {
+        return counts.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("app_id", entry.getKey().getAppId())
+                        .addValue("uri_id", entry.getKey().getUriId())
+                        .addValue("bucket", EpochSeconds.of(entry.getKey().getBucket()))
+                        .addValue("hits", entry.getValue()))
+                .toArray(SqlParameterSource[]::new);
+    }
+
+    @lombok.Value
+    private static class RollupKey {
+        Integer appId;
+        Integer uriId;
+        LocalDateTime bucket;
+    }
+}
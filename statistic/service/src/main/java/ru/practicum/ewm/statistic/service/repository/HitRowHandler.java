@@ -0,0 +1,9 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+/**
+ * Receives raw hit rows in their stored form: dictionary ids, packed ip and epoch seconds.
+ */
+@FunctionalInterface
+public interface HitRowHandler {
+    void processHit(int appId, int uriId, byte[] ip, long timestamp);
+}
@@ -0,0 +1,10 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface HitSketchRepository extends HitAggregateRepository {
+    List<ViewStatsDto> getApproximateUniqueViewStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+}
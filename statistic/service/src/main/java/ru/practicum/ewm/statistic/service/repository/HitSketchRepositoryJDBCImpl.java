@@ -0,0 +1,297 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ip.IpAddressCodec;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.sketch.HyperLogLog;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps a {@link HyperLogLog} of visitor IPs per (app, uri, hour).
+ * Committed hits are merged into an in-memory buffer and written out in one batch every
+ * {@code flush-interval-ms}; queries merge the buffer with the stored sketches, so they stay current.
+ * A buffer lost on a crash only makes the estimates lower until the sketches are rebuilt from raw hits.
+ */
+@Slf4j
+@Component
+public class HitSketchRepositoryJDBCImpl implements HitSketchRepository {
+    private static final RollupGranularity SKETCH_GRANULARITY = RollupGranularity.HOUR;
+    private static final Comparator<SketchKey> KEY_ORDER = Comparator.comparing(SketchKey::getUriId)
+            .thenComparing(SketchKey::getBucket)
+            .thenComparing(SketchKey::getAppId);
+    private static final int MERGE_CHUNK_SIZE = 500;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
+    private final SqlDialect sqlDialect;
+    private final HitDictionaryRepository dictionaryRepository;
+    private final TransactionTemplate transactionTemplate;
+    private Map<SketchKey, HyperLogLog> pending = new TreeMap<>(KEY_ORDER);
+
+    public HitSketchRepositoryJDBCImpl(NamedParameterJdbcTemplate jdbcTemplate,
+                                       SqlDialect sqlDialect,
+                                       HitDictionaryRepository dictionaryRepository,
+                                       PlatformTransactionManager transactionManager,
+                                       @Value("${statistic-service.stream.fetch-size:1000}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sqlDialect = sqlDialect;
+        this.dictionaryRepository = dictionaryRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        JdbcTemplate streamingTemplate = new JdbcTemplate(jdbcTemplate.getJdbcTemplate().getDataSource());
+        streamingTemplate.setFetchSize(fetchSize);
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(streamingTemplate);
+    }
+
+    @Override
+    public void addHits(List<EndpointHit> endpointHits) {
+        Map<SketchKey, HyperLogLog> sketches = new TreeMap<>(KEY_ORDER);
+        for (EndpointHit endpointHit : endpointHits) {
+            SketchKey key = new SketchKey(
+                    endpointHit.getAppId(),
+                    endpointHit.getUriId(),
+                    SKETCH_GRANULARITY.floor(endpointHit.getTimestamp())
+            );
+            sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(HyperLogLog.hash(IpAddressCodec.pack(endpointHit.getIp())));
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    buffer(sketches);
+                }
+            });
+        } else {
+            buffer(sketches);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${statistic-service.sketch.flush-interval-ms:1000}")
+    @PreDestroy
+    public void flush() {
+        Map<SketchKey, HyperLogLog> flushed;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return;
+            }
+            flushed = pending;
+            pending = new TreeMap<>(KEY_ORDER);
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> mergeIntoStored(flushed));
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush {} visitor sketches, keeping them for the next flush", flushed.size(), e);
+            buffer(flushed);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        synchronized (this) {
+            if (!pending.isEmpty()) {
+                return false;
+            }
+        }
+        String query = "select count(*) from (select 1 from hit_unique_sketch limit 1) s";
+
+        Integer count = jdbcTemplate.queryForObject(query, new MapSqlParameterSource(), Integer.class);
+        return count == null || count == 0;
+    }
+
+    /**
+     * Runs in one transaction: PostgreSQL only streams a result set by {@code fetch-size} rows inside one, and
+     * the merges lock the sketch rows they read until it commits.
+     */
+    @Override
+    public void rebuildFromRawHits() {
+        transactionTemplate.executeWithoutResult(status -> rebuildInTransaction());
+    }
+
+    private void rebuildInTransaction() {
+        deleteAll();
+        String query = "select app_id, uri_id, ip, timestamp from endpoint_hit order by timestamp";
+        Map<SketchKey, HyperLogLog> sketches = new TreeMap<>(KEY_ORDER);
+        LocalDateTime[] currentBucket = new LocalDateTime[1];
+
+        streamingJdbcTemplate.query(query, resultSet -> {
+            LocalDateTime bucket = SKETCH_GRANULARITY.floor(EpochSeconds.toLocalDateTime(resultSet.getLong("timestamp")));
+            if (!bucket.equals(currentBucket[0])) {
+                mergeIntoStored(sketches);
+                sketches.clear();
+                currentBucket[0] = bucket;
+            }
+            SketchKey key = new SketchKey(resultSet.getInt("app_id"), resultSet.getInt("uri_id"), bucket);
+            sketches.computeIfAbsent(key, k -> new HyperLogLog()).add(HyperLogLog.hash(resultSet.getBytes("ip")));
+        });
+        mergeIntoStored(sketches);
+    }
+
+    @Override
+    public void deleteAll() {
+        synchronized (this) {
+            pending.clear();
+        }
+        jdbcTemplate.update("delete from hit_unique_sketch", new MapSqlParameterSource());
+    }
+
+    @Override
+    public List<ViewStatsDto> getApproximateUniqueViewStats(LocalDateTime start, LocalDateTime end,
+                                                            List<String> uris) {
+        List<Integer> uriIds = null;
+        if (uris != null && !uris.isEmpty()) {
+            uriIds = dictionaryRepository.findUriIds(uris);
+            if (uriIds.isEmpty()) {
+                return List.of();
+            }
+        }
+        Map<SketchKey, HyperLogLog> buffered = snapshotPending();
+        Map<ViewKey, HyperLogLog> visitors = new HashMap<>();
+        for (RollupSegment segment : RollupQueryPlanner.plan(start, end, SKETCH_GRANULARITY)) {
+            MapSqlParameterSource namedParams = new MapSqlParameterSource()
+                    .addValue("from", EpochSeconds.of(segment.getFrom()))
+                    .addValue("to", EpochSeconds.of(segment.getTo()));
+            String uriFilter = uriIds != null ? "and " + UriIdPredicate.of(uriIds, namedParams) + " " : "";
+            if (segment.isRaw()) {
+                String query = "select app_id, uri_id, ip from endpoint_hit " +
+                        (segment.isFromExclusive() ? "where timestamp > :from " : "where timestamp >= :from ") +
+                        "and timestamp < :to " +
+                        uriFilter +
+                        "group by app_id, uri_id, ip";
+                jdbcTemplate.query(query, namedParams, resultSet -> {
+                    ViewKey key = new ViewKey(resultSet.getInt("app_id"), resultSet.getInt("uri_id"));
+                    visitors.computeIfAbsent(key, k -> new HyperLogLog())
+                            .add(HyperLogLog.hash(resultSet.getBytes("ip")));
+                });
+            } else {
+                String query = "select app_id, uri_id, sketch from hit_unique_sketch " +
+                        "where bucket >= :from and bucket < :to " +
+                        uriFilter;
+                jdbcTemplate.query(query, namedParams, resultSet -> {
+                    ViewKey key = new ViewKey(resultSet.getInt("app_id"), resultSet.getInt("uri_id"));
+                    visitors.computeIfAbsent(key, k -> new HyperLogLog())
+                            .merge(HyperLogLog.fromBytes(resultSet.getBytes("sketch")));
+                });
+                mergeBuffered(buffered, segment, uriIds, visitors);
+            }
+        }
+
+        return visitors.entrySet().stream()
+                .map(entry -> new ViewStatsDto(
+                        dictionaryRepository.getAppName(entry.getKey().getAppId()),
+                        dictionaryRepository.getUri(entry.getKey().getUriId()),
+                        entry.getValue().estimate()))
+                .sorted(Comparator.comparing(ViewStatsDto::getHits).reversed())
+                .collect(Collectors.toList());
+    }
+
+    private synchronized void buffer(Map<SketchKey, HyperLogLog> sketches) {
+        sketches.forEach((key, sketch) -> pending.computeIfAbsent(key, k -> new HyperLogLog()).merge(sketch));
+    }
+
+    private synchronized Map<SketchKey, HyperLogLog> snapshotPending() {
+        Map<SketchKey, HyperLogLog> snapshot = new HashMap<>();
+        pending.forEach((key, sketch) -> snapshot.put(key, HyperLogLog.fromBytes(sketch.toBytes())));
+        return snapshot;
+    }
+
+    /**
+     * Sketch unions are idempotent, so a buffered sketch flushed while the query ran is not counted twice.
+     */
+    private void mergeBuffered(Map<SketchKey, HyperLogLog> buffered, RollupSegment segment, List<Integer> uriIds,
+                               Map<ViewKey, HyperLogLog> visitors) {
+        buffered.forEach((key, sketch) -> {
+            if (key.getBucket().isBefore(segment.getFrom()) || !key.getBucket().isBefore(segment.getTo())
+                    || (uriIds != null && !uriIds.contains(key.getUriId()))) {
+                return;
+            }
+            visitors.computeIfAbsent(new ViewKey(key.getAppId(), key.getUriId()), k -> new HyperLogLog())
+                    .merge(sketch);
+        });
+    }
+
+    private void mergeIntoStored(Map<SketchKey, HyperLogLog> sketches) {
+        if (sketches.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<SketchKey, HyperLogLog>> entries = new ArrayList<>(sketches.entrySet());
+        for (int from = 0; from < entries.size(); from += MERGE_CHUNK_SIZE) {
+            List<Map.Entry<SketchKey, HyperLogLog>> chunk = entries.subList(from,
+                    Math.min(from + MERGE_CHUNK_SIZE, entries.size()));
+            // joins the caller's transaction, otherwise the row locks would end with the select
+            transactionTemplate.executeWithoutResult(status -> mergeChunk(chunk));
+        }
+    }
+
+    private void mergeChunk(List<Map.Entry<SketchKey, HyperLogLog>> entries) {
+        String insertQuery = sqlDialect.insertIgnore("hit_unique_sketch",
+                List.of("uri_id integer", "bucket bigint", "app_id integer"),
+                List.of("sketch varbinary"));
+        byte[] emptySketch = new HyperLogLog().toBytes();
+        jdbcTemplate.batchUpdate(insertQuery, entries.stream()
+                .map(entry -> toParams(entry.getKey()).addValue("sketch", emptySketch))
+                .toArray(SqlParameterSource[]::new));
+
+        String selectQuery = "select uri_id, bucket, app_id, sketch from hit_unique_sketch " +
+                "where (uri_id, bucket, app_id) in (:keys) " +
+                "order by uri_id, bucket, app_id for update";
+        MapSqlParameterSource selectParams = new MapSqlParameterSource("keys", entries.stream()
+                .map(entry -> new Object[]{
+                        entry.getKey().getUriId(),
+                        EpochSeconds.of(entry.getKey().getBucket()),
+                        entry.getKey().getAppId()})
+                .collect(Collectors.toList()));
+        Map<SketchKey, HyperLogLog> merged = new HashMap<>();
+        jdbcTemplate.query(selectQuery, selectParams, resultSet -> {
+            SketchKey key = new SketchKey(
+                    resultSet.getInt("app_id"),
+                    resultSet.getInt("uri_id"),
+                    EpochSeconds.toLocalDateTime(resultSet.getLong("bucket"))
+            );
+            merged.put(key, HyperLogLog.fromBytes(resultSet.getBytes("sketch")));
+        });
+
+        SqlParameterSource[] updateParams = entries.stream()
+                .map(entry -> {
+                    HyperLogLog sketch = merged.computeIfAbsent(entry.getKey(), k -> new HyperLogLog());
+                    sketch.merge(entry.getValue());
+                    return toParams(entry.getKey()).addValue("sketch", sketch.toBytes());
+                })
+                .toArray(SqlParameterSource[]::new);
+        String updateQuery = "update hit_unique_sketch set sketch = :sketch " +
+                "where uri_id = :uri_id and bucket = :bucket and app_id = :app_id";
+        jdbcTemplate.batchUpdate(updateQuery, updateParams);
+    }
+
+    private MapSqlParameterSource toParams(SketchKey key) {
+        return new MapSqlParameterSource()
+                .addValue("app_id", key.getAppId())
+                .addValue("uri_id", key.getUriId())
+                .addValue("bucket", EpochSeconds.of(key.getBucket()));
+    }
+
+    @lombok.Value
+    private static class SketchKey {
+        Integer appId;
+        Integer uriId;
+        LocalDateTime bucket;
+    }
+}
@@ -0,0 +1,8 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+public interface HitVisitorRepository extends HitAggregateRepository {
+    /**
+     * @return false when the visitor tables are not kept, so all-time unique views must be counted from hits
+     */
+    boolean isEnabled();
+}
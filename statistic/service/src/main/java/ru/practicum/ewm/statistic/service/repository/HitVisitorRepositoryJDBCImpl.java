@@ -0,0 +1,165 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import ru.practicum.ewm.statistic.dto.ip.IpAddressCodec;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import javax.annotation.PostConstruct;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records the first hit of every (app, uri, ip) in {@code uri_visitor} and counts a visitor in
+ * {@code uri_visitor_count} only when that insert is not a duplicate, so all-time unique views are read
+ * without scanning raw hits. Visitors can't be taken back out when retention drops old hits, so with
+ * {@code retention-months} set the tables are emptied and no longer kept.
+ */
+@Component
+public class HitVisitorRepositoryJDBCImpl implements HitVisitorRepository {
+    private static final Comparator<VisitorKey> KEY_ORDER = Comparator.comparing(VisitorKey::getUriId)
+            .thenComparing(VisitorKey::getIp, Arrays::compare)
+            .thenComparing(VisitorKey::getAppId);
+    private static final Comparator<CountKey> COUNT_KEY_ORDER = Comparator.comparing(CountKey::getUriId)
+            .thenComparing(CountKey::getAppId);
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SqlDialect sqlDialect;
+    private final boolean enabled;
+
+    public HitVisitorRepositoryJDBCImpl(NamedParameterJdbcTemplate jdbcTemplate,
+                                        SqlDialect sqlDialect,
+                                        @Value("${statistic-service.partitioning.retention-months:0}")
+                                        int retentionMonths) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sqlDialect = sqlDialect;
+        this.enabled = retentionMonths <= 0;
+    }
+
+    // emptied, so the tables are rebuilt once retention is switched off again
+    @PostConstruct
+    public void clearWhenDisabled() {
+        if (!enabled) {
+            deleteAll();
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void addHits(List<EndpointHit> endpointHits) {
+        if (!enabled) {
+            return;
+        }
+        Map<VisitorKey, Long> firstSeen = firstSeenByVisitor(endpointHits);
+        if (firstSeen.isEmpty()) {
+            return;
+        }
+        SqlParameterSource[] batchParams = firstSeen.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("app_id", entry.getKey().getAppId())
+                        .addValue("uri_id", entry.getKey().getUriId())
+                        .addValue("ip", entry.getKey().getIp())
+                        .addValue("first_seen", entry.getValue()))
+                .toArray(SqlParameterSource[]::new);
+        if (sqlDialect == SqlDialect.POSTGRESQL) {
+            // batched inserts are rewritten by the driver and report no row counts, so the count is bumped
+            // by the same statement that inserts the visitor
+            String query = "with inserted as (" +
+                    "insert into uri_visitor (app_id, uri_id, ip, first_seen) " +
+                    "values (:app_id, :uri_id, :ip, :first_seen) " +
+                    "on conflict (uri_id, ip, app_id) do nothing returning app_id, uri_id) " +
+                    "insert into uri_visitor_count (app_id, uri_id, visitors) " +
+                    "select app_id, uri_id, 1 from inserted " +
+                    "on conflict (uri_id, app_id) do update " +
+                    "set visitors = uri_visitor_count.visitors + excluded.visitors";
+            jdbcTemplate.batchUpdate(query, batchParams);
+            return;
+        }
+        String insertQuery = sqlDialect.insertIgnore("uri_visitor",
+                List.of("uri_id integer", "ip varbinary", "app_id integer"),
+                List.of("first_seen bigint"));
+        int[] inserted = jdbcTemplate.batchUpdate(insertQuery, batchParams);
+        Map<CountKey, Long> newVisitors = new TreeMap<>(COUNT_KEY_ORDER);
+        VisitorKey[] keys = firstSeen.keySet().toArray(VisitorKey[]::new);
+        for (int i = 0; i < keys.length; i++) {
+            if (inserted[i] > 0) {
+                newVisitors.merge(new CountKey(keys[i].getAppId(), keys[i].getUriId()), 1L, Long::sum);
+            }
+        }
+        String countQuery = sqlDialect.counterUpsert("uri_visitor_count", "visitors",
+                "uri_id integer", "app_id integer");
+        jdbcTemplate.batchUpdate(countQuery, newVisitors.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource()
+                        .addValue("app_id", entry.getKey().getAppId())
+                        .addValue("uri_id", entry.getKey().getUriId())
+                        .addValue("visitors", entry.getValue()))
+                .toArray(SqlParameterSource[]::new));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        if (!enabled) {
+            return false;
+        }
+        String query = "select count(*) from (select 1 from uri_visitor limit 1) v";
+
+        Integer count = jdbcTemplate.queryForObject(query, new MapSqlParameterSource(), Integer.class);
+        return count == null || count == 0;
+    }
+
+    @Override
+    public void rebuildFromRawHits() {
+        deleteAll();
+        if (!enabled) {
+            return;
+        }
+        jdbcTemplate.update("insert into uri_visitor (app_id, uri_id, ip, first_seen) " +
+                "select app_id, uri_id, ip, min(timestamp) from endpoint_hit " +
+                "group by app_id, uri_id, ip", new MapSqlParameterSource());
+        jdbcTemplate.update("insert into uri_visitor_count (app_id, uri_id, visitors) " +
+                "select app_id, uri_id, count(*) from uri_visitor " +
+                "group by app_id, uri_id", new MapSqlParameterSource());
+    }
+
+    @Override
+    public void deleteAll() {
+        jdbcTemplate.update("delete from uri_visitor", new MapSqlParameterSource());
+        jdbcTemplate.update("delete from uri_visitor_count", new MapSqlParameterSource());
+    }
+
+    private Map<VisitorKey, Long> firstSeenByVisitor(List<EndpointHit> endpointHits) {
+        // sorted so concurrent batches lock visitor rows in the same order
+        Map<VisitorKey, Long> firstSeen = new TreeMap<>(KEY_ORDER);
+        for (EndpointHit endpointHit : endpointHits) {
+            VisitorKey key = new VisitorKey(
+                    endpointHit.getAppId(),
+                    endpointHit.getUriId(),
+                    IpAddressCodec.pack(endpointHit.getIp())
+            );
+            firstSeen.merge(key, EpochSeconds.of(endpointHit.getTimestamp()), Math::min);
+        }
+        return firstSeen;
+    }
+
+    @lombok.Value
+    private static class VisitorKey {
+        Integer appId;
+        Integer uriId;
+        byte[] ip;
+    }
+
+    @lombok.Value
+    private static class CountKey {
+        Integer appId;
+        Integer uriId;
+    }
+}
@@ -0,0 +1,7 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+/**
+ * Published in the transaction that deletes every stored hit.
+ */
+public class HitsDeletedEvent {
+}
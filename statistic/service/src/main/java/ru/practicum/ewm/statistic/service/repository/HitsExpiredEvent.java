@@ -0,0 +1,14 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published when raw hits before {@code before} are compacted or dropped by retention, so results over
+ * ranges starting before it may change.
+ */
+@Value
+public class HitsExpiredEvent {
+    LocalDateTime before;
+}
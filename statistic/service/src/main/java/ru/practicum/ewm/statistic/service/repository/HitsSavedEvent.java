@@ -0,0 +1,14 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.Value;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.util.List;
+
+/**
+ * Published in the transaction that inserts the hits; the hits carry their dictionary ids.
+ */
+@Value
+public class HitsSavedEvent {
+    List<EndpointHit> endpointHits;
+}
@@ -0,0 +1,19 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+/**
+ * Hits of an {@code endpoint_hit} created before apps and uris moved to dictionaries and IPs and timestamps
+ * were packed. On PostgreSQL such a table is renamed to {@code endpoint_hit_legacy} by the schema script
+ * and its hits are moved into the current table at startup.
+ */
+public interface LegacyHitRepository {
+    boolean hasLegacyHits();
+
+    /**
+     * Converts up to {@code batchSize} legacy hits into the current table and deletes them from the legacy one.
+     *
+     * @return the number of legacy hits taken, zero once the legacy table is empty
+     */
+    int migrateBatch(int batchSize);
+
+    void dropLegacyTable();
+}
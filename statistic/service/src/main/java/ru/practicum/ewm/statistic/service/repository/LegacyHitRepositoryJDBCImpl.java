@@ -0,0 +1,82 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import ru.practicum.ewm.statistic.dto.ip.IpAddressCodec;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class LegacyHitRepositoryJDBCImpl implements LegacyHitRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final SqlDialect sqlDialect;
+    private final HitDictionaryRepository dictionaryRepository;
+
+    @Override
+    public boolean hasLegacyHits() {
+        if (sqlDialect != SqlDialect.POSTGRESQL) {
+            return false;
+        }
+        String query = "select to_regclass('endpoint_hit_legacy') is not null";
+
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject(query, new MapSqlParameterSource(), Boolean.class));
+    }
+
+    @Override
+    @Transactional
+    public int migrateBatch(int batchSize) {
+        String selectQuery = "select hit_id, app_name, app_uri, ip, timestamp from endpoint_hit_legacy " +
+                "order by hit_id limit :limit";
+        List<EndpointHit> endpointHits = new ArrayList<>(batchSize);
+        long[] lastHitId = new long[1];
+        int[] rows = new int[1];
+
+        jdbcTemplate.query(selectQuery, new MapSqlParameterSource("limit", batchSize), resultSet -> {
+            rows[0]++;
+            lastHitId[0] = resultSet.getLong("hit_id");
+            String ip = resultSet.getString("ip");
+            if (!IpAddressCodec.isValid(ip)) {
+                log.warn("Skipping legacy hit {} with malformed ip {}", lastHitId[0], ip);
+                return;
+            }
+            endpointHits.add(EndpointHit.builder()
+                    .app(resultSet.getString("app_name"))
+                    .uri(resultSet.getString("app_uri"))
+                    .ip(ip)
+                    .timestamp(resultSet.getTimestamp("timestamp").toLocalDateTime())
+                    .build());
+        });
+        if (rows[0] == 0) {
+            return 0;
+        }
+        if (!endpointHits.isEmpty()) {
+            dictionaryRepository.encode(endpointHits);
+            String insertQuery = "insert into endpoint_hit (app_id, uri_id, ip, timestamp) " +
+                    "values (:appId, :uriId, :ip, :timestamp)";
+            jdbcTemplate.batchUpdate(insertQuery, endpointHits.stream()
+                    .map(endpointHit -> new MapSqlParameterSource()
+                            .addValue("appId", endpointHit.getAppId())
+                            .addValue("uriId", endpointHit.getUriId())
+                            .addValue("ip", IpAddressCodec.pack(endpointHit.getIp()))
+                            .addValue("timestamp", EpochSeconds.of(endpointHit.getTimestamp())))
+                    .toArray(SqlParameterSource[]::new));
+        }
+        jdbcTemplate.update("delete from endpoint_hit_legacy where hit_id <= :lastHitId",
+                new MapSqlParameterSource("lastHitId", lastHitId[0]));
+        return rows[0];
+    }
+
+    @Override
+    public void dropLegacyTable() {
+        jdbcTemplate.update("drop table if exists endpoint_hit_legacy", new MapSqlParameterSource());
+    }
+}
@@ -0,0 +1,122 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Splits a stats range into slices of {@code slice-days} whole days and aggregates every slice with its own
+ * query on a fork-join pool, and sums the slice hit counts. Unique views are not sliced: merging exact
+ * visitor sets of the slices would hold every (app, uri, ip) of the range in memory, and they are left to
+ * the single query.
+ */
+@Component
+@Slf4j
+public class ParallelViewStatsAggregator {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ForkJoinPool pool;
+    private final int sliceDays;
+
+    public ParallelViewStatsAggregator(NamedParameterJdbcTemplate jdbcTemplate,
+                                       @Value("${statistic-service.aggregation.parallelism:4}") int parallelism,
+                                       @Value("${statistic-service.aggregation.slice-days:7}") int sliceDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.pool = new ForkJoinPool(parallelism);
+        this.sliceDays = sliceDays;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    public boolean isSliced(LocalDateTime start, LocalDateTime end) {
+        return slices(start, end).size() > 2;
+    }
+
+    /**
+     * @param queryBuilder builds the query of one exclusive {@code (from, to)} slice selecting
+     *                     {@code app_id, uri_id, hits}
+     * @return hits per (app id, uri id)
+     */
+    public Map<ViewKey, Long> aggregate(LocalDateTime start, LocalDateTime end, SliceQueryBuilder queryBuilder) {
+        List<LocalDateTime> bounds = slices(start, end);
+        long startedAt = System.nanoTime();
+        Map<ViewKey, Long> views = pool.invoke(new HitsTask(bounds, 0, bounds.size() - 1, queryBuilder));
+        log.debug("Aggregated {} slices in {} ms", bounds.size() - 1, (System.nanoTime() - startedAt) / 1_000_000);
+        return views;
+    }
+
+    /**
+     * Slice bounds; the first slice starts at {@code start}, the others one second before their first day,
+     * so every slice keeps the exclusive {@code (from, to)} semantics over whole-second timestamps.
+     */
+    private List<LocalDateTime> slices(LocalDateTime start, LocalDateTime end) {
+        List<LocalDateTime> bounds = new ArrayList<>();
+        bounds.add(start);
+        LocalDateTime bound = RollupGranularity.DAY.floor(start).plusDays(sliceDays);
+        while (bound.isBefore(end)) {
+            bounds.add(bound);
+            bound = bound.plusDays(sliceDays);
+        }
+        bounds.add(end);
+        return bounds;
+    }
+
+    private MapSqlParameterSource sliceQuery(List<LocalDateTime> bounds, int slice, SliceQueryBuilder queryBuilder,
+                                             StringBuilder query) {
+        LocalDateTime from = slice == 0 ? bounds.get(0) : bounds.get(slice).minusSeconds(1);
+        MapSqlParameterSource namedParams = new MapSqlParameterSource();
+        query.append(queryBuilder.build(from, bounds.get(slice + 1), namedParams));
+        return namedParams;
+    }
+
+    public interface SliceQueryBuilder {
+        String build(LocalDateTime from, LocalDateTime to, MapSqlParameterSource namedParams);
+    }
+
+    private class HitsTask extends RecursiveTask<Map<ViewKey, Long>> {
+        private final List<LocalDateTime> bounds;
+        private final int from;
+        private final int to;
+        private final SliceQueryBuilder queryBuilder;
+
+        HitsTask(List<LocalDateTime> bounds, int from, int to, SliceQueryBuilder queryBuilder) {
+            this.bounds = bounds;
+            this.from = from;
+            this.to = to;
+            this.queryBuilder = queryBuilder;
+        }
+
+        @Override
+        protected Map<ViewKey, Long> compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                HitsTask left = new HitsTask(bounds, from, middle, queryBuilder);
+                left.fork();
+                Map<ViewKey, Long> hits = new HitsTask(bounds, middle, to, queryBuilder).compute();
+                left.join().forEach((key, count) -> hits.merge(key, count, Long::sum));
+                return hits;
+            }
+            Map<ViewKey, Long> hits = new HashMap<>();
+            StringBuilder query = new StringBuilder();
+            MapSqlParameterSource namedParams = sliceQuery(bounds, from, queryBuilder, query);
+            jdbcTemplate.query(query.toString(), namedParams, resultSet -> {
+                hits.merge(new ViewKey(resultSet.getInt("app_id"), resultSet.getInt("uri_id")),
+                        resultSet.getLong("hits"), Long::sum);
+            });
+            return hits;
+        }
+    }
+}
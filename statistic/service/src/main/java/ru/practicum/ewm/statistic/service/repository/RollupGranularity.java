@@ -0,0 +1,31 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+@Getter
+@RequiredArgsConstructor
+public enum RollupGranularity {
+    MINUTE("hit_rollup_minute", ChronoUnit.MINUTES),
+    HOUR("hit_rollup_hour", ChronoUnit.HOURS),
+    DAY("hit_rollup_day", ChronoUnit.DAYS);
+
+    private final String table;
+    private final ChronoUnit unit;
+
+    public long getSeconds() {
+        return unit.getDuration().getSeconds();
+    }
+
+    public LocalDateTime floor(LocalDateTime timestamp) {
+        return timestamp.truncatedTo(unit);
+    }
+
+    public LocalDateTime ceil(LocalDateTime timestamp) {
+        LocalDateTime floor = floor(timestamp);
+        return floor.equals(timestamp) ? floor : floor.plus(1, unit);
+    }
+}
@@ -0,0 +1,68 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.experimental.UtilityClass;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits an exclusive {@code (start, end)} range into the coarsest rollup buckets that fit entirely
+ * inside it, falling back to finer buckets and finally to raw hits at the unaligned edges.
+ */
+@UtilityClass
+public class RollupQueryPlanner {
+
+    public List<RollupSegment> plan(LocalDateTime start, LocalDateTime end) {
+        List<RollupSegment> segments = new ArrayList<>();
+        LocalDateTime alignedStart = RollupGranularity.MINUTE.floor(start).plusMinutes(1);
+        LocalDateTime alignedEnd = RollupGranularity.MINUTE.floor(end);
+        if (!alignedStart.isBefore(alignedEnd)) {
+            segments.add(new RollupSegment(null, start, end, true));
+            return segments;
+        }
+        segments.add(new RollupSegment(null, start, alignedStart, true));
+        decompose(alignedStart, alignedEnd, RollupGranularity.DAY, segments);
+        if (alignedEnd.isBefore(end)) {
+            segments.add(new RollupSegment(null, alignedEnd, end, false));
+        }
+        return segments;
+    }
+
+    public List<RollupSegment> plan(LocalDateTime start, LocalDateTime end, RollupGranularity granularity) {
+        List<RollupSegment> segments = new ArrayList<>();
+        LocalDateTime alignedStart = granularity.floor(start).plus(1, granularity.getUnit());
+        LocalDateTime alignedEnd = granularity.floor(end);
+        if (!alignedStart.isBefore(alignedEnd)) {
+            segments.add(new RollupSegment(null, start, end, true));
+            return segments;
+        }
+        segments.add(new RollupSegment(null, start, alignedStart, true));
+        segments.add(new RollupSegment(granularity, alignedStart, alignedEnd, false));
+        if (alignedEnd.isBefore(end)) {
+            segments.add(new RollupSegment(null, alignedEnd, end, false));
+        }
+        return segments;
+    }
+
+    private void decompose(LocalDateTime from, LocalDateTime to, RollupGranularity granularity,
+                           List<RollupSegment> segments) {
+        if (!from.isBefore(to)) {
+            return;
+        }
+        if (granularity == RollupGranularity.MINUTE) {
+            segments.add(new RollupSegment(granularity, from, to, false));
+            return;
+        }
+        RollupGranularity finer = RollupGranularity.values()[granularity.ordinal() - 1];
+        LocalDateTime alignedFrom = granularity.ceil(from);
+        LocalDateTime alignedTo = granularity.floor(to);
+        if (!alignedFrom.isBefore(alignedTo)) {
+            decompose(from, to, finer, segments);
+            return;
+        }
+        decompose(from, alignedFrom, finer, segments);
+        segments.add(new RollupSegment(granularity, alignedFrom, alignedTo, false));
+        decompose(alignedTo, to, finer, segments);
+    }
+}
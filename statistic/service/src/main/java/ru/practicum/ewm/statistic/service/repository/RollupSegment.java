@@ -0,0 +1,22 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+/**
+ * Part of a stats range answered by a single source. A segment without granularity is read from
+ * raw hits; {@code fromExclusive} is set only for the leading raw edge, which keeps the original
+ * {@code timestamp > start} semantics. All other bounds are {@code [from, to)}.
+ */
+@Value
+public class RollupSegment {
+    RollupGranularity granularity;
+    LocalDateTime from;
+    LocalDateTime to;
+    boolean fromExclusive;
+
+    public boolean isRaw() {
+        return granularity == null;
+    }
+}
@@ -0,0 +1,42 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.support.AbstractSqlTypeValue;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+
+/**
+ * Binds a collection as one SQL array parameter. Long value lists filter through {@code = any(:param)}, so
+ * the statement text and its plan don't change with the list size as with one bind parameter per value.
+ */
+class SqlArrayValue extends AbstractSqlTypeValue {
+    private static final int MIN_ARRAY_LENGTH = 32;
+    private final String elementType;
+    private final Object[] elements;
+
+    SqlArrayValue(String elementType, Collection<?> elements) {
+        this.elementType = elementType;
+        this.elements = elements.toArray();
+    }
+
+    /**
+     * @return {@code column in (:param)} for short lists, {@code column = any(:param)} with the values bound
+     * as one array of {@code elementType} otherwise
+     */
+    static String in(String column, String param, String elementType, Collection<?> values,
+                     MapSqlParameterSource namedParams) {
+        if (values.size() < MIN_ARRAY_LENGTH) {
+            namedParams.addValue(param, values);
+            return column + " in (:" + param + ")";
+        }
+        namedParams.addValue(param, new SqlArrayValue(elementType, values));
+        return column + " = any(:" + param + ")";
+    }
+
+    @Override
+    protected Object createTypeValue(Connection connection, int sqlType, String typeName) throws SQLException {
+        return connection.createArrayOf(elementType, elements);
+    }
+}
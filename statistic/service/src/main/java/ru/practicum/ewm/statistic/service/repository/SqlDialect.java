@@ -0,0 +1,89 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Statements that differ between PostgreSQL and the H2 database used in tests.
+ * Columns are passed as {@code "name type"} pairs and bound by name; the types are only used for the
+ * casts H2 needs in {@code merge ... using (values ...)}.
+ */
+public enum SqlDialect {
+    POSTGRESQL,
+    H2;
+
+    public static SqlDialect fromJdbcUrl(String jdbcUrl) {
+        if (jdbcUrl.startsWith("jdbc:h2:")) {
+            return H2;
+        }
+        return POSTGRESQL;
+    }
+
+    public String counterUpsert(String table, String counterColumn, String... typedKeyColumns) {
+        List<String> keys = names(typedKeyColumns);
+        String keyList = String.join(", ", keys);
+        if (this == H2) {
+            return "merge into " + table + " t " +
+                    "using (values (" + typedParams(typedKeyColumns) + ", cast(:" + counterColumn + " as bigint))) " +
+                    "s (" + keyList + ", " + counterColumn + ") " +
+                    "on (" + joinCondition(keys) + ") " +
+                    "when matched then update set t." + counterColumn + " = t." + counterColumn + " + s." + counterColumn +
+                    " when not matched then insert (" + keyList + ", " + counterColumn + ") " +
+                    "values (" + prefixed(keys) + ", s." + counterColumn + ")";
+        }
+        return "insert into " + table + " (" + keyList + ", " + counterColumn + ") " +
+                "values (" + params(keys) + ", :" + counterColumn + ") " +
+                "on conflict (" + keyList + ") do update " +
+                "set " + counterColumn + " = " + table + "." + counterColumn + " + excluded." + counterColumn;
+    }
+
+    public String insertIgnore(String table, List<String> typedKeyColumns, List<String> typedValueColumns) {
+        List<String> keys = names(typedKeyColumns.toArray(String[]::new));
+        List<String> columns = names(Stream.concat(typedKeyColumns.stream(), typedValueColumns.stream())
+                .toArray(String[]::new));
+        String columnList = String.join(", ", columns);
+        if (this == H2) {
+            String[] typedColumns = Stream.concat(typedKeyColumns.stream(), typedValueColumns.stream())
+                    .toArray(String[]::new);
+            return "merge into " + table + " t " +
+                    "using (values (" + typedParams(typedColumns) + ")) s (" + columnList + ") " +
+                    "on (" + joinCondition(keys) + ") " +
+                    "when not matched then insert (" + columnList + ") values (" + prefixed(columns) + ")";
+        }
+        return "insert into " + table + " (" + columnList + ") values (" + params(columns) + ") " +
+                "on conflict (" + String.join(", ", keys) + ") do nothing";
+    }
+
+    private static List<String> names(String[] typedColumns) {
+        return Arrays.stream(typedColumns)
+                .map(typedColumn -> typedColumn.split(" ")[0])
+                .collect(Collectors.toList());
+    }
+
+    private static String typedParams(String[] typedColumns) {
+        return Arrays.stream(typedColumns)
+                .map(typedColumn -> typedColumn.split(" "))
+                .map(column -> "cast(:" + column[0] + " as " + column[1] + ")")
+                .collect(Collectors.joining(", "));
+    }
+
+    private static String params(List<String> columns) {
+        return columns.stream()
+                .map(column -> ":" + column)
+                .collect(Collectors.joining(", "));
+    }
+
+    private static String prefixed(List<String> columns) {
+        return columns.stream()
+                .map(column -> "s." + column)
+                .collect(Collectors.joining(", "));
+    }
+
+    private static String joinCondition(List<String> columns) {
+        return columns.stream()
+                .map(column -> "t." + column + " = s." + column)
+                .collect(Collectors.joining(" and "));
+    }
+}
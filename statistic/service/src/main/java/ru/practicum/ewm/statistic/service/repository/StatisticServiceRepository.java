@@ -1,17 +1,58 @@
 package ru.practicum.ewm.statistic.service.repository;
 
 import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsSeriesDto;
 import ru.practicum.ewm.statistic.service.model.EndpointHit;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 public interface StatisticServiceRepository {
     void save(EndpointHit endpointHit);
 
+    void saveAll(List<EndpointHit> endpointHits);
+
+    /**
+     * Bulk load path for backfills: COPY on PostgreSQL, batched inserts elsewhere.
+     */
+    void importAll(List<EndpointHit> endpointHits);
+
     void deleteAll();
 
     List<EndpointHit> findAll();
 
     List<ViewStatsDto> getViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+
+    /**
+     * Unique visitors of each entity, counted once however many of its uris and apps they viewed.
+     *
+     * @param entityIdsByUriId entity id of every uri to count, as resolved by the dictionary
+     */
+    Map<Long, Long> getUniqueEntityViews(LocalDateTime start, LocalDateTime end, Map<Integer, Long> entityIdsByUriId);
+
+    /**
+     * The {@code limit} most viewed uris, optionally of one app, counted from the rollups.
+     */
+    List<ViewStatsDto> getTopViewStats(LocalDateTime start, LocalDateTime end, String app, int limit);
+
+    /**
+     * Views of {@code uri} per {@code interval} bucket, buckets aligned to {@code interval}. Hits are read from
+     * the rollup of that interval when unique visitors are not requested, otherwise both counts come from one
+     * grouped pass over raw hits.
+     */
+    ViewStatsSeriesDto getViewStatsSeries(LocalDateTime start, LocalDateTime end, String uri,
+                                          RollupGranularity interval, boolean unique);
+
+    /**
+     * Same rows as {@link #getViewStats}, passed to the consumer while they are read from a database cursor.
+     */
+    void streamViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                         Consumer<ViewStatsDto> consumer);
+
+    /**
+     * Streams hits with {@code from <= timestamp < to}.
+     */
+    void scanHits(LocalDateTime from, LocalDateTime to, HitRowHandler handler);
 }
@@ -1,81 +1,688 @@
 package ru.practicum.ewm.statistic.service.repository;
 
-import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.stereotype.Component;
-import ru.practicum.ewm.statistic.dto.Formats;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsSeriesDto;
+import ru.practicum.ewm.statistic.dto.ip.IpAddressCodec;
 import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.sketch.HyperLogLog;
 
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.time.Clock;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
 
 @Component
-@RequiredArgsConstructor
+@Slf4j
 public class StatisticServiceRepositoryJDBCImpl implements StatisticServiceRepository {
 
     private final NamedParameterJdbcTemplate jdbcTemplate;
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Formats.DATE_TIME_PATTERN);
+    private final NamedParameterJdbcTemplate streamingJdbcTemplate;
+    private final HitDictionaryRepository dictionaryRepository;
+    private final List<HitAggregateRepository> aggregateRepositories;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SqlDialect sqlDialect;
+    private final ParallelViewStatsAggregator parallelAggregator;
+    private final HitCompactionRepository compactionRepository;
+    private final LegacyHitRepository legacyHitRepository;
+    private final HitVisitorRepository visitorRepository;
+    private final Clock clock;
+    private final int migrationBatchSize;
+    private final long boundsRefreshMs;
+    private final boolean parallelEngine;
+    private final Timer aggregationTimer;
+    // null until loaded or after hits were deleted
+    private volatile HitBounds bounds;
+
+    public StatisticServiceRepositoryJDBCImpl(
+            NamedParameterJdbcTemplate jdbcTemplate,
+            HitDictionaryRepository dictionaryRepository,
+            List<HitAggregateRepository> aggregateRepositories,
+            ApplicationEventPublisher eventPublisher,
+            SqlDialect sqlDialect,
+            ParallelViewStatsAggregator parallelAggregator,
+            HitCompactionRepository compactionRepository,
+            LegacyHitRepository legacyHitRepository,
+            HitVisitorRepository visitorRepository,
+            MeterRegistry meterRegistry,
+            Clock clock,
+            @Value("${statistic-service.stream.fetch-size:1000}") int streamFetchSize,
+            @Value("${statistic-service.migration.batch-size:10000}") int migrationBatchSize,
+            @Value("${statistic-service.stats.bounds-refresh-ms:1000}") long boundsRefreshMs,
+            @Value("${statistic-service.aggregation.engine:sql}") String aggregationEngine) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sqlDialect = sqlDialect;
+        this.dictionaryRepository = dictionaryRepository;
+        this.aggregateRepositories = aggregateRepositories;
+        this.eventPublisher = eventPublisher;
+        this.parallelAggregator = parallelAggregator;
+        this.compactionRepository = compactionRepository;
+        this.legacyHitRepository = legacyHitRepository;
+        this.visitorRepository = visitorRepository;
+        this.clock = clock;
+        this.migrationBatchSize = migrationBatchSize;
+        this.boundsRefreshMs = boundsRefreshMs;
+        this.parallelEngine = "parallel".equals(aggregationEngine);
+        // tagged per engine, so deployments running either one can be compared
+        this.aggregationTimer = meterRegistry.timer("stats.aggregation", "engine", aggregationEngine);
+        JdbcTemplate streamingTemplate = new JdbcTemplate(jdbcTemplate.getJdbcTemplate().getDataSource());
+        streamingTemplate.setFetchSize(streamFetchSize);
+        this.streamingJdbcTemplate = new NamedParameterJdbcTemplate(streamingTemplate);
+    }
+
+    @PostConstruct
+    public void initAggregates() {
+        migrateLegacyHits();
+        if (hasNoRawHits()) {
+            return;
+        }
+        aggregateRepositories.stream()
+                .filter(HitAggregateRepository::isEmpty)
+                .forEach(aggregateRepository -> {
+                    log.info("{} is empty, rebuilding it from raw hits", aggregateRepository.getClass().getSimpleName());
+                    aggregateRepository.rebuildFromRawHits();
+                });
+    }
+
+    // runs before the aggregates are checked, so they are rebuilt from the migrated hits
+    private void migrateLegacyHits() {
+        if (!legacyHitRepository.hasLegacyHits()) {
+            return;
+        }
+        log.info("Migrating hits from endpoint_hit_legacy");
+        long migrated = 0;
+        int batch;
+        while ((batch = legacyHitRepository.migrateBatch(migrationBatchSize)) > 0) {
+            migrated += batch;
+            log.info("Migrated {} legacy hits", migrated);
+        }
+        legacyHitRepository.dropLegacyTable();
+    }
 
     @Override
+    @Transactional
     public void save(EndpointHit endpointHit) {
-        String query = "insert into endpoint_hit (app_name, app_uri, ip, timestamp) " +
-                "values (:app, :uri, :ip, :timestamp)";
+        dictionaryRepository.encode(List.of(endpointHit));
+        String query = "insert into endpoint_hit (app_id, uri_id, ip, timestamp) " +
+                "values (:appId, :uriId, :ip, :timestamp)";
         SqlParameterSource namedParams = new MapSqlParameterSource()
-                .addValue("app", endpointHit.getApp())
-                .addValue("uri", endpointHit.getUri())
-                .addValue("ip", endpointHit.getIp())
-                .addValue("timestamp", endpointHit.getTimestamp());
+                .addValue("appId", endpointHit.getAppId())
+                .addValue("uriId", endpointHit.getUriId())
+                .addValue("ip", IpAddressCodec.pack(endpointHit.getIp()))
+                .addValue("timestamp", EpochSeconds.of(endpointHit.getTimestamp()));
 
         jdbcTemplate.update(query, namedParams);
+        extendBounds(List.of(endpointHit));
+        aggregateRepositories.forEach(aggregateRepository -> aggregateRepository.addHits(List.of(endpointHit)));
+        eventPublisher.publishEvent(new HitsSavedEvent(List.of(endpointHit)));
+    }
+
+    @Override
+    @Transactional
+    public void saveAll(List<EndpointHit> endpointHits) {
+        dictionaryRepository.encode(endpointHits);
+        String query = "insert into endpoint_hit (app_id, uri_id, ip, timestamp) " +
+                "values (:appId, :uriId, :ip, :timestamp)";
+        SqlParameterSource[] batchParams = endpointHits.stream()
+                .map(endpointHit -> new MapSqlParameterSource()
+                        .addValue("appId", endpointHit.getAppId())
+                        .addValue("uriId", endpointHit.getUriId())
+                        .addValue("ip", IpAddressCodec.pack(endpointHit.getIp()))
+                        .addValue("timestamp", EpochSeconds.of(endpointHit.getTimestamp())))
+                .toArray(SqlParameterSource[]::new);
+
+        jdbcTemplate.batchUpdate(query, batchParams);
+        extendBounds(endpointHits);
+        aggregateRepositories.forEach(aggregateRepository -> aggregateRepository.addHits(endpointHits));
+        eventPublisher.publishEvent(new HitsSavedEvent(endpointHits));
+    }
+
+    @Override
+    @Transactional
+    public void importAll(List<EndpointHit> endpointHits) {
+        if (sqlDialect != SqlDialect.POSTGRESQL) {
+            saveAll(endpointHits);
+            return;
+        }
+        dictionaryRepository.encode(endpointHits);
+        copyIntoEndpointHit(endpointHits);
+        extendBounds(endpointHits);
+        aggregateRepositories.forEach(aggregateRepository -> aggregateRepository.addHits(endpointHits));
+        eventPublisher.publishEvent(new HitsSavedEvent(endpointHits));
+    }
+
+    private void copyIntoEndpointHit(List<EndpointHit> endpointHits) {
+        String query = "copy endpoint_hit (app_id, uri_id, ip, timestamp) from stdin with (format csv)";
+        StringBuilder rows = new StringBuilder(endpointHits.size() * 48);
+        for (EndpointHit endpointHit : endpointHits) {
+            rows.append(endpointHit.getAppId()).append(',')
+                    .append(endpointHit.getUriId()).append(",\\x");
+            for (byte b : IpAddressCodec.pack(endpointHit.getIp())) {
+                rows.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            }
+            rows.append(',').append(EpochSeconds.of(endpointHit.getTimestamp())).append('\n');
+        }
+
+        DataSource dataSource = jdbcTemplate.getJdbcTemplate().getDataSource();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            copyManager.copyIn(query, new StringReader(rows.toString()));
+        } catch (SQLException e) {
+            DataAccessException translated = jdbcTemplate.getJdbcTemplate().getExceptionTranslator()
+                    .translate("COPY endpoint_hit", query, e);
+            throw translated != null ? translated : new DataAccessResourceFailureException(e.getMessage(), e);
+        } catch (IOException e) {
+            throw new DataAccessResourceFailureException("Failed to stream hits to COPY endpoint_hit", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
     }
 
     @Override
     public List<ViewStatsDto> getViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
+        return aggregationTimer.record(() -> {
+            List<ViewStatsDto> stats = new ArrayList<>();
+            if (parallelEngine && !unique && parallelAggregator.isSliced(start, end)) {
+                aggregateViewStatsInParallel(start, end, uris, stats::add);
+            } else {
+                queryViewStats(jdbcTemplate, start, end, uris, unique, stats::add);
+            }
+            return stats;
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                Consumer<ViewStatsDto> consumer) {
+        queryViewStats(streamingJdbcTemplate, start, end, uris, unique, consumer);
+    }
+
+    private void queryViewStats(NamedParameterJdbcTemplate template, LocalDateTime start, LocalDateTime end,
+                                List<String> uris, boolean unique, Consumer<ViewStatsDto> consumer) {
+        List<Integer> uriIds = findUriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return;
+        }
+        boolean allHits = unique && coversAllHits(start, end);
+        Optional<LocalDateTime> horizon = compactionRepository.findHorizon();
+        if (unique && !allHits && horizon.isPresent() && isBefore(start, horizon.get())) {
+            queryCompactedUniqueViewStats(start, end, uriIds, horizon.get(), consumer);
+            return;
+        }
+        MapSqlParameterSource namedParams = new MapSqlParameterSource();
+        String uriFilter = uriIds != null ? UriIdPredicate.of(uriIds, namedParams) : null;
+        String query;
+        boolean approximate = false;
+        if (allHits) {
+            query = buildVisitorCountQuery(uriFilter);
+        } else if (unique) {
+            query = buildRawViewStatsQuery(start, end, uriFilter, true, namedParams);
+        } else {
+            query = buildRolledUpViewStatsQuery(start, end, uriFilter, null, horizon.orElse(null), namedParams);
+            approximate = horizon.isPresent() && hasCompactedEdge(start, end, horizon.get());
+        }
+
+        boolean approximateRows = approximate;
+        template.query(query, namedParams, resultSet -> {
+            consumer.accept(mapRowToViewStatsDto(resultSet, approximateRows));
+        });
+    }
+
+    @Override
+    public Map<Long, Long> getUniqueEntityViews(LocalDateTime start, LocalDateTime end,
+                                                Map<Integer, Long> entityIdsByUriId) {
+        if (entityIdsByUriId.isEmpty()) {
+            return Map.of();
+        }
+        List<Integer> uriIds = List.copyOf(entityIdsByUriId.keySet());
+        boolean allHits = coversAllHits(start, end);
+        Optional<LocalDateTime> horizon = compactionRepository.findHorizon();
+        if (!allHits && horizon.isPresent() && isBefore(start, horizon.get())) {
+            return queryCompactedEntityViews(start, end, entityIdsByUriId, horizon.get());
+        }
+        MapSqlParameterSource namedParams = new MapSqlParameterSource();
+        String uriFilter = UriIdPredicate.of(uriIds, namedParams);
+        String visitors;
+        if (allHits) {
+            visitors = "select uri_id, ip from uri_visitor where " + uriFilter;
+        } else {
+            visitors = "select uri_id, ip from endpoint_hit " +
+                    "where timestamp > :start and timestamp < :end and " + uriFilter;
+            namedParams.addValue("start", EpochSeconds.of(start))
+                    .addValue("end", EpochSeconds.of(end));
+        }
+        String query = "select d.entity_id, count(distinct v.ip) as hits from (" + visitors + ") v " +
+                "join uri_dictionary d on d.uri_id = v.uri_id " +
+                "group by d.entity_id";
+
+        Map<Long, Long> views = new HashMap<>();
+        jdbcTemplate.query(query, namedParams, resultSet -> {
+            views.put(resultSet.getLong("entity_id"), resultSet.getLong("hits"));
+        });
+        return views;
+    }
+
+    /**
+     * Merges the visitor sketches of all apps and uris of each entity, so visitors touching compacted days are
+     * estimated but still counted once per entity.
+     */
+    private Map<Long, Long> queryCompactedEntityViews(LocalDateTime start, LocalDateTime end,
+                                                      Map<Integer, Long> entityIdsByUriId, LocalDateTime horizon) {
+        Map<Long, HyperLogLog> visitors = new HashMap<>();
+        mergeCompactedVisitors(start, end, List.copyOf(entityIdsByUriId.keySet()), horizon)
+                .forEach((key, sketch) -> visitors.computeIfAbsent(entityIdsByUriId.get(key.getUriId()),
+                        k -> new HyperLogLog()).merge(sketch));
+        Map<Long, Long> views = new HashMap<>();
+        visitors.forEach((entityId, sketch) -> views.put(entityId, sketch.estimate()));
+        return views;
+    }
+
+    private void aggregateViewStatsInParallel(LocalDateTime start, LocalDateTime end, List<String> uris,
+                                              Consumer<ViewStatsDto> consumer) {
+        List<Integer> uriIds = findUriIds(uris);
+        if (uriIds != null && uriIds.isEmpty()) {
+            return;
+        }
+        if (isCompacted(start)) {
+            queryViewStats(jdbcTemplate, start, end, uris, false, consumer);
+            return;
+        }
+        Map<ViewKey, Long> views = parallelAggregator.aggregate(start, end, (from, to, namedParams) ->
+                buildRolledUpViewStatsQuery(from, to, uriIds != null ? UriIdPredicate.of(uriIds, namedParams) : null,
+                        null, null, namedParams));
+        acceptByHits(views, false, consumer);
+    }
+
+    /**
+     * Unions the visitor sketches of compacted days with the raw hits left in {@code (start, end)}, including
+     * those below the compaction horizon that were not compacted yet. Compacted days overlapping the range are
+     * counted whole and the result is an estimate.
+     */
+    private void queryCompactedUniqueViewStats(LocalDateTime start, LocalDateTime end, List<Integer> uriIds,
+                                               LocalDateTime horizon, Consumer<ViewStatsDto> consumer) {
+        Map<ViewKey, HyperLogLog> visitors = mergeCompactedVisitors(start, end, uriIds, horizon);
+        Map<ViewKey, Long> views = new HashMap<>();
+        visitors.forEach((key, sketch) -> views.put(key, sketch.estimate()));
+        acceptByHits(views, true, consumer);
+    }
+
+    private Map<ViewKey, HyperLogLog> mergeCompactedVisitors(LocalDateTime start, LocalDateTime end,
+                                                             List<Integer> uriIds, LocalDateTime horizon) {
+        LocalDateTime compactedEnd = end.isBefore(horizon) ? end : horizon;
+        Map<ViewKey, HyperLogLog> visitors = compactionRepository.mergeVisitors(RollupGranularity.DAY.floor(start),
+                compactedEnd, uriIds);
+        MapSqlParameterSource namedParams = new MapSqlParameterSource();
+        String uriFilter = uriIds != null ? UriIdPredicate.of(uriIds, namedParams) : null;
+        String query = buildVisitorsQuery(start, end, uriFilter, namedParams);
+        jdbcTemplate.query(query, namedParams, resultSet -> {
+            ViewKey key = new ViewKey(resultSet.getInt("app_id"), resultSet.getInt("uri_id"));
+            visitors.computeIfAbsent(key, k -> new HyperLogLog())
+                    .add(HyperLogLog.hash(resultSet.getBytes("ip")));
+        });
+        return visitors;
+    }
+
+    private void acceptByHits(Map<ViewKey, Long> views, boolean approximate, Consumer<ViewStatsDto> consumer) {
+        views.entrySet().stream()
+                .sorted((first, second) -> Long.compare(second.getValue(), first.getValue()))
+                .map(view -> ViewStatsDto.builder()
+                        .app(dictionaryRepository.getAppName(view.getKey().getAppId()))
+                        .uri(dictionaryRepository.getUri(view.getKey().getUriId()))
+                        .hits(view.getValue())
+                        .approximate(approximate ? true : null)
+                        .build())
+                .forEach(consumer);
+    }
+
+    /**
+     * @return ids of the requested uris, or null when they are not filtered
+     */
+    private List<Integer> findUriIds(List<String> uris) {
+        if (uris == null || uris.isEmpty()) {
+            return null;
+        }
+        return dictionaryRepository.findUriIds(uris);
+    }
+
+    private boolean isCompacted(LocalDateTime start) {
+        return compactionRepository.findHorizon()
+                .map(horizon -> isBefore(start, horizon))
+                .orElse(false);
+    }
+
+    /**
+     * True when hits after the exclusive {@code start} may lie before {@code horizon}.
+     */
+    private static boolean isBefore(LocalDateTime start, LocalDateTime horizon) {
+        return start.plusSeconds(1).isBefore(horizon);
+    }
+
+    /**
+     * True when no stored hit, raw or compacted, lies outside {@code (start, end)}, so all-time visitor counts
+     * are exact for it.
+     */
+    private boolean coversAllHits(LocalDateTime start, LocalDateTime end) {
+        if (!visitorRepository.isEnabled()) {
+            return false;
+        }
+        HitBounds current = bounds;
+        if (current == null || clock.millis() - current.getLoadedAt() > boundsRefreshMs) {
+            current = loadBounds();
+            bounds = current;
+        }
+        return EpochSeconds.of(start) < current.getFirstHit() && EpochSeconds.of(end) > current.getLastHit();
+    }
+
+    /**
+     * Bounds are refreshed every {@code bounds-refresh-ms} for hits saved by other instances; hits saved here
+     * widen them at once, which can only make {@link #coversAllHits} more cautious.
+     */
+    private HitBounds loadBounds() {
+        String query = "select min(first_hit) as first_hit, max(last_hit) as last_hit from (" +
+                "select min(timestamp) as first_hit, max(timestamp) as last_hit from endpoint_hit " +
+                "union all " +
+                "select min(bucket), max(bucket) + :lastSecond from hit_compacted_day) h";
+        MapSqlParameterSource namedParams = new MapSqlParameterSource("lastSecond",
+                RollupGranularity.DAY.getSeconds() - 1);
+        long loadedAt = clock.millis();
+
+        return jdbcTemplate.query(query, namedParams, resultSet -> {
+            resultSet.next();
+            long firstHit = resultSet.getLong("first_hit");
+            if (resultSet.wasNull()) {
+                return new HitBounds(Long.MAX_VALUE, Long.MIN_VALUE, loadedAt);
+            }
+            return new HitBounds(firstHit, resultSet.getLong("last_hit"), loadedAt);
+        });
+    }
+
+    private synchronized void extendBounds(List<EndpointHit> endpointHits) {
+        HitBounds current = bounds;
+        if (current == null) {
+            return;
+        }
+        long firstHit = current.getFirstHit();
+        long lastHit = current.getLastHit();
+        for (EndpointHit endpointHit : endpointHits) {
+            long timestamp = EpochSeconds.of(endpointHit.getTimestamp());
+            firstHit = Math.min(firstHit, timestamp);
+            lastHit = Math.max(lastHit, timestamp);
+        }
+        bounds = new HitBounds(firstHit, lastHit, current.getLoadedAt());
+    }
+
+    /**
+     * Compaction widens the bounds to whole days, retention narrows them.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onHitsExpired(HitsExpiredEvent event) {
+        bounds = null;
+    }
+
+    private String buildVisitorCountQuery(String uriFilter) {
+        StringBuilder queryBuilder = new StringBuilder("select app_id, uri_id, visitors as hits ");
+        queryBuilder.append("from uri_visitor_count ");
+        if (uriFilter != null) {
+            queryBuilder.append("where ").append(uriFilter).append(" ");
+        }
+        queryBuilder.append("order by hits DESC");
+        return queryBuilder.toString();
+    }
+
+    private String buildRawViewStatsQuery(LocalDateTime start, LocalDateTime end, String uriFilter,
+                                          boolean unique, MapSqlParameterSource namedParams) {
         StringBuilder queryBuilder = new StringBuilder();
         if (unique) {
-            queryBuilder.append("select app_name, app_uri, count(distinct ip) as hits ");
+            queryBuilder.append("select app_id, uri_id, count(distinct ip) as hits ");
         } else {
-            queryBuilder.append("select app_name, app_uri, count(ip) as hits ");
+            queryBuilder.append("select app_id, uri_id, count(ip) as hits ");
         }
         queryBuilder.append("from endpoint_hit ");
         queryBuilder.append("where timestamp > :start ");
         queryBuilder.append("and timestamp < :end ");
-        if (uris != null && !uris.isEmpty()) {
-            queryBuilder.append("and app_uri in (:uris) ");
+        if (uriFilter != null) {
+            queryBuilder.append("and ").append(uriFilter).append(" ");
         }
-        queryBuilder.append("group by app_name, app_uri ");
+        queryBuilder.append("group by app_id, uri_id ");
         queryBuilder.append("order by hits DESC");
 
-        SqlParameterSource namedParams = new MapSqlParameterSource()
-                .addValue("start", start)
-                .addValue("end", end)
-                .addValue("uris", uris);
+        namedParams.addValue("start", EpochSeconds.of(start))
+                .addValue("end", EpochSeconds.of(end));
+        return queryBuilder.toString();
+    }
 
-        try {
-            return jdbcTemplate.query(queryBuilder.toString(), namedParams, this::mapRowToViewStatsDto);
-        } catch (EmptyResultDataAccessException ex) {
-            return List.of();
+    private String buildVisitorsQuery(LocalDateTime start, LocalDateTime end, String uriFilter,
+                                      MapSqlParameterSource namedParams) {
+        namedParams.addValue("start", EpochSeconds.of(start))
+                .addValue("end", EpochSeconds.of(end));
+        return "select app_id, uri_id, ip from endpoint_hit " +
+                "where timestamp > :start and timestamp < :end " +
+                (uriFilter != null ? "and " + uriFilter + " " : "") +
+                "group by app_id, uri_id, ip";
+    }
+
+    @Override
+    public List<ViewStatsDto> getTopViewStats(LocalDateTime start, LocalDateTime end, String app, int limit) {
+        Integer appId = null;
+        if (app != null) {
+            Optional<Integer> knownAppId = dictionaryRepository.findAppId(app);
+            if (knownAppId.isEmpty()) {
+                return List.of();
+            }
+            appId = knownAppId.get();
+        }
+        MapSqlParameterSource namedParams = new MapSqlParameterSource("appId", appId)
+                .addValue("limit", limit);
+        LocalDateTime horizon = compactionRepository.findHorizon().orElse(null);
+        String query = buildRolledUpViewStatsQuery(start, end, null, appId, horizon, namedParams) + " limit :limit";
+        boolean approximate = horizon != null && hasCompactedEdge(start, end, horizon);
+
+        return jdbcTemplate.query(query, namedParams,
+                (resultSet, rowNum) -> mapRowToViewStatsDto(resultSet, approximate));
+    }
+
+    /**
+     * True when an unaligned edge of {@code (start, end)} lies below the compaction horizon, where its raw hits
+     * are gone and the rolled up query counts its whole minute.
+     */
+    private static boolean hasCompactedEdge(LocalDateTime start, LocalDateTime end, LocalDateTime horizon) {
+        return RollupQueryPlanner.plan(start, end).stream()
+                .anyMatch(segment -> segment.isRaw() && segment.getFrom().isBefore(horizon));
+    }
+
+    /**
+     * Rollups keep the hits that compaction deleted from {@code endpoint_hit}, so whole minutes stay exact below
+     * the compaction {@code horizon}. Only raw edges below it have lost their hits; they are read from the minute
+     * rollup around them instead, which overcounts them, see {@link #hasCompactedEdge}.
+     *
+     * @param horizon end of the last compacted day, or null when no hits were compacted
+     */
+    private String buildRolledUpViewStatsQuery(LocalDateTime start, LocalDateTime end, String uriFilter,
+                                               Integer appId, LocalDateTime horizon,
+                                               MapSqlParameterSource namedParams) {
+        StringBuilder queryBuilder = new StringBuilder("select app_id, uri_id, sum(hits) as hits from (");
+        List<RollupSegment> segments = RollupQueryPlanner.plan(start, end);
+        for (int i = 0; i < segments.size(); i++) {
+            RollupSegment segment = segments.get(i);
+            String from = "from" + i;
+            String to = "to" + i;
+            if (i > 0) {
+                queryBuilder.append(" union all ");
+            }
+            if (segment.isRaw() && horizon != null && segment.getFrom().isBefore(horizon)) {
+                segment = new RollupSegment(RollupGranularity.MINUTE,
+                        RollupGranularity.MINUTE.floor(segment.getFrom()),
+                        RollupGranularity.MINUTE.ceil(segment.getTo()), false);
+            }
+            if (segment.isRaw()) {
+                queryBuilder.append("select app_id, uri_id, count(ip) as hits from endpoint_hit ");
+                queryBuilder.append(segment.isFromExclusive() ? "where timestamp > :" : "where timestamp >= :")
+                        .append(from);
+                queryBuilder.append(" and timestamp < :").append(to);
+            } else {
+                queryBuilder.append("select app_id, uri_id, sum(hits) as hits from ")
+                        .append(segment.getGranularity().getTable());
+                queryBuilder.append(" where bucket >= :").append(from);
+                queryBuilder.append(" and bucket < :").append(to);
+            }
+            if (uriFilter != null) {
+                queryBuilder.append(" and ").append(uriFilter);
+            }
+            if (appId != null) {
+                queryBuilder.append(" and app_id = :appId");
+            }
+            queryBuilder.append(" group by app_id, uri_id");
+            namedParams.addValue(from, EpochSeconds.of(segment.getFrom()));
+            namedParams.addValue(to, EpochSeconds.of(segment.getTo()));
         }
+        queryBuilder.append(") parts group by app_id, uri_id order by hits DESC");
+        return queryBuilder.toString();
     }
 
     @Override
+    public ViewStatsSeriesDto getViewStatsSeries(LocalDateTime start, LocalDateTime end, String uri,
+                                                 RollupGranularity interval, boolean unique) {
+        long origin = EpochSeconds.of(interval.floor(start));
+        long width = interval.getSeconds();
+        int buckets = (int) Math.max(1, (EpochSeconds.of(end) - origin + width - 1) / width);
+        List<Long> timestamps = new ArrayList<>(buckets);
+        for (int i = 0; i < buckets; i++) {
+            timestamps.add(origin + i * width);
+        }
+        List<Long> hits = new ArrayList<>(Collections.nCopies(buckets, 0L));
+        List<Long> uniqueHits = unique ? new ArrayList<>(Collections.nCopies(buckets, 0L)) : null;
+        ViewStatsSeriesDto series = new ViewStatsSeriesDto(uri, interval.name().toLowerCase(Locale.ROOT),
+                timestamps, hits, uniqueHits);
+
+        List<Integer> uriIds = dictionaryRepository.findUriIds(List.of(uri));
+        if (uriIds.isEmpty()) {
+            return series;
+        }
+        MapSqlParameterSource namedParams = new MapSqlParameterSource()
+                .addValue("origin", origin)
+                .addValue("width", width);
+        String uriFilter = UriIdPredicate.of(uriIds, namedParams);
+        String query = unique
+                ? buildRawSeriesQuery(start, end, uriFilter, namedParams)
+                : buildRolledUpSeriesQuery(start, end, uriFilter, interval, namedParams);
+
+        jdbcTemplate.query(query, namedParams, resultSet -> {
+            int slot = resultSet.getInt("slot");
+            if (slot >= 0 && slot < buckets) {
+                hits.set(slot, resultSet.getLong("hits"));
+                if (unique) {
+                    uniqueHits.set(slot, resultSet.getLong("unique_hits"));
+                }
+            }
+        });
+        return series;
+    }
+
+    private String buildRawSeriesQuery(LocalDateTime start, LocalDateTime end, String uriFilter,
+                                       MapSqlParameterSource namedParams) {
+        namedParams.addValue("start", EpochSeconds.of(start))
+                .addValue("end", EpochSeconds.of(end));
+        return "select slot, count(ip) as hits, count(distinct ip) as unique_hits from (" +
+                "select (timestamp - :origin) / :width as slot, ip from endpoint_hit " +
+                "where timestamp > :start and timestamp < :end and " + uriFilter +
+                ") h group by slot";
+    }
+
+    private String buildRolledUpSeriesQuery(LocalDateTime start, LocalDateTime end, String uriFilter,
+                                            RollupGranularity interval, MapSqlParameterSource namedParams) {
+        StringBuilder queryBuilder = new StringBuilder("select slot, sum(hits) as hits from (");
+        List<RollupSegment> segments = RollupQueryPlanner.plan(start, end, interval);
+        for (int i = 0; i < segments.size(); i++) {
+            RollupSegment segment = segments.get(i);
+            String from = "from" + i;
+            String to = "to" + i;
+            if (i > 0) {
+                queryBuilder.append(" union all ");
+            }
+            if (segment.isRaw()) {
+                queryBuilder.append("select (timestamp - :origin) / :width as slot, cast(1 as bigint) as hits ");
+                queryBuilder.append("from endpoint_hit ");
+                queryBuilder.append(segment.isFromExclusive() ? "where timestamp > :" : "where timestamp >= :")
+                        .append(from);
+                queryBuilder.append(" and timestamp < :").append(to);
+            } else {
+                queryBuilder.append("select (bucket - :origin) / :width as slot, hits from ")
+                        .append(segment.getGranularity().getTable());
+                queryBuilder.append(" where bucket >= :").append(from);
+                queryBuilder.append(" and bucket < :").append(to);
+            }
+            queryBuilder.append(" and ").append(uriFilter);
+            namedParams.addValue(from, EpochSeconds.of(segment.getFrom()));
+            namedParams.addValue(to, EpochSeconds.of(segment.getTo()));
+        }
+        queryBuilder.append(") parts group by slot");
+        return queryBuilder.toString();
+    }
+
+    @Override
+    public void scanHits(LocalDateTime from, LocalDateTime to, HitRowHandler handler) {
+        String query = "select app_id, uri_id, ip, timestamp from endpoint_hit " +
+                "where timestamp >= :from and timestamp < :to";
+        SqlParameterSource namedParams = new MapSqlParameterSource()
+                .addValue("from", EpochSeconds.of(from))
+                .addValue("to", EpochSeconds.of(to));
+
+        jdbcTemplate.query(query, namedParams, resultSet -> {
+            handler.processHit(resultSet.getInt("app_id"), resultSet.getInt("uri_id"),
+                    resultSet.getBytes("ip"), resultSet.getLong("timestamp"));
+        });
+    }
+
+    @Override
+    @Transactional
     public void deleteAll() {
         String query = "delete from endpoint_hit";
 
         jdbcTemplate.update(query, new MapSqlParameterSource());
+        compactionRepository.deleteAll();
+        aggregateRepositories.forEach(HitAggregateRepository::deleteAll);
+        bounds = null;
+        eventPublisher.publishEvent(new HitsDeletedEvent());
     }
 
     @Override
     public List<EndpointHit> findAll() {
-        String query = "select hit_id, app_name, app_uri, ip, timestamp " +
-                "from endpoint_hit";
+        String query = "select h.hit_id, a.app_name, u.app_uri, h.ip, h.timestamp " +
+                "from endpoint_hit h " +
+                "join app_dictionary a on a.app_id = h.app_id " +
+                "join uri_dictionary u on u.uri_id = h.uri_id";
         try {
             return jdbcTemplate.query(query, this::mapRowToEndpointHit);
         } catch (EmptyResultDataAccessException ex) {
@@ -83,11 +690,19 @@ public class StatisticServiceRepositoryJDBCImpl implements StatisticServiceRepos
         }
     }
 
-    private ViewStatsDto mapRowToViewStatsDto(ResultSet resultSet, int rowNum) throws SQLException {
+    private boolean hasNoRawHits() {
+        String query = "select count(*) from (select 1 from endpoint_hit limit 1) h";
+
+        Integer count = jdbcTemplate.queryForObject(query, new MapSqlParameterSource(), Integer.class);
+        return count == null || count == 0;
+    }
+
+    private ViewStatsDto mapRowToViewStatsDto(ResultSet resultSet, boolean approximate) throws SQLException {
         return ViewStatsDto.builder()
-                .app(resultSet.getString("app_name"))
-                .uri(resultSet.getString("app_uri"))
+                .app(dictionaryRepository.getAppName(resultSet.getInt("app_id")))
+                .uri(dictionaryRepository.getUri(resultSet.getInt("uri_id")))
                 .hits(resultSet.getLong("hits"))
+                .approximate(approximate ? true : null)
                 .build();
     }
 
@@ -96,8 +711,15 @@ public class StatisticServiceRepositoryJDBCImpl implements StatisticServiceRepos
                 .id(resultSet.getLong("hit_id"))
                 .app(resultSet.getString("app_name"))
                 .uri(resultSet.getString("app_uri"))
-                .ip(resultSet.getString("ip"))
-                .timestamp(LocalDateTime.parse(resultSet.getString("timestamp"), formatter))
+                .ip(IpAddressCodec.unpack(resultSet.getBytes("ip")))
+                .timestamp(EpochSeconds.toLocalDateTime(resultSet.getLong("timestamp")))
                 .build();
     }
+
+    @lombok.Value
+    private static class HitBounds {
+        long firstHit;
+        long lastHit;
+        long loadedAt;
+    }
 }
@@ -0,0 +1,56 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+/**
+ * {@code uri_id} filter for an id set. Runs of consecutive ids, typical for the expansion of a uri prefix,
+ * become {@code between} ranges instead of long {@code in} lists, and many single ids are bound as one array.
+ */
+@UtilityClass
+class UriIdPredicate {
+    private static final int MIN_RANGE_LENGTH = 4;
+
+    String of(List<Integer> uriIds, MapSqlParameterSource namedParams) {
+        List<Integer> singleIds = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        Integer runStart = null;
+        int previous = 0;
+        for (int id : new TreeSet<>(uriIds)) {
+            if (runStart != null && id == previous + 1) {
+                previous = id;
+                continue;
+            }
+            if (runStart != null) {
+                addRun(runStart, previous, singleIds, conditions, namedParams);
+            }
+            runStart = id;
+            previous = id;
+        }
+        if (runStart != null) {
+            addRun(runStart, previous, singleIds, conditions, namedParams);
+        }
+        if (!singleIds.isEmpty()) {
+            conditions.add(SqlArrayValue.in("uri_id", "uriIds", "integer", singleIds, namedParams));
+        }
+        return conditions.size() == 1 ? conditions.get(0) : "(" + String.join(" or ", conditions) + ")";
+    }
+
+    private void addRun(int from, int to, List<Integer> singleIds, List<String> conditions,
+                        MapSqlParameterSource namedParams) {
+        if (to - from + 1 < MIN_RANGE_LENGTH) {
+            for (int id = from; id <= to; id++) {
+                singleIds.add(id);
+            }
+            return;
+        }
+        String fromParam = "uriIdFrom" + conditions.size();
+        String toParam = "uriIdTo" + conditions.size();
+        namedParams.addValue(fromParam, from).addValue(toParam, to);
+        conditions.add("uri_id between :" + fromParam + " and :" + toParam);
+    }
+}
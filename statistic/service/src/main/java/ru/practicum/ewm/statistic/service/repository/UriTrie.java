@@ -0,0 +1,62 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uri ids indexed by the characters of the uri, so a prefix pattern such as {@code /events/*} is expanded
+ * to the ids of every known uri below it without scanning the dictionary.
+ */
+public class UriTrie {
+    public static final String WILDCARD = "*";
+    private final Node root = new Node();
+
+    /**
+     * Only a trailing {@code *} is a wildcard; it matches any, possibly empty, rest of the uri.
+     */
+    public static boolean isPrefixPattern(String uri) {
+        return uri.endsWith(WILDCARD);
+    }
+
+    public static String prefixOf(String pattern) {
+        return pattern.substring(0, pattern.length() - WILDCARD.length());
+    }
+
+    public synchronized void put(String uri, int id) {
+        Node node = root;
+        for (int i = 0; i < uri.length(); i++) {
+            node = node.children.computeIfAbsent(uri.charAt(i), c -> new Node());
+        }
+        node.id = id;
+    }
+
+    public synchronized List<Integer> findByPrefix(String prefix) {
+        Node node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) {
+            node = node.children.get(prefix.charAt(i));
+        }
+        List<Integer> ids = new ArrayList<>();
+        if (node == null) {
+            return ids;
+        }
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(node);
+        while (!stack.isEmpty()) {
+            Node current = stack.pop();
+            if (current.id != null) {
+                ids.add(current.id);
+            }
+            current.children.values().forEach(stack::push);
+        }
+        return ids;
+    }
+
+    private static class Node {
+        private final Map<Character, Node> children = new HashMap<>(4);
+        private Integer id;
+    }
+}
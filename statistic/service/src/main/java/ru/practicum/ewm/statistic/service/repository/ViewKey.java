@@ -0,0 +1,12 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.Value;
+
+/**
+ * Dictionary ids of the (app, uri) pair a stats row is aggregated for.
+ */
+@Value
+public class ViewKey {
+    int appId;
+    int uriId;
+}
@@ -2,7 +2,10 @@ package ru.practicum.ewm.statistic.service.service;
 
 
 import ru.practicum.ewm.statistic.dto.EndpointHitDto;
+import ru.practicum.ewm.statistic.dto.EntityViewsDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsChangesDto;
 import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsSeriesDto;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -11,5 +14,26 @@ public interface StatisticService {
 
     void saveEndpointHit(EndpointHitDto endpointHitDto);
 
+    /**
+     * @return number of hits accepted by the hit filters
+     */
+    int saveEndpointHits(List<EndpointHitDto> endpointHitDtos);
+
+    int importEndpointHits(List<EndpointHitDto> endpointHitDtos);
+
     List<ViewStatsDto> getViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique);
+
+    List<ViewStatsDto> getApproximateUniqueViewStats(LocalDateTime start, LocalDateTime end, List<String> uris);
+
+    EntityViewsDto getEntityViews(LocalDateTime start, LocalDateTime end, List<Long> entityIds, boolean unique);
+
+    ViewStatsChangesDto getViewStatsChanges(long since, int limit);
+
+    List<ViewStatsDto> getTopViewStats(LocalDateTime start, LocalDateTime end, String app, int n);
+
+    ViewStatsSeriesDto getViewStatsSeries(LocalDateTime start, LocalDateTime end, String uri, String interval,
+                                          boolean unique);
+
+    ViewStatsStream streamViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                    boolean approx);
 }
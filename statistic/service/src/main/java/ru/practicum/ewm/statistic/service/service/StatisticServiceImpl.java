@@ -4,32 +4,194 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ru.practicum.ewm.statistic.dto.EndpointHitDto;
+import ru.practicum.ewm.statistic.dto.EntityViewsDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsChangesDto;
 import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsSeriesDto;
+import ru.practicum.ewm.statistic.service.cache.ViewStatsCache;
 import ru.practicum.ewm.statistic.service.exception.InvalidParamException;
+import ru.practicum.ewm.statistic.service.ingestion.HitFilter;
+import ru.practicum.ewm.statistic.service.ingestion.HitIngestor;
 import ru.practicum.ewm.statistic.service.mapper.EndpointHitMapper;
 import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.recent.RecentHitWindow;
+import ru.practicum.ewm.statistic.service.recent.TopUriWindow;
+import ru.practicum.ewm.statistic.service.repository.HitChangeLogRepository;
+import ru.practicum.ewm.statistic.service.repository.HitDictionaryRepository;
+import ru.practicum.ewm.statistic.service.repository.HitSketchRepository;
+import ru.practicum.ewm.statistic.service.repository.RollupGranularity;
 import ru.practicum.ewm.statistic.service.repository.StatisticServiceRepository;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class StatisticServiceImpl implements StatisticService {
+    private static final int MAX_SERIES_BUCKETS = 10_000;
+    private static final int MAX_CHANGES = 10_000;
     private final StatisticServiceRepository repository;
+    private final HitSketchRepository sketchRepository;
+    private final HitIngestor hitIngestor;
+    private final RecentHitWindow recentHitWindow;
+    private final ViewStatsCache viewStatsCache;
+    private final TopUriWindow topUriWindow;
+    private final HitDictionaryRepository dictionaryRepository;
+    private final HitChangeLogRepository changeLogRepository;
+    private final List<HitFilter> hitFilters;
 
     @Override
     public void saveEndpointHit(EndpointHitDto endpointHitDto) {
         EndpointHit endpointHit = EndpointHitMapper.mapToEntity(endpointHitDto);
-        repository.save(endpointHit);
+        if (!isAccepted(endpointHit)) {
+            log.debug("Dropped filtered hit {}", endpointHitDto);
+            return;
+        }
+        hitIngestor.ingest(endpointHit);
         log.info("Finish saving for {}", endpointHitDto);
     }
 
+    @Override
+    public int saveEndpointHits(List<EndpointHitDto> endpointHitDtos) {
+        List<EndpointHit> endpointHits = endpointHitDtos.stream()
+                .map(EndpointHitMapper::mapToEntity)
+                .filter(this::isAccepted)
+                .collect(Collectors.toList());
+        if (endpointHits.isEmpty()) {
+            return 0;
+        }
+        hitIngestor.ingestAll(endpointHits);
+        log.info("Finish saving batch of {} hits", endpointHits.size());
+        return endpointHits.size();
+    }
+
+    private boolean isAccepted(EndpointHit endpointHit) {
+        for (HitFilter hitFilter : hitFilters) {
+            if (!hitFilter.accept(endpointHit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int importEndpointHits(List<EndpointHitDto> endpointHitDtos) {
+        List<EndpointHit> endpointHits = endpointHitDtos.stream()
+                .map(EndpointHitMapper::mapToEntity)
+                .collect(Collectors.toList());
+        repository.importAll(endpointHits);
+        return endpointHits.size();
+    }
+
     @Override
     public List<ViewStatsDto> getViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique) {
         checkDates(start, end);
-        return repository.getViewStats(start, end, uris, unique);
+        return viewStatsCache.get(start, end, uris, unique, () ->
+                recentHitWindow.getViewStats(start, end, uris, unique)
+                        .orElseGet(() -> repository.getViewStats(start, end, uris, unique)));
+    }
+
+    @Override
+    public List<ViewStatsDto> getApproximateUniqueViewStats(LocalDateTime start, LocalDateTime end,
+                                                            List<String> uris) {
+        checkDates(start, end);
+        return sketchRepository.getApproximateUniqueViewStats(start, end, uris);
+    }
+
+    @Override
+    public EntityViewsDto getEntityViews(LocalDateTime start, LocalDateTime end, List<Long> entityIds,
+                                         boolean unique) {
+        checkDates(start, end);
+        Map<Integer, Long> entityIdsByUriId = dictionaryRepository.findEntityUriIds(entityIds);
+        if (unique) {
+            // per app rows would count a visitor of several apps once per app
+            return toEntityViewsDto(repository.getUniqueEntityViews(start, end, entityIdsByUriId));
+        }
+        Map<String, Long> entityIdsByUri = new HashMap<>();
+        entityIdsByUriId.forEach((uriId, entityId) ->
+                entityIdsByUri.put(dictionaryRepository.getUri(uriId), entityId));
+        Map<Long, Long> views = new LinkedHashMap<>();
+        if (!entityIdsByUri.isEmpty()) {
+            getViewStats(start, end, List.copyOf(entityIdsByUri.keySet()), unique)
+                    .forEach(stats -> views.merge(entityIdsByUri.get(stats.getUri()), stats.getHits(), Long::sum));
+        }
+        return toEntityViewsDto(views);
+    }
+
+    private static EntityViewsDto toEntityViewsDto(Map<Long, Long> views) {
+        long[] ids = new long[views.size()];
+        long[] hits = new long[views.size()];
+        int i = 0;
+        for (Map.Entry<Long, Long> entry : views.entrySet()) {
+            ids[i] = entry.getKey();
+            hits[i++] = entry.getValue();
+        }
+        return new EntityViewsDto(ids, hits);
+    }
+
+    @Override
+    public ViewStatsChangesDto getViewStatsChanges(long since, int limit) {
+        if (since < 0) {
+            throw new InvalidParamException("since", String.format("Cursor should not be negative, since: %d", since));
+        }
+        if (limit < 1 || limit > MAX_CHANGES) {
+            throw new InvalidParamException("limit", String.format(
+                    "Limit should be between 1 and %d, limit: %d", MAX_CHANGES, limit));
+        }
+        return changeLogRepository.findChanges(since, limit);
+    }
+
+    @Override
+    public List<ViewStatsDto> getTopViewStats(LocalDateTime start, LocalDateTime end, String app, int n) {
+        checkDates(start, end);
+        if (n < 1) {
+            throw new InvalidParamException("n", String.format("Top size should be positive, n: %d", n));
+        }
+        Integer appId = null;
+        if (app != null) {
+            Optional<Integer> knownAppId = dictionaryRepository.findAppId(app);
+            if (knownAppId.isEmpty()) {
+                return List.of();
+            }
+            appId = knownAppId.get();
+        }
+        return topUriWindow.getTopViewStats(start, end, appId, n)
+                .orElseGet(() -> repository.getTopViewStats(start, end, app, n));
+    }
+
+    @Override
+    public ViewStatsSeriesDto getViewStatsSeries(LocalDateTime start, LocalDateTime end, String uri,
+                                                 String interval, boolean unique) {
+        checkDates(start, end);
+        RollupGranularity granularity = Arrays.stream(RollupGranularity.values())
+                .filter(value -> value.name().equalsIgnoreCase(interval))
+                .findFirst()
+                .orElseThrow(() -> new InvalidParamException("interval",
+                        String.format("Interval should be minute, hour or day, interval: %s", interval)));
+        long buckets = Duration.between(granularity.floor(start), end).getSeconds() / granularity.getSeconds() + 1;
+        if (buckets > MAX_SERIES_BUCKETS) {
+            throw new InvalidParamException("interval", String.format(
+                    "Range holds %d %s buckets, at most %d are allowed", buckets, interval, MAX_SERIES_BUCKETS));
+        }
+        return repository.getViewStatsSeries(start, end, uri, granularity, unique);
+    }
+
+    @Override
+    public ViewStatsStream streamViewStats(LocalDateTime start, LocalDateTime end, List<String> uris, boolean unique,
+                                           boolean approx) {
+        checkDates(start, end);
+        if (unique && approx) {
+            return consumer -> sketchRepository.getApproximateUniqueViewStats(start, end, uris).forEach(consumer);
+        }
+        return consumer -> repository.streamViewStats(start, end, uris, unique, consumer);
     }
 
     private void checkDates(LocalDateTime start, LocalDateTime end) {
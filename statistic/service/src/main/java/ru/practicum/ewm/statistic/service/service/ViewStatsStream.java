@@ -0,0 +1,13 @@
+package ru.practicum.ewm.statistic.service.service;
+
+import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+
+import java.util.function.Consumer;
+
+/**
+ * Stats rows that are read only when {@link #forEach} is called, e.g. while writing the response body.
+ */
+@FunctionalInterface
+public interface ViewStatsStream {
+    void forEach(Consumer<ViewStatsDto> consumer);
+}
@@ -0,0 +1,139 @@
+package ru.practicum.ewm.statistic.service.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * HyperLogLog distinct counter with 2^precision one-byte registers.
+ * <p>
+ * The relative standard error is {@code 1.04 / sqrt(2^precision)}: for the default precision of 12
+ * (4096 registers) it is about 1.6%, so roughly 95% of estimates are within 3.3% of the exact count.
+ * Cardinalities below {@code 2.5 * 2^precision} are estimated with linear counting and are nearly exact
+ * for small sets. Sketches with the same precision merge losslessly, so the error bound holds for any
+ * union of buckets. Serialized sketches are sparse while fewer than a third of the registers are set.
+ */
+public class HyperLogLog {
+    public static final int DEFAULT_PRECISION = 12;
+    private static final byte SPARSE = 0;
+    private static final byte DENSE = 1;
+    private static final int HEADER_SIZE = 2;
+    private static final int SPARSE_ENTRY_SIZE = 3;
+    private final int precision;
+    private final byte[] registers;
+
+    public HyperLogLog() {
+        this(DEFAULT_PRECISION);
+    }
+
+    public HyperLogLog(int precision) {
+        if (precision < 4 || precision > 16) {
+            throw new IllegalArgumentException("HyperLogLog precision should be between 4 and 16");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+
+    public static HyperLogLog fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        byte format = buffer.get();
+        HyperLogLog sketch = new HyperLogLog(buffer.get());
+        if (format == DENSE) {
+            buffer.get(sketch.registers);
+        } else {
+            while (buffer.hasRemaining()) {
+                int index = Short.toUnsignedInt(buffer.getShort());
+                sketch.registers[index] = buffer.get();
+            }
+        }
+        return sketch;
+    }
+
+    public static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    public static long hash(byte[] value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    public static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    public void add(long hash) {
+        int index = (int) (hash >>> (Long.SIZE - precision));
+        long remainder = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(remainder) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+        }
+    }
+
+    public void merge(HyperLogLog other) {
+        if (other.precision != precision) {
+            throw new IllegalArgumentException("Can't merge HyperLogLog sketches with different precision");
+        }
+        for (int i = 0; i < registers.length; i++) {
+            if (other.registers[i] > registers[i]) {
+                registers[i] = other.registers[i];
+            }
+        }
+    }
+
+    public long estimate() {
+        int registerCount = registers.length;
+        double sum = 0;
+        int zeroRegisters = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeroRegisters++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / registerCount);
+        double estimate = alpha * registerCount * registerCount / sum;
+        if (estimate <= 2.5 * registerCount && zeroRegisters > 0) {
+            estimate = registerCount * Math.log((double) registerCount / zeroRegisters);
+        }
+        return Math.round(estimate);
+    }
+
+    public byte[] toBytes() {
+        int setRegisters = 0;
+        for (byte register : registers) {
+            if (register != 0) {
+                setRegisters++;
+            }
+        }
+        if (setRegisters * SPARSE_ENTRY_SIZE >= registers.length) {
+            return ByteBuffer.allocate(HEADER_SIZE + registers.length)
+                    .put(DENSE)
+                    .put((byte) precision)
+                    .put(registers)
+                    .array();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + setRegisters * SPARSE_ENTRY_SIZE)
+                .put(SPARSE)
+                .put((byte) precision);
+        for (int i = 0; i < registers.length; i++) {
+            if (registers[i] != 0) {
+                buffer.putShort((short) i).put(registers[i]);
+            }
+        }
+        return buffer.array();
+    }
+}
@@ -0,0 +1,82 @@
+package ru.practicum.ewm.statistic.service.sketch;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free Count-Min sketch of the last {@code slots * slotMillis} milliseconds in fixed memory: a ring of
+ * {@code slots} sketches of {@code depth} rows of {@code width} counters, each covering one slot of time.
+ * The slot that comes round again is cleared by the first thread that sees it, so adds racing with the
+ * clearing may be lost and the window undercounts slightly at slot turnover.
+ */
+public class SlidingCountMinSketch {
+    private final int width;
+    private final int depth;
+    private final int slots;
+    private final long slotMillis;
+    private final AtomicIntegerArray counters;
+    // the time slot every ring slot currently counts
+    private final AtomicLongArray slotTimes;
+
+    public SlidingCountMinSketch(int width, int depth, int slots, long slotMillis) {
+        if (width < 1 || depth < 1 || slots < 1 || slotMillis < 1) {
+            throw new IllegalArgumentException("Sliding Count-Min sketch dimensions should be positive");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.slots = slots;
+        this.slotMillis = slotMillis;
+        this.counters = new AtomicIntegerArray(slots * depth * width);
+        this.slotTimes = new AtomicLongArray(slots);
+    }
+
+    /**
+     * @return the estimate of the key over the window after adding
+     */
+    public long add(long key, long nowMillis) {
+        long time = nowMillis / slotMillis;
+        int slot = claim(time);
+        long hash = HyperLogLog.mix(key);
+        for (int row = 0; row < depth; row++) {
+            counters.incrementAndGet(index(slot, row, hash));
+        }
+        return windowEstimate(hash, time);
+    }
+
+    public long estimate(long key, long nowMillis) {
+        return windowEstimate(HyperLogLog.mix(key), nowMillis / slotMillis);
+    }
+
+    private long windowEstimate(long hash, long time) {
+        long estimate = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (slotTimes.get(slot) <= time - slots) {
+                continue;
+            }
+            long slotEstimate = Long.MAX_VALUE;
+            for (int row = 0; row < depth; row++) {
+                slotEstimate = Math.min(slotEstimate, counters.get(index(slot, row, hash)));
+            }
+            estimate += slotEstimate;
+        }
+        return estimate;
+    }
+
+    private int claim(long time) {
+        int slot = (int) Math.floorMod(time, (long) slots);
+        long current = slotTimes.get(slot);
+        if (current < time && slotTimes.compareAndSet(slot, current, time)) {
+            int from = slot * depth * width;
+            for (int i = from; i < from + depth * width; i++) {
+                counters.set(i, 0);
+            }
+        }
+        return slot;
+    }
+
+    private int index(int slot, int row, long hash) {
+        // Kirsch-Mitzenmacher: row hashes derived from the two halves of one 64-bit hash
+        int combined = (int) hash + row * (int) (hash >>> Integer.SIZE);
+        return (slot * depth + row) * width + Math.floorMod(combined, width);
+    }
+}
@@ -0,0 +1,10 @@
+create table if not exists endpoint_hit (
+    hit_id bigint generated always as identity not null,
+    app_id integer not null,
+    uri_id integer not null,
+    ip bytea not null,
+    timestamp bigint not null,
+    constraint pk_endpoint_hit primary key (hit_id)
+);
+create index if not exists timestamp_index on endpoint_hit (timestamp);
+create index if not exists uri_id_timestamp_index on endpoint_hit (uri_id, timestamp);
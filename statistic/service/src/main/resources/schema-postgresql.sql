@@ -0,0 +1,26 @@
+do 'begin
+    if exists (select 1 from information_schema.columns
+               where table_schema = current_schema() and table_name = ''endpoint_hit''
+               and column_name = ''app_name'') then
+        alter table endpoint_hit rename to endpoint_hit_legacy;
+        alter table endpoint_hit_legacy rename constraint pk_endpoint_hit to pk_endpoint_hit_legacy;
+        drop index if exists app_name_index;
+        drop index if exists app_uri_index;
+        drop index if exists timestamp_index;
+    end if;
+end';
+create table if not exists endpoint_hit (
+    hit_id bigint generated always as identity not null,
+    app_id integer not null,
+    uri_id integer not null,
+    ip bytea not null,
+    timestamp bigint not null,
+    constraint pk_endpoint_hit primary key (hit_id, timestamp)
+) partition by range (timestamp);
+do 'begin
+    if exists (select 1 from pg_partitioned_table where partrelid = to_regclass(''endpoint_hit'')) then
+        create table if not exists endpoint_hit_default partition of endpoint_hit default;
+    end if;
+end';
+create index if not exists timestamp_index on endpoint_hit (timestamp);
+create index if not exists uri_id_timestamp_index on endpoint_hit (uri_id, timestamp);
@@ -1,11 +1,97 @@
-create table if not exists endpoint_hit (
-    hit_id bigint generated always as identity not null,
+create table if not exists app_dictionary (
+    app_id integer generated by default as identity not null,
     app_name varchar not null,
+    constraint pk_app_dictionary primary key (app_id),
+    constraint uq_app_dictionary_app_name unique (app_name)
+);
+create table if not exists uri_dictionary (
+    uri_id integer generated by default as identity not null,
     app_uri varchar not null,
-    ip varchar not null,
-    timestamp timestamp not null,
-    constraint pk_endpoint_hit primary key (hit_id)
+    entity_id bigint,
+    constraint pk_uri_dictionary primary key (uri_id),
+    constraint uq_uri_dictionary_app_uri unique (app_uri)
+);
+alter table uri_dictionary add column if not exists entity_id bigint;
+create index if not exists uri_dictionary_entity_id_index on uri_dictionary (entity_id);
+create table if not exists hit_rollup_minute (
+    app_id integer not null,
+    uri_id integer not null,
+    bucket bigint not null,
+    hits bigint not null,
+    constraint pk_hit_rollup_minute primary key (uri_id, bucket, app_id)
+);
+create index if not exists hit_rollup_minute_bucket_index on hit_rollup_minute (bucket);
+create table if not exists hit_rollup_hour (
+    app_id integer not null,
+    uri_id integer not null,
+    bucket bigint not null,
+    hits bigint not null,
+    constraint pk_hit_rollup_hour primary key (uri_id, bucket, app_id)
+);
+create index if not exists hit_rollup_hour_bucket_index on hit_rollup_hour (bucket);
+create table if not exists hit_rollup_day (
+    app_id integer not null,
+    uri_id integer not null,
+    bucket bigint not null,
+    hits bigint not null,
+    constraint pk_hit_rollup_day primary key (uri_id, bucket, app_id)
+);
+create index if not exists hit_rollup_day_bucket_index on hit_rollup_day (bucket);
+create table if not exists hit_unique_sketch (
+    app_id integer not null,
+    uri_id integer not null,
+    bucket bigint not null,
+    sketch bytea not null,
+    constraint pk_hit_unique_sketch primary key (uri_id, bucket, app_id)
+);
+create index if not exists hit_unique_sketch_bucket_index on hit_unique_sketch (bucket);
+create table if not exists hit_compacted_day (
+    app_id integer not null,
+    uri_id integer not null,
+    bucket bigint not null,
+    hits bigint not null,
+    sketch bytea not null,
+    constraint pk_hit_compacted_day primary key (uri_id, bucket, app_id)
+);
+create index if not exists hit_compacted_day_bucket_index on hit_compacted_day (bucket);
+create table if not exists hit_flagged (
+    app_id integer not null,
+    uri_id integer not null,
+    ip bytea not null,
+    bucket bigint not null,
+    hits bigint not null,
+    constraint pk_hit_flagged primary key (uri_id, bucket, ip, app_id)
+);
+create index if not exists hit_flagged_bucket_index on hit_flagged (bucket);
+create table if not exists uri_visitor (
+    app_id integer not null,
+    uri_id integer not null,
+    ip bytea not null,
+    first_seen bigint not null,
+    constraint pk_uri_visitor primary key (uri_id, ip, app_id)
+);
+create table if not exists uri_visitor_count (
+    app_id integer not null,
+    uri_id integer not null,
+    visitors bigint not null,
+    constraint pk_uri_visitor_count primary key (uri_id, app_id)
+);
+create table if not exists hit_change_log (
+    change_id bigint generated always as identity not null,
+    app_id integer not null,
+    uri_id integer not null,
+    changed_at bigint not null,
+    change_seq bigint,
+    constraint pk_hit_change_log primary key (change_id)
+);
+create index if not exists hit_change_log_uri_id_index on hit_change_log (uri_id, app_id);
+alter table hit_change_log add column if not exists change_seq bigint;
+create unique index if not exists hit_change_log_change_seq_index on hit_change_log (change_seq);
+create table if not exists hit_change_sequence (
+    sequence_id integer not null,
+    last_seq bigint not null,
+    constraint pk_hit_change_sequence primary key (sequence_id)
 );
-create index if not exists app_name_index on endpoint_hit (app_name);
-create index if not exists app_uri_index on endpoint_hit (app_uri);
-create index if not exists timestamp_index on endpoint_hit (timestamp);
\ No newline at end of file
+insert into hit_change_sequence (sequence_id, last_seq)
+select 1, coalesce((select max(change_id) from hit_change_log), 0)
+where not exists (select 1 from hit_change_sequence);
@@ -0,0 +1,56 @@
+package ru.practicum.ewm.statistic.dto.ip;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IpAddressCodecTest {
+
+    @Test
+    void parseIPv4_whenValid_thenUnsignedValueReturned() {
+        assertThat(IpAddressCodec.parseIPv4("0.0.0.0"), equalTo(0L));
+        assertThat(IpAddressCodec.parseIPv4("192.168.0.1"), equalTo(0xc0a80001L));
+        assertThat(IpAddressCodec.parseIPv4("255.255.255.255"), equalTo(0xffffffffL));
+    }
+
+    @Test
+    void isValid_whenMalformed_thenFalse() {
+        String[] invalid = {null, "", "1.1.1", "1.1.1.1.1", "256.1.1.1", "01.1.1.1", "1..1.1", "1.1.1.1 ",
+                ":", ":1::", "1:2:3:4:5:6:7:8:9", "1::2::3", "12345::", "1:2:3:4:5:6:7:1.1.1.1", "g::", "1:"};
+
+        for (String address : invalid) {
+            assertFalse(IpAddressCodec.isValid(address), address);
+        }
+    }
+
+    @Test
+    void isValid_whenWellFormed_thenTrue() {
+        String[] valid = {"1.1.1.1", "::", "::1", "1::", "2001:db8::8a2e:370:7334",
+                "2001:0db8:0000:0000:0000:ff00:0042:8329", "::ffff:10.0.0.1", "1:2:3:4:5:6:1.2.3.4"};
+
+        for (String address : valid) {
+            assertTrue(IpAddressCodec.isValid(address), address);
+        }
+    }
+
+    @Test
+    void pack_whenIPv4OrMappedIPv6_thenFourBytes() {
+        assertThat(IpAddressCodec.pack("10.0.0.1"), equalTo(new byte[]{10, 0, 0, 1}));
+        assertThat(IpAddressCodec.pack("::ffff:10.0.0.1"), equalTo(new byte[]{10, 0, 0, 1}));
+        assertThat(IpAddressCodec.toInt(IpAddressCodec.pack("10.0.0.1")), equalTo(0x0a000001));
+        assertThrows(IllegalArgumentException.class, () -> IpAddressCodec.pack("10.0.0"));
+    }
+
+    @Test
+    void unpack_whenPacked_thenCanonicalTextReturned() {
+        assertThat(IpAddressCodec.unpack(IpAddressCodec.pack("1.2.3.4")), equalTo("1.2.3.4"));
+        assertThat(IpAddressCodec.unpack(IpAddressCodec.pack("2001:0DB8:0:0:1:0:0:1")), equalTo("2001:db8::1:0:0:1"));
+        assertThat(IpAddressCodec.unpack(IpAddressCodec.pack("::")), equalTo("::"));
+        assertThat(IpAddressCodec.unpack(IpAddressCodec.pack("fe80::")), equalTo("fe80::"));
+        assertThat(IpAddressCodec.unpack(IpAddressCodec.pack("1:2:3:4:5:6:7:8")), equalTo("1:2:3:4:5:6:7:8"));
+    }
+}
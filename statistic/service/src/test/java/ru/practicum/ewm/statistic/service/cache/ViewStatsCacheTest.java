@@ -0,0 +1,117 @@
+package ru.practicum.ewm.statistic.service.cache;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.HitsExpiredEvent;
+import ru.practicum.ewm.statistic.service.repository.HitsSavedEvent;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class ViewStatsCacheTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2023, 7, 1, 12, 30, 30);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Supplier<List<ViewStatsDto>> loader = () -> {
+        loads.incrementAndGet();
+        return List.of(new ViewStatsDto("app", "/events/1", 1L));
+    };
+    private final Clock clock = Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+    private MeterRegistry meterRegistry;
+    private ViewStatsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ViewStatsCache(clock, meterRegistry, true, 100);
+    }
+
+    @Test
+    void get_whenEndSlidesPastNow_thenOpenEndedEntryReused() {
+        LocalDateTime start = NOW.minusDays(1);
+
+        cache.get(start, NOW.plusMinutes(1), List.of("/events/1", "/events/2"), true, loader);
+        cache.get(start, NOW.plusMinutes(2), List.of("/events/2", "/events/1"), true, loader);
+
+        assertThat(loads.get(), equalTo(1));
+        assertThat(meterRegistry.counter("stats.cache.requests", "result", "hit").count(), equalTo(1.0));
+        assertThat(meterRegistry.counter("stats.cache.requests", "result", "miss").count(), equalTo(1.0));
+    }
+
+    @Test
+    void onHitsSaved_whenHitInsideRangeOfCachedUri_thenOnlyThatEntryReloaded() {
+        LocalDateTime start = NOW.minusDays(1);
+        cache.get(start, NOW.plusMinutes(1), List.of("/events/1"), false, loader);
+        cache.get(start, NOW.plusMinutes(1), List.of("/events/2"), false, loader);
+        cache.get(start, NOW.minusHours(1), List.of("/events/1"), false, loader);
+
+        cache.onHitsSaved(new HitsSavedEvent(List.of(getHit("/events/1", NOW.minusMinutes(1)))));
+        cache.get(start, NOW.plusMinutes(1), List.of("/events/1"), false, loader);
+        cache.get(start, NOW.plusMinutes(1), List.of("/events/2"), false, loader);
+        cache.get(start, NOW.minusHours(1), List.of("/events/1"), false, loader);
+
+        assertThat(loads.get(), equalTo(4));
+    }
+
+    @Test
+    void onHitsSaved_whenUriMatchesCachedPrefixPattern_thenEntryReloaded() {
+        LocalDateTime start = NOW.minusDays(1);
+        cache.get(start, NOW.plusMinutes(1), List.of("/events/*"), false, loader);
+
+        cache.onHitsSaved(new HitsSavedEvent(List.of(getHit("/compilations/1", NOW.minusMinutes(1)))));
+        cache.get(start, NOW.plusMinutes(1), List.of("/events/*"), false, loader);
+        cache.onHitsSaved(new HitsSavedEvent(List.of(getHit("/events/7", NOW.minusMinutes(1)))));
+        cache.get(start, NOW.plusMinutes(1), List.of("/events/*"), false, loader);
+
+        assertThat(loads.get(), equalTo(2));
+    }
+
+    @Test
+    void onHitsExpired_whenRangeStartsBeforeExpiredHits_thenOnlyThatEntryReloaded() {
+        cache.get(NOW.minusDays(30), NOW.plusMinutes(1), List.of("/events/1"), false, loader);
+        cache.get(NOW.minusDays(1), NOW.plusMinutes(1), List.of("/events/1"), false, loader);
+
+        cache.onHitsExpired(new HitsExpiredEvent(NOW.minusDays(7)));
+        cache.get(NOW.minusDays(30), NOW.plusMinutes(1), List.of("/events/1"), false, loader);
+        cache.get(NOW.minusDays(1), NOW.plusMinutes(1), List.of("/events/1"), false, loader);
+
+        assertThat(loads.get(), equalTo(3));
+    }
+
+    @Test
+    void get_whenMoreEntriesThanLimit_thenLeastRecentlyUsedEvicted() {
+        cache = new ViewStatsCache(clock, meterRegistry, true, 2);
+        LocalDateTime start = NOW.minusDays(1);
+        cache.get(start, NOW, List.of("/events/1"), false, loader);
+        cache.get(start, NOW, List.of("/events/2"), false, loader);
+        cache.get(start, NOW, List.of("/events/1"), false, loader);
+
+        cache.get(start, NOW, List.of("/events/3"), false, loader);
+        cache.get(start, NOW, List.of("/events/1"), false, loader);
+        cache.get(start, NOW, List.of("/events/2"), false, loader);
+
+        assertThat(loads.get(), equalTo(4));
+        assertThat(cache.size(), equalTo(2));
+        assertThat(meterRegistry.counter("stats.cache.evictions").count(), equalTo(2.0));
+    }
+
+    private EndpointHit getHit(String uri, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("app")
+                .uri(uri)
+                .ip("1.1.1.1")
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -1,5 +1,6 @@
 package ru.practicum.ewm.statistic.service.controller;
 
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.Test;
@@ -8,24 +9,50 @@ import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.practicum.ewm.statistic.dto.BinaryFormats;
 import ru.practicum.ewm.statistic.dto.EndpointHitDto;
+import ru.practicum.ewm.statistic.dto.EntityViewsDto;
 import ru.practicum.ewm.statistic.dto.Formats;
+import ru.practicum.ewm.statistic.dto.ViewStatsChangeDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsChangesDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsSeriesDto;
 import ru.practicum.ewm.statistic.service.service.StatisticService;
+import ru.practicum.ewm.statistic.service.service.ViewStatsStream;
 
+import java.io.ByteArrayOutputStream;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@WebMvcTest(controllers = StatisticServiceController.class)
+@WebMvcTest(controllers = StatisticServiceController.class,
+        properties = "statistic-service.gzip.max-inflated-bytes=1048576")
+@Import({HitBatchReader.class, ViewStatsWriter.class})
 class StatisticServiceControllerTest {
 
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Formats.DATE_TIME_PATTERN);
@@ -38,6 +65,8 @@ class StatisticServiceControllerTest {
     @Captor
     private ArgumentCaptor<EndpointHitDto> endpointHitDtoArgumentCaptor;
     @Captor
+    private ArgumentCaptor<List<EndpointHitDto>> endpointHitDtosArgumentCaptor;
+    @Captor
     private ArgumentCaptor<LocalDateTime> startArgumentCaptor;
     @Captor
     private ArgumentCaptor<LocalDateTime> endArgumentCaptor;
@@ -68,6 +97,74 @@ class StatisticServiceControllerTest {
                 "Invalid EnpointHitDto passed to service");
     }
 
+    @SneakyThrows
+    @Test
+    void saveEndpointHit_whenSmileBody_thenStatusIsCreatedAndBinaryFormatAdvertised() {
+        EndpointHitDto endpointHitDto = EndpointHitDto.builder()
+                .app("app")
+                .uri("/uri")
+                .ip("1.1.1.1")
+                .timestamp(LocalDateTime.parse("2022-09-06 11:00:23", formatter))
+                .build();
+
+        mvc.perform(post("/hit")
+                        .contentType(BinaryFormats.SMILE_VALUE)
+                        .content(BinaryFormats.smileObjectMapper().writeValueAsBytes(endpointHitDto)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Accept-Post", containsString(BinaryFormats.SMILE_VALUE)));
+
+        verify(statisticService, times(1))
+                .saveEndpointHit(endpointHitDtoArgumentCaptor.capture());
+        assertEquals(endpointHitDto, endpointHitDtoArgumentCaptor.getValue(),
+                "Invalid EnpointHitDto passed to service");
+    }
+
+    @SneakyThrows
+    @Test
+    void saveEndpointHit_whenBodyGzipped_thenDtoPassedToService() {
+        EndpointHitDto endpointHitDto = EndpointHitDto.builder()
+                .app("app")
+                .uri("/uri")
+                .ip("1.1.1.1")
+                .timestamp(LocalDateTime.parse("2022-09-06 11:00:23", formatter))
+                .build();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(objectMapper.writeValueAsBytes(endpointHitDto));
+        }
+
+        mvc.perform(post("/hit")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .content(compressed.toByteArray()))
+                .andExpect(status().isCreated());
+
+        verify(statisticService, times(1))
+                .saveEndpointHit(endpointHitDtoArgumentCaptor.capture());
+        assertEquals(endpointHitDto, endpointHitDtoArgumentCaptor.getValue(),
+                "Invalid EnpointHitDto passed to service");
+    }
+
+    @SneakyThrows
+    @Test
+    void saveEndpointHits_whenGzippedBodyInflatesPastLimit_thenStatusIsPayloadTooLarge() {
+        byte[] padding = " ".repeat(2 << 20).getBytes();
+
+        mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .content(gzip("[".getBytes(), padding, "]".getBytes())))
+                .andExpect(status().isPayloadTooLarge());
+        mvc.perform(post("/hit")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_ENCODING, "gzip")
+                        .content(gzip("{\"app\": \"".getBytes(), padding, "\"}".getBytes())))
+                .andExpect(status().isPayloadTooLarge());
+
+        verify(statisticService, never()).saveEndpointHits(any());
+        verify(statisticService, never()).saveEndpointHit(any());
+    }
+
     @SneakyThrows
     @Test
     void saveEndpointHit_whenAppFieldIsNull_thenStatusIsBadRequest() {
@@ -216,6 +313,151 @@ class StatisticServiceControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @SneakyThrows
+    @Test
+    void saveEndpointHits_whenJsonArrayWithInvalidItem_thenValidItemsSavedAndInvalidReported() {
+        LocalDateTime timestamp = LocalDateTime.parse("2022-09-06 11:00:23", formatter);
+        EndpointHitDto validHit = EndpointHitDto.builder()
+                .app("app")
+                .uri("/uri")
+                .ip("1.1.1.1")
+                .timestamp(timestamp)
+                .build();
+        EndpointHitDto invalidHit = EndpointHitDto.builder()
+                .app("app")
+                .uri("/uri")
+                .ip("11111")
+                .timestamp(timestamp)
+                .build();
+
+        when(statisticService.saveEndpointHits(any())).thenAnswer(invocation ->
+                invocation.<List<EndpointHitDto>>getArgument(0).size());
+
+        mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(List.of(validHit, invalidHit, validHit))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.received").value(3))
+                .andExpect(jsonPath("$.saved").value(2))
+                .andExpect(jsonPath("$.errors[0].index").value(1))
+                .andExpect(jsonPath("$.errors[0].paramName").value("ip"));
+
+        verify(statisticService, times(1))
+                .saveEndpointHits(endpointHitDtosArgumentCaptor.capture());
+        assertEquals(List.of(validHit, validHit), endpointHitDtosArgumentCaptor.getValue(),
+                "Invalid hits batch passed to service");
+    }
+
+    @SneakyThrows
+    @Test
+    void saveEndpointHits_whenNdjsonWithMalformedLine_thenValidItemsSavedAndMalformedReported() {
+        LocalDateTime timestamp = LocalDateTime.parse("2022-09-06 11:00:23", formatter);
+        EndpointHitDto validHit = EndpointHitDto.builder()
+                .app("app")
+                .uri("/uri")
+                .ip("1.1.1.1")
+                .timestamp(timestamp)
+                .build();
+        String body = objectMapper.writeValueAsString(validHit) + "\n" +
+                "{\"app\": \n" +
+                objectMapper.writeValueAsString(validHit) + "\n";
+        when(statisticService.saveEndpointHits(any())).thenAnswer(invocation ->
+                invocation.<List<EndpointHitDto>>getArgument(0).size());
+
+        mvc.perform(post("/hits")
+                        .contentType("application/x-ndjson")
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.received").value(3))
+                .andExpect(jsonPath("$.saved").value(2))
+                .andExpect(jsonPath("$.errors[0].index").value(1));
+
+        verify(statisticService, times(1))
+                .saveEndpointHits(endpointHitDtosArgumentCaptor.capture());
+        assertEquals(2, endpointHitDtosArgumentCaptor.getValue().size(),
+                "Invalid hits batch passed to service");
+    }
+
+    @SneakyThrows
+    @Test
+    void saveEndpointHits_whenNullItems_thenNullItemsReported() {
+        LocalDateTime timestamp = LocalDateTime.parse("2022-09-06 11:00:23", formatter);
+        EndpointHitDto validHit = EndpointHitDto.builder()
+                .app("app")
+                .uri("/uri")
+                .ip("1.1.1.1")
+                .timestamp(timestamp)
+                .build();
+        String hit = objectMapper.writeValueAsString(validHit);
+        when(statisticService.saveEndpointHits(any())).thenAnswer(invocation ->
+                invocation.<List<EndpointHitDto>>getArgument(0).size());
+
+        mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[" + hit + ", null]"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.saved").value(1))
+                .andExpect(jsonPath("$.errors[0].index").value(1));
+
+        mvc.perform(post("/hits")
+                        .contentType("application/x-ndjson")
+                        .content("null\n" + hit + "\n"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.saved").value(1))
+                .andExpect(jsonPath("$.errors[0].index").value(0));
+    }
+
+    @SneakyThrows
+    @Test
+    void saveEndpointHits_whenHitsFiltered_thenOnlyAcceptedCountedAsSaved() {
+        EndpointHitDto validHit = EndpointHitDto.builder()
+                .app("app")
+                .uri("/uri")
+                .ip("1.1.1.1")
+                .timestamp(LocalDateTime.parse("2022-09-06 11:00:23", formatter))
+                .build();
+        when(statisticService.saveEndpointHits(any())).thenReturn(1);
+
+        mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(List.of(validHit, validHit))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.received").value(2))
+                .andExpect(jsonPath("$.saved").value(1))
+                .andExpect(jsonPath("$.committed").value(2));
+    }
+
+    @SneakyThrows
+    @Test
+    void saveEndpointHits_whenSavingFails_thenServiceUnavailableWithCommittedOffset() {
+        EndpointHitDto validHit = EndpointHitDto.builder()
+                .app("app")
+                .uri("/uri")
+                .ip("1.1.1.1")
+                .timestamp(LocalDateTime.parse("2022-09-06 11:00:23", formatter))
+                .build();
+        when(statisticService.saveEndpointHits(any())).thenThrow(new IllegalStateException("database is down"));
+
+        mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsBytes(List.of(validHit, validHit))))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.saved").value(0))
+                .andExpect(jsonPath("$.committed").value(0))
+                .andExpect(jsonPath("$.errors[0].index").value(0));
+    }
+
+    @SneakyThrows
+    @Test
+    void saveEndpointHits_whenBodyIsNotArray_thenStatusIsBadRequest() {
+        mvc.perform(post("/hits")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{}"))
+                .andExpect(status().isBadRequest());
+    }
+
     @SneakyThrows
     @Test
     void getViewStats_whenInvoked_thenStatusIsOkAndParamsPassedToService() {
@@ -248,6 +490,25 @@ class StatisticServiceControllerTest {
                 "Invalid unique param passed to service");
     }
 
+    @SneakyThrows
+    @Test
+    void getViewStats_whenSmileAccepted_thenStatsWrittenAsSmile() {
+        List<ViewStatsDto> stats = List.of(new ViewStatsDto("app", "/uri", 3L));
+        when(statisticService.getViewStats(any(), any(), any(), anyBoolean())).thenReturn(stats);
+
+        MvcResult result = mvc.perform(get("/stats?start={start}&end={end}",
+                        "2023-01-01 00:00:00", "2024-01-01 00:00:00")
+                        .accept(BinaryFormats.SMILE_VALUE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(BinaryFormats.SMILE_VALUE))
+                .andReturn();
+
+        List<ViewStatsDto> written = BinaryFormats.smileObjectMapper().readValue(
+                result.getResponse().getContentAsByteArray(), new TypeReference<List<ViewStatsDto>>() {
+                });
+        assertEquals(stats, written, "Invalid stats written");
+    }
+
     @SneakyThrows
     @Test
     void getViewStats_whenUrisAbsent_thenStatusIsOkAndParamsPassedToService() {
@@ -299,6 +560,157 @@ class StatisticServiceControllerTest {
                 "Invalid unique param passed to service");
     }
 
+    @SneakyThrows
+    @Test
+    void getViewStats_whenNdjsonAccepted_thenRowsStreamedAsLines() {
+        ViewStatsStream stats = consumer -> {
+            consumer.accept(new ViewStatsDto("app", "/uri1", 2L));
+            consumer.accept(new ViewStatsDto("app", "/uri2", 1L));
+        };
+        when(statisticService.streamViewStats(any(), any(), any(), anyBoolean(), anyBoolean()))
+                .thenReturn(stats);
+
+        MvcResult result = mvc.perform(get("/stats?start={start}&end={end}",
+                        "2023-01-01 00:00:00", "2024-01-01 00:00:00")
+                        .accept("application/x-ndjson"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-ndjson"))
+                .andExpect(content().string("{\"app\":\"app\",\"uri\":\"/uri1\",\"hits\":2}\n"
+                        + "{\"app\":\"app\",\"uri\":\"/uri2\",\"hits\":1}\n"));
+    }
+
+    @SneakyThrows
+    @Test
+    void getViewStats_whenStreamFlagSet_thenRowsStreamedAsJsonArray() {
+        ViewStatsStream stats = consumer -> consumer.accept(new ViewStatsDto("app", "/uri1", 2L));
+        when(statisticService.streamViewStats(any(), any(), any(), anyBoolean(), anyBoolean()))
+                .thenReturn(stats);
+
+        MvcResult result = mvc.perform(get("/stats?start={start}&end={end}&stream=true",
+                        "2023-01-01 00:00:00", "2024-01-01 00:00:00"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$[0].uri").value("/uri1"))
+                .andExpect(jsonPath("$[0].hits").value(2));
+        verify(statisticService, never()).getViewStats(any(), any(), any(), anyBoolean());
+    }
+
+    @SneakyThrows
+    @Test
+    void getViewStats_whenUniqueAndApprox_thenApproximateStatsRequested() {
+        String start = "2023-01-01 00:00:00";
+        String end = "2024-01-01 00:00:00";
+        String uri = "/endpoint1";
+
+        mvc.perform(get("/stats?start={start}&end={end}&uris={uris}&unique=true&approx=true",
+                        start, end, uri))
+                .andExpect(status().isOk());
+
+        verify(statisticService, times(1))
+                .getApproximateUniqueViewStats(
+                        startArgumentCaptor.capture(),
+                        endArgumentCaptor.capture(),
+                        urisArgumentCaptor.capture()
+                );
+        verify(statisticService, never()).getViewStats(any(), any(), any(), anyBoolean());
+        assertEquals(List.of(uri), urisArgumentCaptor.getValue(),
+                "Invalid uris param passed to service");
+    }
+
+    @SneakyThrows
+    @Test
+    void getViewStatsSeries_whenInvoked_thenColumnsReturned() {
+        ViewStatsSeriesDto series = new ViewStatsSeriesDto("/uri", "day", List.of(1672531200L, 1672617600L),
+                List.of(3L, 0L), List.of(2L, 0L));
+        when(statisticService.getViewStatsSeries(any(), any(), any(), any(), anyBoolean())).thenReturn(series);
+
+        mvc.perform(get("/stats/timeseries?uri={uri}&start={start}&end={end}&interval={interval}",
+                        "/uri", "2023-01-01 00:00:00", "2023-01-02 12:00:00", "day"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.timestamps[1]").value(1672617600L))
+                .andExpect(jsonPath("$.hits[0]").value(3))
+                .andExpect(jsonPath("$.uniqueHits[0]").value(2));
+
+        verify(statisticService, times(1)).getViewStatsSeries(
+                LocalDateTime.parse("2023-01-01 00:00:00", formatter),
+                LocalDateTime.parse("2023-01-02 12:00:00", formatter),
+                "/uri", "day", true);
+    }
+
+    @SneakyThrows
+    @Test
+    void getEntityViews_whenInvoked_thenIdsPassedToServiceAndViewsReturned() {
+        when(statisticService.getEntityViews(any(), any(), any(), anyBoolean()))
+                .thenReturn(new EntityViewsDto(new long[]{1L, 3L}, new long[]{5L, 7L}));
+
+        mvc.perform(get("/stats/entities?start={start}&end={end}&ids={ids}&unique=true",
+                        "2023-01-01 00:00:00", "2024-01-01 00:00:00", "1,2,3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.ids[1]").value(3))
+                .andExpect(jsonPath("$.hits[1]").value(7));
+
+        verify(statisticService, times(1)).getEntityViews(
+                LocalDateTime.parse("2023-01-01 00:00:00", formatter),
+                LocalDateTime.parse("2024-01-01 00:00:00", formatter),
+                List.of(1L, 2L, 3L), true);
+    }
+
+    @SneakyThrows
+    @Test
+    void getViewStatsChanges_whenSinceGiven_thenChangesAndNewCursorReturned() {
+        when(statisticService.getViewStatsChanges(42L, 1000)).thenReturn(new ViewStatsChangesDto(45L,
+                List.of(new ViewStatsChangeDto("app", "/uri", 10L, 4L))));
+
+        mvc.perform(get("/stats/changes?since={since}", 42))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.cursor").value(45))
+                .andExpect(jsonPath("$.changes[0].uri").value("/uri"))
+                .andExpect(jsonPath("$.changes[0].uniqueHits").value(4));
+    }
+
+    @SneakyThrows
+    @Test
+    void queryViewStats_whenUrisInBody_thenAllPassedToService() {
+        List<String> uris = IntStream.range(0, 2000)
+                .mapToObj(i -> "/events/" + i)
+                .collect(Collectors.toList());
+        String body = "{\"start\":\"2023-01-01 00:00:00\",\"end\":\"2024-01-01 00:00:00\",\"unique\":true," +
+                "\"uris\":" + objectMapper.writeValueAsString(uris) + "}";
+        when(statisticService.getViewStats(any(), any(), any(), anyBoolean()))
+                .thenReturn(List.of(new ViewStatsDto("app", "/events/1", 3L)));
+
+        mvc.perform(post("/stats/query")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].hits").value(3));
+
+        verify(statisticService, times(1)).getViewStats(startArgumentCaptor.capture(),
+                endArgumentCaptor.capture(), urisArgumentCaptor.capture(), uniqueArgumentCaptor.capture());
+        assertEquals(LocalDateTime.parse("2023-01-01 00:00:00", formatter), startArgumentCaptor.getValue());
+        assertEquals(uris, urisArgumentCaptor.getValue());
+        assertEquals(true, uniqueArgumentCaptor.getValue());
+    }
+
+    @SneakyThrows
+    @Test
+    void queryViewStats_whenEndAbsent_thenStatusIsBadRequest() {
+        mvc.perform(post("/stats/query")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"start\":\"2023-01-01 00:00:00\",\"uris\":[\"/uri\"]}"))
+                .andExpect(status().isBadRequest());
+
+        verify(statisticService, never()).getViewStats(any(), any(), any(), anyBoolean());
+    }
+
     @SneakyThrows
     @Test
     void getViewStats_whenStartAbsent_thenStatusIsBadRequest() {
@@ -324,4 +736,15 @@ class StatisticServiceControllerTest {
                         start, uri1, uri2, String.valueOf(unique)))
                 .andExpect(status().isBadRequest());
     }
-}
\ No newline at end of file
+
+    @SneakyThrows
+    private byte[] gzip(byte[]... parts) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            for (byte[] part : parts) {
+                gzip.write(part);
+            }
+        }
+        return compressed.toByteArray();
+    }
+}
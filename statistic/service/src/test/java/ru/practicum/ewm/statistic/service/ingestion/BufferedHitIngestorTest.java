@@ -0,0 +1,128 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.StatisticServiceRepository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BufferedHitIngestorTest {
+
+    @Mock
+    private StatisticServiceRepository repository;
+    @Captor
+    private ArgumentCaptor<List<EndpointHit>> batchArgumentCaptor;
+
+    @Test
+    void ingest_whenBatchSizeReached_thenBatchFlushedWithoutWaitingForInterval() throws InterruptedException {
+        BufferedHitIngestor ingestor = new BufferedHitIngestor(repository, 100, 3, 60_000, 10);
+        ingestor.start();
+
+        ingestor.ingest(getHit("/uri1"));
+        ingestor.ingest(getHit("/uri2"));
+        ingestor.ingest(getHit("/uri3"));
+
+        verify(repository, timeout(5_000).times(1)).saveAll(batchArgumentCaptor.capture());
+        assertThat(batchArgumentCaptor.getValue().size(), equalTo(3));
+        ingestor.stop();
+    }
+
+    @Test
+    void ingest_whenFlushIntervalElapsed_thenPartialBatchFlushed() throws InterruptedException {
+        BufferedHitIngestor ingestor = new BufferedHitIngestor(repository, 100, 500, 50, 10);
+        ingestor.start();
+
+        ingestor.ingest(getHit("/uri"));
+
+        verify(repository, timeout(5_000).times(1)).saveAll(batchArgumentCaptor.capture());
+        assertThat(batchArgumentCaptor.getValue().size(), equalTo(1));
+        ingestor.stop();
+    }
+
+    @Test
+    void stop_whenHitsQueued_thenQueueDrained() throws InterruptedException {
+        BufferedHitIngestor ingestor = new BufferedHitIngestor(repository, 100, 500, 60_000, 10);
+        ingestor.start();
+        ingestor.ingest(getHit("/uri1"));
+        ingestor.ingest(getHit("/uri2"));
+
+        ingestor.stop();
+
+        verify(repository, atLeastOnce()).saveAll(batchArgumentCaptor.capture());
+        int savedHits = batchArgumentCaptor.getAllValues().stream().mapToInt(List::size).sum();
+        assertThat(savedHits, equalTo(2));
+        assertThat(ingestor.getQueueSize(), equalTo(0));
+    }
+
+    @Test
+    void ingest_whenQueueFull_thenHitSavedSynchronously() throws InterruptedException {
+        BufferedHitIngestor ingestor = new BufferedHitIngestor(repository, 1, 500, 60_000, 10);
+        EndpointHit first = getHit("/uri1");
+        EndpointHit second = getHit("/uri2");
+
+        ingestor.ingest(first);
+        ingestor.ingest(second);
+
+        verify(repository, times(1)).save(second);
+        verify(repository, never()).saveAll(anyList());
+        ingestor.start();
+        ingestor.stop();
+    }
+
+    @Test
+    void ingest_whenBatchFailsOnOutage_thenHitsRetriedUntilSaved() throws InterruptedException {
+        BufferedHitIngestor ingestor = new BufferedHitIngestor(repository, 100, 2, 60_000, 10);
+        EndpointHit first = getHit("/uri1");
+        EndpointHit second = getHit("/uri2");
+        doThrow(new DataAccessResourceFailureException("down")).when(repository).saveAll(anyList());
+        doThrow(new DataAccessResourceFailureException("down")).doNothing().when(repository).save(first);
+        ingestor.start();
+
+        ingestor.ingest(first);
+        ingestor.ingest(second);
+
+        verify(repository, timeout(5_000).times(2)).save(first);
+        verify(repository, timeout(5_000).times(1)).save(second);
+        ingestor.stop();
+    }
+
+    @Test
+    void ingest_whenHitRejected_thenOnlyThatHitDropped() throws InterruptedException {
+        BufferedHitIngestor ingestor = new BufferedHitIngestor(repository, 100, 2, 60_000, 10);
+        EndpointHit first = getHit("/uri1");
+        EndpointHit second = getHit("/uri2");
+        doThrow(new DataIntegrityViolationException("bad")).when(repository).saveAll(anyList());
+        doThrow(new DataIntegrityViolationException("bad")).when(repository).save(first);
+        ingestor.start();
+
+        ingestor.ingest(first);
+        ingestor.ingest(second);
+
+        verify(repository, timeout(5_000).times(1)).save(second);
+        ingestor.stop();
+        verify(repository, times(1)).save(first);
+    }
+
+    private EndpointHit getHit(String uri) {
+        return EndpointHit.builder()
+                .app("app")
+                .uri(uri)
+                .ip("1.1.1.1")
+                .timestamp(LocalDateTime.of(2023, 7, 1, 12, 0))
+                .build();
+    }
+}
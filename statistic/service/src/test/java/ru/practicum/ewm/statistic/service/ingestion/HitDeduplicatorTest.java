@@ -0,0 +1,70 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+class HitDeduplicatorTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2023, 7, 1, 12, 30, 30);
+    private final SteppingClock clock = new SteppingClock(NOW.toInstant(ZoneOffset.UTC));
+    private MeterRegistry meterRegistry;
+    private HitDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        deduplicator = new HitDeduplicator(clock, meterRegistry, true, 1000);
+    }
+
+    @Test
+    void accept_whenSameHitRepeatedInWindow_thenRepeatsDropped() {
+        assertThat(deduplicator.accept(getHit("/events/1", "1.1.1.1", NOW)), is(true));
+        assertThat(deduplicator.accept(getHit("/events/1", "1.1.1.1", NOW)), is(false));
+        assertThat(deduplicator.accept(getHit("/events/1", "1.1.1.1", NOW)), is(false));
+        assertThat(deduplicator.accept(getHit("/events/1", "2.2.2.2", NOW)), is(true));
+        assertThat(deduplicator.accept(getHit("/events/2", "1.1.1.1", NOW)), is(true));
+        assertThat(deduplicator.accept(getHit("/events/1", "1.1.1.1", NOW.plusSeconds(1))), is(true));
+
+        assertThat(meterRegistry.counter("stats.ingestion.dedupe", "result", "accepted").count(), equalTo(4.0));
+        assertThat(meterRegistry.counter("stats.ingestion.dedupe", "result", "dropped").count(), equalTo(2.0));
+        assertThat(meterRegistry.get("stats.ingestion.dedupe.ratio").gauge().value(), equalTo(2.0 / 6));
+    }
+
+    @Test
+    void accept_whenSeenKeyExpired_thenHitAcceptedAgain() {
+        deduplicator.accept(getHit("/events/1", "1.1.1.1", NOW));
+        clock.advance(1500);
+        assertThat(deduplicator.accept(getHit("/events/1", "1.1.1.1", NOW)), is(false));
+
+        clock.advance(1000);
+
+        assertThat(deduplicator.accept(getHit("/events/1", "1.1.1.1", NOW)), is(true));
+    }
+
+    @Test
+    void accept_whenDisabled_thenEveryHitAccepted() {
+        HitDeduplicator disabled = new HitDeduplicator(clock, meterRegistry, false, 1000);
+
+        assertThat(disabled.accept(getHit("/events/1", "1.1.1.1", NOW)), is(true));
+        assertThat(disabled.accept(getHit("/events/1", "1.1.1.1", NOW)), is(true));
+    }
+
+    private EndpointHit getHit(String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("app")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
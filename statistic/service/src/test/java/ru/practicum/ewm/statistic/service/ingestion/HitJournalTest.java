@@ -0,0 +1,109 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HitJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void read_whenHitsSynced_thenSameHitsReturnedAcrossSegments() throws IOException {
+        HitJournal journal = new HitJournal(directory, 128);
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            hits.add(getHit("/events/" + i, i % 2 == 0 ? "1.1.1.1" : "2001:db8::1"));
+        }
+
+        journal.sync(journal.append(hits.subList(0, 4)));
+        journal.sync(journal.append(hits.subList(4, 10)));
+        List<EndpointHit> read = new ArrayList<>();
+        long position = journal.read(journal.getCheckpoint(), 100, read);
+
+        assertThat(uris(read), equalTo(uris(hits)));
+        assertThat(read.get(1).getIp(), equalTo("2001:db8::1"));
+        assertThat(read.get(0).getTimestamp(), equalTo(hits.get(0).getTimestamp()));
+        assertThat(journal.read(position, 100, new ArrayList<>()), equalTo(position));
+    }
+
+    @Test
+    void reopen_whenCheckpointed_thenOnlyUnappliedHitsReadAndAppliedSegmentsDeleted() throws IOException {
+        HitJournal journal = new HitJournal(directory, 128);
+        for (int i = 0; i < 6; i++) {
+            journal.sync(journal.append(List.of(getHit("/events/" + i, "1.1.1.1"))));
+        }
+        List<EndpointHit> applied = new ArrayList<>();
+        journal.checkpoint(journal.read(journal.getCheckpoint(), 4, applied));
+        journal.close();
+
+        HitJournal reopened = new HitJournal(directory, 128);
+        List<EndpointHit> pending = new ArrayList<>();
+        reopened.read(reopened.getCheckpoint(), 100, pending);
+        reopened.sync(reopened.append(List.of(getHit("/events/6", "1.1.1.1"))));
+        List<EndpointHit> afterAppend = new ArrayList<>();
+        reopened.read(reopened.getCheckpoint(), 100, afterAppend);
+
+        assertThat(uris(pending), equalTo(List.of("/events/4", "/events/5")));
+        assertThat(uris(afterAppend), equalTo(List.of("/events/4", "/events/5", "/events/6")));
+        assertThat(Files.exists(directory.resolve(String.format("hits-%020d.log", 0))), equalTo(false));
+        assertThat(Files.exists(directory.resolve(String.format("hits-%020d.log", 1))), equalTo(true));
+    }
+
+    @Test
+    void append_whenBatchHasUnencodableHit_thenNoHitOfBatchWritten() throws IOException {
+        HitJournal journal = new HitJournal(directory, 128);
+
+        assertThrows(IllegalArgumentException.class, () -> journal.append(List.of(
+                getHit("/events/1", "1.1.1.1"),
+                getHit("/events/2", "1.1.1.1"),
+                getHit("/events/3", "not an ip"))));
+        journal.sync(journal.append(List.of(getHit("/events/4", "1.1.1.1"))));
+        List<EndpointHit> read = new ArrayList<>();
+        journal.read(journal.getCheckpoint(), 100, read);
+
+        assertThat(uris(read), equalTo(List.of("/events/4")));
+    }
+
+    @Test
+    void append_whenRecordsFillSegmentExactly_thenNextRecordStartsNewSegment() throws IOException {
+        // every record of these hits takes 44 bytes
+        HitJournal journal = new HitJournal(directory, 88);
+        journal.sync(journal.append(List.of(getHit("/events/0", "1.1.1.1"), getHit("/events/1", "1.1.1.1"))));
+        journal.sync(journal.append(List.of(getHit("/events/2", "1.1.1.1"), getHit("/events/3", "1.1.1.1"),
+                getHit("/events/4", "1.1.1.1"))));
+        journal.close();
+
+        HitJournal reopened = new HitJournal(directory, 88);
+        List<EndpointHit> read = new ArrayList<>();
+        reopened.read(reopened.getCheckpoint(), 100, read);
+
+        assertThat(uris(read), equalTo(List.of("/events/0", "/events/1", "/events/2", "/events/3", "/events/4")));
+    }
+
+    private List<String> uris(List<EndpointHit> hits) {
+        return hits.stream().map(EndpointHit::getUri).collect(Collectors.toList());
+    }
+
+    private EndpointHit getHit(String uri, String ip) {
+        return EndpointHit.builder()
+                .app("app")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(LocalDateTime.of(2023, 7, 1, 12, 0, 5))
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.FlaggedHitRepository;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class IpRateFilterTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2023, 7, 1, 12, 30, 0);
+    private final SteppingClock clock = new SteppingClock(NOW.toInstant(ZoneOffset.UTC));
+    private MeterRegistry meterRegistry;
+    @Mock
+    private FlaggedHitRepository flaggedHitRepository;
+    @Captor
+    private ArgumentCaptor<List<EndpointHit>> flaggedArgumentCaptor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void accept_whenIpAboveThreshold_thenItsHitsDroppedUntilWindowSlides() {
+        IpRateFilter filter = new IpRateFilter(clock, meterRegistry, flaggedHitRepository, true, 60, 3, 1000, 100,
+                "drop");
+
+        // the sketch flags the fourth hit, the exact count since then the fourth after it
+        for (int i = 0; i < 6; i++) {
+            assertThat(filter.accept(getHit("1.1.1.1")), is(true));
+        }
+        assertThat(filter.accept(getHit("1.1.1.1")), is(false));
+        assertThat(filter.accept(getHit("2.2.2.2")), is(true));
+        clock.advance(61_000);
+
+        assertThat(filter.accept(getHit("1.1.1.1")), is(true));
+        assertThat(meterRegistry.counter("stats.ingestion.ip-rate", "result", "accepted").count(), equalTo(8.0));
+        assertThat(meterRegistry.counter("stats.ingestion.ip-rate", "result", "dropped").count(), equalTo(1.0));
+        filter.flushFlagged();
+        verify(flaggedHitRepository, never()).addFlagged(anyList());
+    }
+
+    @Test
+    void accept_whenActionIsTag_thenHitsAboveThresholdSavedApart() {
+        IpRateFilter filter = new IpRateFilter(clock, meterRegistry, flaggedHitRepository, true, 60, 1, 1000, 100,
+                "tag");
+
+        assertThat(filter.accept(getHit("1.1.1.1")), is(true));
+        assertThat(filter.accept(getHit("1.1.1.1")), is(true));
+        assertThat(filter.accept(getHit("1.1.1.1")), is(false));
+        filter.flushFlagged();
+
+        verify(flaggedHitRepository).addFlagged(flaggedArgumentCaptor.capture());
+        assertThat(flaggedArgumentCaptor.getValue().size(), equalTo(1));
+        assertThat(meterRegistry.counter("stats.ingestion.ip-rate", "result", "accepted").count(), equalTo(2.0));
+        assertThat(meterRegistry.counter("stats.ingestion.ip-rate", "result", "tagged").count(), equalTo(1.0));
+    }
+
+    @Test
+    void accept_whenSketchCountersCollide_thenIpsBelowThresholdNotFlagged() {
+        IpRateFilter filter = new IpRateFilter(clock, meterRegistry, flaggedHitRepository, true, 60, 3, 1000, 100_000,
+                "drop");
+
+        for (int i = 0; i < 20_000; i++) {
+            assertThat(filter.accept(getHit("10." + (i >> 16) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff))),
+                    is(true));
+        }
+
+        assertThat(meterRegistry.counter("stats.ingestion.ip-rate", "result", "dropped").count(), equalTo(0.0));
+    }
+
+    @Test
+    void width_whenMoreHitsExpected_thenSketchWidenedUpToLimit() {
+        assertThat(IpRateFilter.width(1_000_000, 600), equalTo(4531));
+        assertThat(IpRateFilter.width(1_000, 600), equalTo(1024));
+        assertThat(IpRateFilter.width(1_000_000_000, 1), equalTo(1 << 16));
+    }
+
+    private EndpointHit getHit(String ip) {
+        return EndpointHit.builder()
+                .app("app")
+                .uri("/events/1")
+                .ip(ip)
+                .timestamp(NOW)
+                .build();
+    }
+}
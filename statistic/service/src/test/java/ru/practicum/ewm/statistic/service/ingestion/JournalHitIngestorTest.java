@@ -0,0 +1,103 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.StatisticServiceRepository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class JournalHitIngestorTest {
+
+    @TempDir
+    Path directory;
+    @Mock
+    private StatisticServiceRepository repository;
+    @Captor
+    private ArgumentCaptor<List<EndpointHit>> batchArgumentCaptor;
+
+    @Test
+    void ingest_whenDatabaseFailsOnce_thenBatchRetriedAndCheckpointed() throws IOException, InterruptedException {
+        doThrow(new DataAccessResourceFailureException("database is down"))
+                .doNothing()
+                .when(repository).saveAll(anyList());
+        JournalHitIngestor ingestor = new JournalHitIngestor(repository, directory, 1 << 16, 500, 20, 50);
+        ingestor.start();
+
+        ingestor.ingest(getHit("/uri1"));
+        ingestor.ingest(getHit("/uri2"));
+
+        verify(repository, timeout(5_000).times(2)).saveAll(batchArgumentCaptor.capture());
+        verify(repository, never()).save(any());
+        ingestor.stop();
+        assertThat(ingestor.getPendingBytes(), equalTo(0L));
+    }
+
+    @Test
+    void ingest_whenDatabaseRejectsHit_thenItIsDeadLetteredAndOthersApplied()
+            throws IOException, InterruptedException {
+        doAnswer(invocation -> {
+            List<EndpointHit> hits = invocation.getArgument(0);
+            if (hits.stream().anyMatch(hit -> hit.getUri().equals("/bad"))) {
+                throw new DataIntegrityViolationException("value too long");
+            }
+            return null;
+        }).when(repository).saveAll(anyList());
+        HitJournal journal = new HitJournal(directory, 1 << 16);
+        journal.sync(journal.append(List.of(getHit("/uri1"), getHit("/bad"), getHit("/uri2"))));
+        journal.close();
+        JournalHitIngestor ingestor = new JournalHitIngestor(repository, directory, 1 << 16, 500, 20, 50);
+
+        ingestor.start();
+
+        verify(repository, timeout(5_000).times(4)).saveAll(batchArgumentCaptor.capture());
+        ingestor.stop();
+        assertThat(ingestor.getDeadLetterHits(), equalTo(1L));
+        assertThat(ingestor.getPendingBytes(), equalTo(0L));
+        HitJournal deadLetter = new HitJournal(directory.resolve("dead-letter"), 1 << 16);
+        List<EndpointHit> deadLettered = new ArrayList<>();
+        deadLetter.read(deadLetter.getCheckpoint(), 10, deadLettered);
+        deadLetter.close();
+        assertThat(deadLettered.get(0).getUri(), equalTo("/bad"));
+    }
+
+    @Test
+    void start_whenJournalHasUnappliedHits_thenTheyAreApplied() throws IOException, InterruptedException {
+        HitJournal journal = new HitJournal(directory, 1 << 16);
+        journal.sync(journal.append(List.of(getHit("/uri1"), getHit("/uri2"))));
+        journal.close();
+        JournalHitIngestor ingestor = new JournalHitIngestor(repository, directory, 1 << 16, 500, 20, 50);
+
+        ingestor.start();
+
+        verify(repository, timeout(5_000).times(1)).saveAll(batchArgumentCaptor.capture());
+        assertThat(batchArgumentCaptor.getValue().size(), equalTo(2));
+        ingestor.stop();
+    }
+
+    private EndpointHit getHit(String uri) {
+        return EndpointHit.builder()
+                .app("app")
+                .uri(uri)
+                .ip("1.1.1.1")
+                .timestamp(LocalDateTime.of(2023, 7, 1, 12, 0))
+                .build();
+    }
+}
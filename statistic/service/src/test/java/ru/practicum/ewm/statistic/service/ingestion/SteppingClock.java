@@ -0,0 +1,33 @@
+package ru.practicum.ewm.statistic.service.ingestion;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+class SteppingClock extends Clock {
+    private Instant now;
+
+    SteppingClock(Instant now) {
+        this.now = now;
+    }
+
+    void advance(long millis) {
+        now = now.plusMillis(millis);
+    }
+
+    @Override
+    public ZoneId getZone() {
+        return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+        return this;
+    }
+
+    @Override
+    public Instant instant() {
+        return now;
+    }
+}
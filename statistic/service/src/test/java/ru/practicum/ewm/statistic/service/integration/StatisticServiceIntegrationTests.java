@@ -7,13 +7,20 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.web.client.TestRestTemplate;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 import ru.practicum.ewm.statistic.dto.EndpointHitDto;
 import ru.practicum.ewm.statistic.dto.Formats;
+import ru.practicum.ewm.statistic.dto.HitBatchResultDto;
+import ru.practicum.ewm.statistic.dto.HitImportResultDto;
 import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ip.IpAddressCodec;
 import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.EpochSeconds;
 import ru.practicum.ewm.statistic.service.repository.StatisticServiceRepository;
 
 import java.net.URI;
@@ -32,6 +39,10 @@ import static org.hamcrest.Matchers.equalTo;
 class StatisticServiceIntegrationTests {
 
     private static final String HOST = "http://localhost:";
+    private static final String SELECT_HITS = "SELECT h.hit_id, a.app_name, u.app_uri, h.ip, h.timestamp " +
+            "FROM endpoint_hit h " +
+            "JOIN app_dictionary a ON a.app_id = h.app_id " +
+            "JOIN uri_dictionary u ON u.uri_id = h.uri_id";
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Formats.DATE_TIME_PATTERN);
     @Autowired
     private TestRestTemplate testRestTemplate;
@@ -46,7 +57,7 @@ class StatisticServiceIntegrationTests {
 
     @BeforeEach
     public void beforeEach() {
-        jdbcTemplate.update("DELETE FROM endpoint_hit");
+        statisticRepository.deleteAll();
         hitUrl = URI.create(HOST + port + "/hit");
         startURL = URI.create(HOST + port + "/stats");
     }
@@ -63,13 +74,58 @@ class StatisticServiceIntegrationTests {
 
         testRestTemplate.postForEntity(hitUrl, endpointHitDto, Void.class);
 
-        EndpointHit savedHit = jdbcTemplate.query("SELECT * FROM endpoint_hit", this::mapRowToEndpointHit).get(0);
+        EndpointHit savedHit = jdbcTemplate.query(SELECT_HITS, this::mapRowToEndpointHit).get(0);
         assertThat(savedHit.getApp(), equalTo(endpointHitDto.getApp()));
         assertThat(savedHit.getUri(), equalTo(endpointHitDto.getUri()));
         assertThat(savedHit.getIp(), equalTo(endpointHitDto.getIp()));
         assertThat(savedHit.getTimestamp(), equalTo(endpointHitDto.getTimestamp()));
     }
 
+    @Test
+    void endpointHitsBatchSaved() {
+        LocalDateTime timestamp = LocalDateTime.parse("2022-09-06 11:00:23", formatter);
+        EndpointHitDto endpointHitDto = EndpointHitDto.builder()
+                .app("app")
+                .uri("/uri")
+                .ip("1.1.1.1")
+                .timestamp(timestamp)
+                .build();
+
+        HitBatchResultDto result = testRestTemplate.postForEntity(
+                URI.create(HOST + port + "/hits"),
+                List.of(endpointHitDto, endpointHitDto),
+                HitBatchResultDto.class
+        ).getBody();
+
+        assertThat(result.getSaved(), equalTo(2));
+        assertThat(statisticRepository.findAll().size(), equalTo(2));
+    }
+
+    @Test
+    void endpointHitsImportedFromCsv() {
+        String csv = "app,uri,ip,timestamp\n"
+                + "app,/uri,1.1.1.1,2022-09-06 11:00:23\n"
+                + "app,\"/uri,with,commas\",2001:db8::1,2022-09-06 11:00:24\n"
+                + "app,/uri,1.1.1.1,not a date\n";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.parseMediaType("text/csv"));
+
+        HitImportResultDto result = testRestTemplate.postForEntity(
+                URI.create(HOST + port + "/admin/hits/import"),
+                new HttpEntity<>(csv, headers),
+                HitImportResultDto.class
+        ).getBody();
+
+        assertThat(result.getReceived(), equalTo(3));
+        assertThat(result.getImported(), equalTo(2));
+        assertThat(result.getRejected(), equalTo(1));
+        assertThat(result.getErrors().get(0).getParamName(), equalTo("timestamp"));
+        List<EndpointHit> savedHits = jdbcTemplate.query(SELECT_HITS + " ORDER BY h.timestamp",
+                this::mapRowToEndpointHit);
+        assertThat(savedHits.get(1).getUri(), equalTo("/uri,with,commas"));
+        assertThat(savedHits.get(1).getIp(), equalTo("2001:db8::1"));
+    }
+
     @Test
     void getViewStatsWithEmptyUrisList() {
         EndpointHit endpointHit = getDefaultEndpointHit();
@@ -149,8 +205,8 @@ class StatisticServiceIntegrationTests {
                 .id(resultSet.getLong("hit_id"))
                 .app(resultSet.getString("app_name"))
                 .uri(resultSet.getString("app_uri"))
-                .ip(resultSet.getString("ip"))
-                .timestamp(LocalDateTime.parse(resultSet.getString("timestamp"), formatter))
+                .ip(IpAddressCodec.unpack(resultSet.getBytes("ip")))
+                .timestamp(EpochSeconds.toLocalDateTime(resultSet.getLong("timestamp")))
                 .build();
     }
 }
@@ -0,0 +1,107 @@
+package ru.practicum.ewm.statistic.service.limit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.practicum.ewm.statistic.service.exception.TooManyRequestsException;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = 1_000_000;
+    private static final long SLOW = 10_000_000;
+
+    @Test
+    void tryAcquire_whenLimitInUse_thenRejectedAndCounted() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("hit", 2, 4, 2.0, 0.9, 1);
+
+        assertThat(limiter.tryAcquire(), equalTo(true));
+        assertThat(limiter.tryAcquire(), equalTo(true));
+        assertThat(limiter.tryAcquire(), equalTo(false));
+        limiter.release(FAST);
+
+        assertThat(limiter.tryAcquire(), equalTo(true));
+        assertThat(limiter.getRejected(), equalTo(1L));
+    }
+
+    @Test
+    void release_whenLatencyGrows_thenLimitShrinksAndRecoversWhenFastAgain() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("hit", 2, 100, 2.0, 0.5, 4);
+        int initialLimit = limiter.getLimit();
+        releaseSequentially(limiter, FAST, 4);
+
+        releaseSequentially(limiter, SLOW, 4);
+        int shrunkLimit = limiter.getLimit();
+        for (int i = 0; i < 20; i++) {
+            acquireHalfAndRelease(limiter);
+        }
+
+        assertThat(shrunkLimit, equalTo(initialLimit / 2));
+        assertThat(limiter.getLimit(), greaterThan(shrunkLimit));
+    }
+
+    @Test
+    void release_whenSingleSlowRequestInWindow_thenLimitKept() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("hit", 2, 100, 2.0, 0.5, 10);
+        releaseSequentially(limiter, FAST, 10);
+        int limit = limiter.getLimit();
+
+        releaseSequentially(limiter, FAST, 9);
+        releaseSequentially(limiter, SLOW, 1);
+
+        assertThat(limiter.getLimit(), equalTo(limit));
+    }
+
+    @Test
+    void preHandle_whenSaturated_thenTooManyRequestsAndSlotReleasedAfterCompletion() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("stats", 1, 1, 2.0, 0.9, 1);
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(limiter, 3);
+        MockHttpServletRequest first = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(first, response, null);
+        TooManyRequestsException exception = assertThrows(TooManyRequestsException.class,
+                () -> interceptor.preHandle(new MockHttpServletRequest(), response, null));
+        interceptor.afterCompletion(first, response, null, null);
+
+        assertThat(exception.getRetryAfterSeconds(), equalTo(3L));
+        assertThat(limiter.getInFlight(), equalTo(0));
+        assertThat(interceptor.preHandle(new MockHttpServletRequest(), response, null), equalTo(true));
+    }
+
+    @Test
+    void preHandle_whenRequestNotLimited_thenPassedWithoutSlot() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("stats", 1, 1, 2.0, 0.9, 1);
+        ConcurrencyLimitInterceptor interceptor = new ConcurrencyLimitInterceptor(limiter, 3,
+                request -> request.getParameter("stream") == null);
+        MockHttpServletRequest streamed = new MockHttpServletRequest();
+        streamed.setParameter("stream", "true");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(new MockHttpServletRequest(), response, null);
+
+        assertThat(interceptor.preHandle(streamed, response, null), equalTo(true));
+        assertThat(limiter.getInFlight(), equalTo(1));
+    }
+
+    private void releaseSequentially(AdaptiveConcurrencyLimiter limiter, long latencyNanos, int requests) {
+        for (int i = 0; i < requests; i++) {
+            limiter.tryAcquire();
+            limiter.release(latencyNanos);
+        }
+    }
+
+    private void acquireHalfAndRelease(AdaptiveConcurrencyLimiter limiter) {
+        int acquired = 0;
+        while (acquired * 2 <= limiter.getLimit() && limiter.tryAcquire()) {
+            acquired++;
+        }
+        for (int i = 0; i < acquired; i++) {
+            limiter.release(FAST);
+        }
+    }
+}
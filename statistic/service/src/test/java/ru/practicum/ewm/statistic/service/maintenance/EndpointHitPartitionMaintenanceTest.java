@@ -0,0 +1,53 @@
+package ru.practicum.ewm.statistic.service.maintenance;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+class EndpointHitPartitionMaintenanceTest {
+
+    @Test
+    void partitionName_whenFormattedAndParsed_thenSameMonthReturned() {
+        YearMonth month = YearMonth.of(2023, 7);
+
+        String name = EndpointHitPartitionMaintenance.partitionName(month);
+
+        assertThat(name, equalTo("endpoint_hit_y2023m07"));
+        assertThat(EndpointHitPartitionMaintenance.partitionMonth(name), equalTo(Optional.of(month)));
+        assertThat(EndpointHitPartitionMaintenance.partitionMonth("endpoint_hit_default"), equalTo(Optional.empty()));
+    }
+
+    @Test
+    void currentMonth_whenServerZoneAheadOfUtc_thenUtcMonthReturned() {
+        Clock clock = Clock.fixed(Instant.parse("2023-07-31T22:30:00Z"), ZoneId.of("Europe/Moscow"));
+
+        assertThat(EndpointHitPartitionMaintenance.currentMonth(clock), equalTo(YearMonth.of(2023, 7)));
+    }
+
+    @Test
+    void monthsToCreate_whenYearBoundaryCrossed_thenCurrentAndUpcomingMonthsReturned() {
+        List<YearMonth> months = EndpointHitPartitionMaintenance.monthsToCreate(YearMonth.of(2023, 11), 2);
+
+        assertThat(months, equalTo(List.of(YearMonth.of(2023, 11), YearMonth.of(2023, 12), YearMonth.of(2024, 1))));
+    }
+
+    @Test
+    void partitionsToDrop_whenRetentionSet_thenOnlyExpiredMonthlyPartitionsReturned() {
+        List<String> partitions = List.of("endpoint_hit_default", "endpoint_hit_y2023m01",
+                "endpoint_hit_y2023m04", "endpoint_hit_y2023m05", "endpoint_hit_y2023m07");
+
+        List<String> toDrop = EndpointHitPartitionMaintenance.partitionsToDrop(partitions, YearMonth.of(2023, 7), 2);
+
+        assertThat(toDrop, equalTo(List.of("endpoint_hit_y2023m01", "endpoint_hit_y2023m04")));
+        assertThat(EndpointHitPartitionMaintenance.partitionsToDrop(partitions, YearMonth.of(2023, 7), 0),
+                equalTo(List.of()));
+    }
+}
@@ -0,0 +1,132 @@
+package ru.practicum.ewm.statistic.service.recent;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ip.IpAddressCodec;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.EpochSeconds;
+import ru.practicum.ewm.statistic.service.repository.HitDictionaryRepository;
+import ru.practicum.ewm.statistic.service.repository.HitRowHandler;
+import ru.practicum.ewm.statistic.service.repository.HitsSavedEvent;
+import ru.practicum.ewm.statistic.service.repository.StatisticServiceRepository;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class RecentHitWindowTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2023, 7, 1, 12, 30, 30);
+    @Mock
+    private StatisticServiceRepository repository;
+    @Mock
+    private HitDictionaryRepository dictionaryRepository;
+    private RecentHitWindow window;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        window = new RecentHitWindow(repository, dictionaryRepository, clock, true, 60, 2);
+        lenient().when(dictionaryRepository.getAppName(1)).thenReturn("app");
+        lenient().when(dictionaryRepository.getUri(1)).thenReturn("/events/1");
+        lenient().when(dictionaryRepository.getUri(2)).thenReturn("/events/2");
+    }
+
+    @Test
+    void getViewStats_whenRangeInsideWindow_thenCountedFromMemory() {
+        window.rebuild();
+        window.onHitsSaved(new HitsSavedEvent(List.of(
+                getHit(1, "1.1.1.1", NOW.minusMinutes(10)),
+                getHit(1, "1.1.1.1", NOW.minusMinutes(5)),
+                getHit(2, "2.2.2.2", NOW.minusMinutes(5))
+        )));
+
+        Optional<List<ViewStatsDto>> stats = window.getViewStats(NOW.minusMinutes(30), NOW.plusMinutes(1),
+                null, false);
+
+        assertThat(stats, equalTo(Optional.of(List.of(
+                new ViewStatsDto("app", "/events/1", 2L),
+                new ViewStatsDto("app", "/events/2", 1L)))));
+        verify(repository, never()).getViewStats(any(), any(), any(), anyBoolean());
+    }
+
+    @Test
+    void getViewStats_whenUnique_thenVisitorsDeduplicatedAcrossMinutesAndEdges() {
+        window.rebuild();
+        window.onHitsSaved(new HitsSavedEvent(List.of(
+                getHit(1, "1.1.1.1", NOW.minusMinutes(10)),
+                getHit(1, "1.1.1.1", NOW.minusMinutes(5))
+        )));
+        LocalDateTime start = NOW.minusMinutes(30);
+        doAnswer(invocation -> {
+            if (invocation.getArgument(0).equals(start.plusSeconds(1))) {
+                invocation.<HitRowHandler>getArgument(2).processHit(1, 1, IpAddressCodec.pack("1.1.1.1"),
+                        EpochSeconds.of(start.plusSeconds(5)));
+            }
+            return null;
+        }).when(repository).scanHits(any(), any(), any());
+
+        Optional<List<ViewStatsDto>> stats = window.getViewStats(start, NOW.plusMinutes(1), null, true);
+
+        assertThat(stats, equalTo(Optional.of(List.of(new ViewStatsDto("app", "/events/1", 1L)))));
+    }
+
+    @Test
+    void getViewStats_whenRangeStartsBeforeWindow_thenOlderPartMergedFromRepository() {
+        window.rebuild();
+        window.onHitsSaved(new HitsSavedEvent(List.of(getHit(1, "1.1.1.1", NOW.minusMinutes(10)))));
+        LocalDateTime start = NOW.minusDays(1);
+        LocalDateTime windowStart = LocalDateTime.of(2023, 7, 1, 11, 31);
+        when(repository.getViewStats(start, windowStart, null, false))
+                .thenReturn(List.of(new ViewStatsDto("app", "/events/1", 4L)));
+
+        Optional<List<ViewStatsDto>> stats = window.getViewStats(start, NOW.plusMinutes(1), null, false);
+        Optional<List<ViewStatsDto>> uniqueStats = window.getViewStats(start, NOW.plusMinutes(1), null, true);
+
+        assertThat(stats, equalTo(Optional.of(List.of(new ViewStatsDto("app", "/events/1", 5L)))));
+        assertThat(uniqueStats, equalTo(Optional.empty()));
+    }
+
+    @Test
+    void rebuild_whenHitsStoredInWindow_thenScannedHitsCounted() {
+        LocalDateTime hitTime = NOW.minusMinutes(20);
+        doAnswer(invocation -> {
+            LocalDateTime from = invocation.getArgument(0);
+            LocalDateTime to = invocation.getArgument(1);
+            if (!hitTime.isBefore(from) && hitTime.isBefore(to)) {
+                invocation.<HitRowHandler>getArgument(2).processHit(1, 1, IpAddressCodec.pack("1.1.1.1"),
+                        EpochSeconds.of(hitTime));
+            }
+            return null;
+        }).when(repository).scanHits(any(), any(), any());
+
+        window.rebuild();
+        Optional<List<ViewStatsDto>> stats = window.getViewStats(NOW.minusMinutes(40), NOW.minusMinutes(2),
+                null, false);
+
+        assertThat(stats, equalTo(Optional.of(List.of(new ViewStatsDto("app", "/events/1", 1L)))));
+    }
+
+    private EndpointHit getHit(int uriId, String ip, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("app")
+                .uri("/events/" + uriId)
+                .ip(ip)
+                .timestamp(timestamp)
+                .appId(1)
+                .uriId(uriId)
+                .build();
+    }
+}
@@ -0,0 +1,114 @@
+package ru.practicum.ewm.statistic.service.recent;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ip.IpAddressCodec;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+import ru.practicum.ewm.statistic.service.repository.EpochSeconds;
+import ru.practicum.ewm.statistic.service.repository.HitDictionaryRepository;
+import ru.practicum.ewm.statistic.service.repository.HitRowHandler;
+import ru.practicum.ewm.statistic.service.repository.HitsSavedEvent;
+import ru.practicum.ewm.statistic.service.repository.StatisticServiceRepository;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class TopUriWindowTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2023, 7, 1, 12, 30, 30);
+    @Mock
+    private StatisticServiceRepository repository;
+    @Mock
+    private HitDictionaryRepository dictionaryRepository;
+    private TopUriWindow window;
+
+    @BeforeEach
+    void setUp() {
+        Clock clock = Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC);
+        window = new TopUriWindow(repository, dictionaryRepository, clock, true, 60, 3);
+        lenient().when(dictionaryRepository.getAppName(1)).thenReturn("app");
+        lenient().when(dictionaryRepository.getAppName(2)).thenReturn("other-app");
+        for (int uriId = 1; uriId <= 5; uriId++) {
+            lenient().when(dictionaryRepository.getUri(uriId)).thenReturn("/events/" + uriId);
+        }
+    }
+
+    @Test
+    void getTopViewStats_whenRangeInsideWindow_thenHeaviestUrisReturned() {
+        window.rebuild();
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int uriId = 1; uriId <= 5; uriId++) {
+            for (int i = 0; i < uriId; i++) {
+                hits.add(getHit(1, uriId, NOW.minusMinutes(5)));
+            }
+        }
+        window.onHitsSaved(new HitsSavedEvent(hits));
+
+        Optional<List<ViewStatsDto>> top = window.getTopViewStats(NOW.minusMinutes(30), NOW.plusMinutes(1),
+                null, 2);
+
+        assertThat(top, equalTo(Optional.of(List.of(
+                new ViewStatsDto("app", "/events/5", 5L),
+                new ViewStatsDto("app", "/events/4", 4L)))));
+        verify(repository, never()).getTopViewStats(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void getTopViewStats_whenAppGiven_thenOtherAppsSkippedAndEdgesCountedFromDatabase() {
+        window.rebuild();
+        window.onHitsSaved(new HitsSavedEvent(List.of(
+                getHit(1, 1, NOW.minusMinutes(5)),
+                getHit(2, 2, NOW.minusMinutes(5)),
+                getHit(2, 2, NOW.minusMinutes(5))
+        )));
+        LocalDateTime start = NOW.minusMinutes(30);
+        doAnswer(invocation -> {
+            if (invocation.getArgument(0).equals(start.plusSeconds(1))) {
+                HitRowHandler handler = invocation.getArgument(2);
+                handler.processHit(1, 3, IpAddressCodec.pack("1.1.1.1"), EpochSeconds.of(start.plusSeconds(5)));
+                handler.processHit(1, 3, IpAddressCodec.pack("1.1.1.1"), EpochSeconds.of(start.plusSeconds(6)));
+                handler.processHit(2, 2, IpAddressCodec.pack("1.1.1.1"), EpochSeconds.of(start.plusSeconds(7)));
+            }
+            return null;
+        }).when(repository).scanHits(any(), any(), any());
+
+        Optional<List<ViewStatsDto>> top = window.getTopViewStats(start, NOW.plusMinutes(1), 1, 3);
+
+        assertThat(top, equalTo(Optional.of(List.of(
+                new ViewStatsDto("app", "/events/3", 2L),
+                new ViewStatsDto("app", "/events/1", 1L)))));
+    }
+
+    @Test
+    void getTopViewStats_whenRangeStartsBeforeWindowOrTooManyRows_thenEmpty() {
+        window.rebuild();
+
+        assertThat(window.getTopViewStats(NOW.minusDays(1), NOW, null, 2), equalTo(Optional.empty()));
+        assertThat(window.getTopViewStats(NOW.minusMinutes(30), NOW, null, 4), equalTo(Optional.empty()));
+    }
+
+    private EndpointHit getHit(int appId, int uriId, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app(appId == 1 ? "app" : "other-app")
+                .uri("/events/" + uriId)
+                .ip("1.1.1.1")
+                .timestamp(timestamp)
+                .appId(appId)
+                .uriId(uriId)
+                .build();
+    }
+}
@@ -0,0 +1,100 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+
+/**
+ * Times the parallel engine against the single stats query on generated hits. Not a part of the build, run with
+ * {@code mvn test -pl statistic/service -am -Dtest=ParallelViewStatsAggregatorBenchmark
+ * -Dsurefire.failIfNoSpecifiedTests=false}. All slices hit the one in-memory H2 of the tests, so the numbers
+ * only compare the engines with each other.
+ */
+@SpringBootTest(properties = {
+        "statistic-service.aggregation.engine=parallel",
+        "statistic-service.aggregation.slice-days=7"
+})
+@Slf4j
+class ParallelViewStatsAggregatorBenchmark {
+
+    private static final int HITS = 100_000;
+    private static final int DAYS = 90;
+    private static final int URIS = 100;
+    private static final int SAVE_BATCH = 10_000;
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int ITERATIONS = 10;
+    private final LocalDateTime start = LocalDateTime.of(2023, 1, 1, 0, 0);
+    private final LocalDateTime end = start.plusDays(DAYS);
+    @Autowired
+    private StatisticServiceRepository statisticRepository;
+
+    @BeforeEach
+    public void beforeEach() {
+        statisticRepository.deleteAll();
+        Random random = new Random(42);
+        List<EndpointHit> hits = new ArrayList<>(SAVE_BATCH);
+        for (int i = 0; i < HITS; i++) {
+            hits.add(EndpointHit.builder()
+                    .app("app")
+                    .uri("/events/" + random.nextInt(URIS))
+                    .ip("10.0." + random.nextInt(256) + "." + random.nextInt(256))
+                    .timestamp(start.plusSeconds(random.nextInt(DAYS * 86_400)))
+                    .build());
+            if (hits.size() == SAVE_BATCH) {
+                statisticRepository.saveAll(hits);
+                hits.clear();
+            }
+        }
+        statisticRepository.saveAll(hits);
+    }
+
+    @Test
+    void parallelEngineAgainstSingleQuery() {
+        List<ViewStatsDto> parallel = statisticRepository.getViewStats(start, end, List.of(), false);
+        List<ViewStatsDto> single = singleQuery();
+        assertThat(sorted(parallel), equalTo(sorted(single)));
+
+        double parallelMs = measure(() -> statisticRepository.getViewStats(start, end, List.of(), false));
+        double singleMs = measure(this::singleQuery);
+
+        log.info("{} hits over {} days: parallel engine {} ms, single query {} ms per call",
+                HITS, DAYS, String.format("%.1f", parallelMs), String.format("%.1f", singleMs));
+    }
+
+    private List<ViewStatsDto> singleQuery() {
+        List<ViewStatsDto> stats = new ArrayList<>();
+        statisticRepository.streamViewStats(start, end, List.of(), false, stats::add);
+        return stats;
+    }
+
+    private double measure(Supplier<List<ViewStatsDto>> query) {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            query.get();
+        }
+        long startedAt = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.get();
+        }
+        return (System.nanoTime() - startedAt) / 1_000_000.0 / ITERATIONS;
+    }
+
+    private List<ViewStatsDto> sorted(List<ViewStatsDto> stats) {
+        List<ViewStatsDto> sorted = new ArrayList<>(stats);
+        sorted.sort(Comparator.comparing(ViewStatsDto::getUri));
+        return sorted;
+    }
+}
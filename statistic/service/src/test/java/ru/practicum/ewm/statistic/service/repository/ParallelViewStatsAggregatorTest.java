@@ -0,0 +1,82 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.service.model.EndpointHit;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+@SpringBootTest(properties = {
+        "statistic-service.aggregation.engine=parallel",
+        "statistic-service.aggregation.slice-days=1"
+})
+class ParallelViewStatsAggregatorTest {
+
+    private final LocalDateTime start = LocalDateTime.of(2023, 7, 1, 6, 0);
+    private final LocalDateTime end = LocalDateTime.of(2023, 7, 10, 18, 0);
+    @Autowired
+    private StatisticServiceRepository statisticRepository;
+    @Autowired
+    private ParallelViewStatsAggregator parallelAggregator;
+
+    @BeforeEach
+    public void beforeEach() {
+        statisticRepository.deleteAll();
+        List<EndpointHit> hits = new ArrayList<>();
+        // range bounds, slice bounds and hits outside the range
+        hits.add(hit("/events/1", "1.1.1.1", start));
+        hits.add(hit("/events/1", "1.1.1.1", end));
+        hits.add(hit("/events/1", "9.9.9.9", start.minusDays(3)));
+        for (int day = 0; day < 12; day++) {
+            LocalDateTime midnight = LocalDateTime.of(2023, 7, 1, 0, 0).plusDays(day);
+            hits.add(hit("/events/1", "1.1.1." + day % 3, midnight));
+            hits.add(hit("/events/1", "2.2.2." + day, midnight.plusHours(7)));
+            hits.add(hit("/events/2", "3.3.3.3", midnight.minusSeconds(1)));
+            hits.add(hit("/events/3", "1.1.1." + day % 4, midnight.plusHours(19)));
+        }
+        statisticRepository.saveAll(hits);
+    }
+
+    @Test
+    void getViewStatsInParallelMatchesSingleQuery() {
+        assertThat(parallelAggregator.isSliced(start, end), is(true));
+
+        for (boolean unique : List.of(false, true)) {
+            assertThat(sorted(statisticRepository.getViewStats(start, end, List.of(), unique)),
+                    equalTo(sorted(streamViewStats(List.of(), unique))));
+            assertThat(sorted(statisticRepository.getViewStats(start, end, List.of("/events/1", "/events/3"), unique)),
+                    equalTo(sorted(streamViewStats(List.of("/events/1", "/events/3"), unique))));
+        }
+    }
+
+    private List<ViewStatsDto> streamViewStats(List<String> uris, boolean unique) {
+        List<ViewStatsDto> stats = new ArrayList<>();
+        statisticRepository.streamViewStats(start, end, uris, unique, stats::add);
+        return stats;
+    }
+
+    private List<ViewStatsDto> sorted(List<ViewStatsDto> stats) {
+        List<ViewStatsDto> sorted = new ArrayList<>(stats);
+        sorted.sort(Comparator.comparing(ViewStatsDto::getUri));
+        return sorted;
+    }
+
+    private EndpointHit hit(String uri, String ip, LocalDateTime timestamp) {
+        return EndpointHit.builder()
+                .app("app")
+                .uri(uri)
+                .ip(ip)
+                .timestamp(timestamp)
+                .build();
+    }
+}
@@ -0,0 +1,61 @@
+package ru.practicum.ewm.statistic.service.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RollupQueryPlannerTest {
+
+    @Test
+    void plan_whenRangeShorterThanMinute_thenOnlyRawSegment() {
+        LocalDateTime start = LocalDateTime.of(2023, 7, 1, 12, 0, 10);
+        LocalDateTime end = LocalDateTime.of(2023, 7, 1, 12, 0, 50);
+
+        List<RollupSegment> segments = RollupQueryPlanner.plan(start, end);
+
+        assertThat(segments.size(), equalTo(1));
+        assertTrue(segments.get(0).isRaw());
+        assertTrue(segments.get(0).isFromExclusive());
+    }
+
+    @Test
+    void plan_whenRangeSpansDays_thenCoarsestBucketsUsedInTheMiddle() {
+        LocalDateTime start = LocalDateTime.of(2023, 7, 1, 22, 58, 30);
+        LocalDateTime end = LocalDateTime.of(2023, 7, 4, 1, 2, 15);
+
+        List<RollupSegment> segments = RollupQueryPlanner.plan(start, end);
+
+        assertThat(segments, equalTo(List.of(
+                new RollupSegment(null, start, LocalDateTime.of(2023, 7, 1, 22, 59), true),
+                new RollupSegment(RollupGranularity.MINUTE,
+                        LocalDateTime.of(2023, 7, 1, 22, 59), LocalDateTime.of(2023, 7, 1, 23, 0), false),
+                new RollupSegment(RollupGranularity.HOUR,
+                        LocalDateTime.of(2023, 7, 1, 23, 0), LocalDateTime.of(2023, 7, 2, 0, 0), false),
+                new RollupSegment(RollupGranularity.DAY,
+                        LocalDateTime.of(2023, 7, 2, 0, 0), LocalDateTime.of(2023, 7, 4, 0, 0), false),
+                new RollupSegment(RollupGranularity.HOUR,
+                        LocalDateTime.of(2023, 7, 4, 0, 0), LocalDateTime.of(2023, 7, 4, 1, 0), false),
+                new RollupSegment(RollupGranularity.MINUTE,
+                        LocalDateTime.of(2023, 7, 4, 1, 0), LocalDateTime.of(2023, 7, 4, 1, 2), false),
+                new RollupSegment(null, LocalDateTime.of(2023, 7, 4, 1, 2), end, false)
+        )));
+    }
+
+    @Test
+    void plan_whenStartIsAligned_thenStartMinuteReadFromRawHits() {
+        LocalDateTime start = LocalDateTime.of(2023, 7, 1, 12, 0, 0);
+        LocalDateTime end = LocalDateTime.of(2023, 7, 1, 12, 5, 0);
+
+        List<RollupSegment> segments = RollupQueryPlanner.plan(start, end);
+
+        assertThat(segments, equalTo(List.of(
+                new RollupSegment(null, start, LocalDateTime.of(2023, 7, 1, 12, 1), true),
+                new RollupSegment(RollupGranularity.MINUTE, LocalDateTime.of(2023, 7, 1, 12, 1), end, false)
+        )));
+    }
+}
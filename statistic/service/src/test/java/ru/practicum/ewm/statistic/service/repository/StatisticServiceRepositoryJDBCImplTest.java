@@ -4,16 +4,28 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.practicum.ewm.statistic.dto.Formats;
+import ru.practicum.ewm.statistic.dto.ViewStatsChangeDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsChangesDto;
 import ru.practicum.ewm.statistic.dto.ViewStatsDto;
+import ru.practicum.ewm.statistic.dto.ViewStatsSeriesDto;
 import ru.practicum.ewm.statistic.service.model.EndpointHit;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
 
 @SpringBootTest
 class StatisticServiceRepositoryJDBCImplTest {
@@ -21,12 +33,50 @@ class StatisticServiceRepositoryJDBCImplTest {
     private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern(Formats.DATE_TIME_PATTERN);
     @Autowired
     private StatisticServiceRepository statisticRepository;
+    @Autowired
+    private HitRollupRepository rollupRepository;
+    @Autowired
+    private HitSketchRepository sketchRepository;
+    @Autowired
+    private HitSketchRepositoryJDBCImpl sketchRepositoryImpl;
+    @Autowired
+    private HitVisitorRepository visitorRepository;
+    @Autowired
+    private HitDictionaryRepository dictionaryRepository;
+    @Autowired
+    private HitChangeLogRepository changeLogRepository;
+    @Autowired
+    private HitCompactionRepository compactionRepository;
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private LegacyHitRepository legacyHitRepository;
+    @Autowired
+    private FlaggedHitRepository flaggedHitRepository;
 
     @BeforeEach
     public void beforeEach() {
         statisticRepository.deleteAll();
     }
 
+    @Test
+    void addFlaggedCountsHitsPerIpAndHourApartFromStats() {
+        flaggedHitRepository.deleteAll();
+        flaggedHitRepository.addFlagged(List.of(getEndpointHitWithUriAndIp("/uri", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/uri", "1.1.1.1")));
+        flaggedHitRepository.addFlagged(List.of(getEndpointHitWithUriAndIp("/uri", "1.1.1.1")));
+
+        assertThat(jdbcTemplate.queryForObject("select sum(hits) from hit_flagged", new MapSqlParameterSource(),
+                Long.class), equalTo(3L));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from hit_flagged", new MapSqlParameterSource(),
+                Long.class), equalTo(1L));
+        assertThat(statisticRepository.getViewStats(LocalDateTime.parse("2000-01-01 00:00:00", formatter),
+                LocalDateTime.parse("2100-01-01 00:00:00", formatter), List.of(), false).size(), equalTo(0));
+        flaggedHitRepository.deleteAll();
+    }
+
     @Test
     void getViewStatsWithUniqueIpHits() {
         String ip = "1.1.1.1";
@@ -101,6 +151,516 @@ class StatisticServiceRepositoryJDBCImplTest {
         assertThat(stat.get(1).getHits(), equalTo(1L));
     }
 
+    @Test
+    void saveAllPersistsEveryHitOfBatch() {
+        List<EndpointHit> batch = List.of(
+                getEndpointHitWithUriAndIp("/uri1", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/uri1", "2.2.2.2"),
+                getEndpointHitWithUriAndIp("/uri2", "1.1.1.1")
+        );
+
+        statisticRepository.saveAll(batch);
+
+        assertThat(statisticRepository.findAll().size(), equalTo(3));
+    }
+
+    @Test
+    void getViewStatsFromRollupsMatchesRawHitCount() {
+        List<LocalDateTime> timestamps = List.of(
+                LocalDateTime.parse("2023-06-30 23:59:59", formatter),
+                LocalDateTime.parse("2023-07-01 00:00:00", formatter),
+                LocalDateTime.parse("2023-07-01 10:15:30", formatter),
+                LocalDateTime.parse("2023-07-01 10:16:00", formatter),
+                LocalDateTime.parse("2023-07-02 08:00:00", formatter),
+                LocalDateTime.parse("2023-07-03 23:59:59", formatter),
+                LocalDateTime.parse("2023-07-04 00:00:01", formatter)
+        );
+        timestamps.forEach(timestamp -> {
+            EndpointHit endpointHit = getDefaultEndpointHit();
+            endpointHit.setTimestamp(timestamp);
+            statisticRepository.save(endpointHit);
+        });
+
+        for (LocalDateTime start : timestamps) {
+            for (LocalDateTime end : timestamps) {
+                if (end.isBefore(start)) {
+                    continue;
+                }
+                long expected = timestamps.stream()
+                        .filter(timestamp -> timestamp.isAfter(start) && timestamp.isBefore(end))
+                        .count();
+
+                List<ViewStatsDto> stat = statisticRepository.getViewStats(start, end, List.of("/uri"), false);
+
+                long actual = stat.isEmpty() ? 0 : stat.get(0).getHits();
+                assertThat(String.format("Hits between %s and %s", start, end), actual, equalTo(expected));
+            }
+        }
+    }
+
+    @Test
+    void getViewStatsAfterRollupsRebuiltFromRawHits() {
+        statisticRepository.save(getDefaultEndpointHit());
+        statisticRepository.save(getDefaultEndpointHit());
+        rollupRepository.rebuildFromRawHits();
+
+        List<ViewStatsDto> stat = statisticRepository.getViewStats(
+                LocalDateTime.parse("2023-01-01 00:00:00", formatter),
+                LocalDateTime.parse("2024-01-01 00:00:00", formatter),
+                List.of(),
+                false
+        );
+
+        assertThat(stat.get(0).getHits(), equalTo(2L));
+    }
+
+    @Test
+    void getApproximateUniqueViewStatsMatchesExactCountForSmallSets() {
+        List<EndpointHit> hits = List.of(
+                getEndpointHitWithUriAndIp("/uri1", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/uri1", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/uri1", "2.2.2.2"),
+                getEndpointHitWithUriAndIp("/uri2", "3.3.3.3")
+        );
+        EndpointHit edgeHit = getEndpointHitWithUriAndIp("/uri1", "4.4.4.4");
+        edgeHit.setTimestamp(LocalDateTime.parse("2023-01-01 00:00:30", formatter));
+        statisticRepository.saveAll(hits);
+        statisticRepository.save(edgeHit);
+        LocalDateTime start = LocalDateTime.parse("2023-01-01 00:00:00", formatter);
+        LocalDateTime end = LocalDateTime.parse("2024-01-01 00:00:00", formatter);
+
+        List<ViewStatsDto> approximate = sketchRepository.getApproximateUniqueViewStats(start, end, List.of());
+
+        assertThat(approximate, equalTo(statisticRepository.getViewStats(start, end, List.of(), true)));
+    }
+
+    @Test
+    void getApproximateUniqueViewStatsAfterBufferedSketchesFlushed() {
+        statisticRepository.saveAll(List.of(
+                getEndpointHitWithUriAndIp("/uri", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/uri", "2.2.2.2")
+        ));
+        statisticRepository.save(getEndpointHitWithUriAndIp("/uri", "3.3.3.3"));
+        sketchRepositoryImpl.flush();
+        statisticRepository.save(getEndpointHitWithUriAndIp("/uri", "1.1.1.1"));
+        sketchRepositoryImpl.flush();
+
+        List<ViewStatsDto> stat = sketchRepository.getApproximateUniqueViewStats(
+                LocalDateTime.parse("2023-01-01 00:00:00", formatter),
+                LocalDateTime.parse("2024-01-01 00:00:00", formatter),
+                List.of("/uri")
+        );
+
+        assertThat(stat.get(0).getHits(), equalTo(3L));
+        assertThat(jdbcTemplate.queryForObject("select count(*) from hit_unique_sketch",
+                new MapSqlParameterSource(), Integer.class), equalTo(1));
+    }
+
+    @Test
+    void getApproximateUniqueViewStatsAfterSketchesRebuiltFromRawHits() {
+        statisticRepository.save(getEndpointHitWithUriAndIp("/uri", "1.1.1.1"));
+        statisticRepository.save(getEndpointHitWithUriAndIp("/uri", "2.2.2.2"));
+        sketchRepository.rebuildFromRawHits();
+
+        List<ViewStatsDto> stat = sketchRepository.getApproximateUniqueViewStats(
+                LocalDateTime.parse("2023-01-01 00:00:00", formatter),
+                LocalDateTime.parse("2024-01-01 00:00:00", formatter),
+                List.of("/uri")
+        );
+
+        assertThat(stat.get(0).getHits(), equalTo(2L));
+    }
+
+    @Test
+    void getViewStatsResolvesDictionaryIdsAndSkipsUnknownUris() {
+        statisticRepository.saveAll(List.of(
+                getEndpointHitWithUriAndIp("/events/1", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events/2", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events/1", "2.2.2.2")
+        ));
+        LocalDateTime start = LocalDateTime.parse("2023-01-01 00:00:00", formatter);
+        LocalDateTime end = LocalDateTime.parse("2024-01-01 00:00:00", formatter);
+
+        List<ViewStatsDto> stat = statisticRepository.getViewStats(start, end,
+                List.of("/events/1", "/events/unknown"), false);
+        List<ViewStatsDto> unknown = statisticRepository.getViewStats(start, end,
+                List.of("/events/unknown"), false);
+
+        assertThat(stat, equalTo(List.of(new ViewStatsDto("app", "/events/1", 2L))));
+        assertThat(unknown.size(), equalTo(0));
+    }
+
+    @Test
+    void getViewStatsExpandsUriPrefixPattern() {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            hits.add(getEndpointHitWithUriAndIp("/events/" + i, "1.1.1.1"));
+        }
+        hits.add(getEndpointHitWithUriAndIp("/events", "1.1.1.1"));
+        hits.add(getEndpointHitWithUriAndIp("/compilations/1", "1.1.1.1"));
+        statisticRepository.saveAll(hits);
+        LocalDateTime start = LocalDateTime.parse("2023-01-01 00:00:00", formatter);
+        LocalDateTime end = LocalDateTime.parse("2024-01-01 00:00:00", formatter);
+
+        List<ViewStatsDto> events = statisticRepository.getViewStats(start, end, List.of("/events/*"), false);
+        List<ViewStatsDto> uniqueEvents = statisticRepository.getViewStats(start, end,
+                List.of("/events/*", "/compilations/1"), true);
+        List<ViewStatsDto> unknown = statisticRepository.getViewStats(start, end, List.of("/users/*"), false);
+
+        assertThat(events.size(), equalTo(5));
+        assertThat(events.stream().allMatch(stats -> stats.getUri().startsWith("/events/")), equalTo(true));
+        assertThat(uniqueEvents.size(), equalTo(6));
+        assertThat(unknown.size(), equalTo(0));
+    }
+
+    @Test
+    void streamViewStatsReturnsSameRowsAsGetViewStats() {
+        statisticRepository.saveAll(List.of(
+                getEndpointHitWithUriAndIp("/events/1", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events/2", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events/1", "2.2.2.2")
+        ));
+        LocalDateTime start = LocalDateTime.parse("2023-01-01 00:00:00", formatter);
+        LocalDateTime end = LocalDateTime.parse("2024-01-01 00:00:00", formatter);
+        List<ViewStatsDto> streamed = new ArrayList<>();
+
+        statisticRepository.streamViewStats(start, end, List.of(), false, streamed::add);
+
+        assertThat(streamed, equalTo(statisticRepository.getViewStats(start, end, List.of(), false)));
+        assertThat(streamed.size(), equalTo(2));
+    }
+
+    @Test
+    void getTopViewStatsLimitsRowsAndFiltersApp() {
+        EndpointHit otherAppHit = getEndpointHitWithUriAndIp("/events/3", "1.1.1.1");
+        otherAppHit.setApp("other-app");
+        statisticRepository.saveAll(List.of(
+                getEndpointHitWithUriAndIp("/events/1", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events/1", "2.2.2.2"),
+                getEndpointHitWithUriAndIp("/events/2", "1.1.1.1"),
+                otherAppHit,
+                otherAppHit,
+                otherAppHit
+        ));
+        LocalDateTime start = LocalDateTime.parse("2023-01-01 00:00:00", formatter);
+        LocalDateTime end = LocalDateTime.parse("2024-01-01 00:00:00", formatter);
+
+        List<ViewStatsDto> top = statisticRepository.getTopViewStats(start, end, "app", 1);
+        List<ViewStatsDto> unknownApp = statisticRepository.getTopViewStats(start, end, "unknown", 1);
+
+        assertThat(top, equalTo(List.of(new ViewStatsDto("app", "/events/1", 2L))));
+        assertThat(unknownApp.size(), equalTo(0));
+    }
+
+    @Test
+    void getViewStatsSeriesCountsHitsAndUniqueVisitorsPerBucket() {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (String time : List.of("10:15:00", "10:45:00", "12:00:00", "12:30:00")) {
+            EndpointHit endpointHit = getEndpointHitWithUriAndIp("/events/1", "1.1.1.1");
+            endpointHit.setTimestamp(LocalDateTime.parse("2023-07-01 " + time, formatter));
+            hits.add(endpointHit);
+        }
+        EndpointHit otherVisitor = getEndpointHitWithUriAndIp("/events/1", "2.2.2.2");
+        otherVisitor.setTimestamp(LocalDateTime.parse("2023-07-01 12:59:59", formatter));
+        hits.add(otherVisitor);
+        hits.add(getEndpointHitWithUriAndIp("/events/2", "1.1.1.1"));
+        statisticRepository.saveAll(hits);
+        LocalDateTime start = LocalDateTime.parse("2023-07-01 10:30:00", formatter);
+        LocalDateTime end = LocalDateTime.parse("2023-07-01 13:10:00", formatter);
+
+        ViewStatsSeriesDto unique = statisticRepository.getViewStatsSeries(start, end, "/events/1",
+                RollupGranularity.HOUR, true);
+        ViewStatsSeriesDto rolledUp = statisticRepository.getViewStatsSeries(start, end, "/events/1",
+                RollupGranularity.HOUR, false);
+
+        long firstBucket = EpochSeconds.of(LocalDateTime.parse("2023-07-01 10:00:00", formatter));
+        assertThat(unique.getTimestamps(), equalTo(List.of(firstBucket, firstBucket + 3600,
+                firstBucket + 7200, firstBucket + 10800)));
+        assertThat(unique.getHits(), equalTo(List.of(1L, 0L, 3L, 0L)));
+        assertThat(unique.getUniqueHits(), equalTo(List.of(1L, 0L, 2L, 0L)));
+        assertThat(rolledUp.getHits(), equalTo(unique.getHits()));
+        assertThat(rolledUp.getUniqueHits(), equalTo(null));
+        assertThat(rolledUp.getInterval(), equalTo("hour"));
+    }
+
+    @Test
+    void getViewStatsCountsAllTimeUniqueVisitorsFromFirstSeenCounters() {
+        EndpointHit earlyHit = getEndpointHitWithUriAndIp("/events/1", "3.3.3.3");
+        earlyHit.setTimestamp(LocalDateTime.parse("2023-01-02 00:00:00", formatter));
+        statisticRepository.saveAll(List.of(
+                getEndpointHitWithUriAndIp("/events/1", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events/1", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events/1", "2.2.2.2"),
+                earlyHit
+        ));
+        statisticRepository.save(getEndpointHitWithUriAndIp("/events/1", "2.2.2.2"));
+        statisticRepository.save(getEndpointHitWithUriAndIp("/events/2", "2.2.2.2"));
+
+        List<ViewStatsDto> allTime = statisticRepository.getViewStats(
+                LocalDateTime.parse("2000-01-01 00:00:00", formatter),
+                LocalDateTime.parse("2100-01-01 00:00:00", formatter),
+                List.of("/events/1"), true);
+        List<ViewStatsDto> bounded = statisticRepository.getViewStats(
+                LocalDateTime.parse("2023-06-01 00:00:00", formatter),
+                LocalDateTime.parse("2100-01-01 00:00:00", formatter),
+                List.of("/events/1"), true);
+
+        assertThat(allTime, equalTo(List.of(new ViewStatsDto("app", "/events/1", 3L))));
+        assertThat(bounded, equalTo(List.of(new ViewStatsDto("app", "/events/1", 2L))));
+        visitorRepository.rebuildFromRawHits();
+        assertThat(statisticRepository.getViewStats(
+                LocalDateTime.parse("2000-01-01 00:00:00", formatter),
+                LocalDateTime.parse("2100-01-01 00:00:00", formatter),
+                List.of(), true).size(), equalTo(2));
+    }
+
+    @Test
+    void migrateBatchMovesLegacyHitsIntoCurrentTable() {
+        jdbcTemplate.update("create table endpoint_hit_legacy (" +
+                "hit_id bigint generated always as identity not null, app_name varchar not null, " +
+                "app_uri varchar not null, ip varchar not null, timestamp timestamp not null)",
+                new MapSqlParameterSource());
+        String insertQuery = "insert into endpoint_hit_legacy (app_name, app_uri, ip, timestamp) " +
+                "values ('app', :uri, :ip, timestamp '2023-07-01 12:00:00')";
+        for (String[] hit : List.of(
+                new String[]{"/legacy/1", "1.1.1.1"},
+                new String[]{"/legacy/1", "not an ip"},
+                new String[]{"/legacy/2", "2.2.2.2"})) {
+            jdbcTemplate.update(insertQuery, new MapSqlParameterSource("uri", hit[0]).addValue("ip", hit[1]));
+        }
+
+        assertThat(legacyHitRepository.migrateBatch(2), equalTo(2));
+        assertThat(legacyHitRepository.migrateBatch(2), equalTo(1));
+        assertThat(legacyHitRepository.migrateBatch(2), equalTo(0));
+        legacyHitRepository.dropLegacyTable();
+        rollupRepository.rebuildFromRawHits();
+
+        List<ViewStatsDto> stat = statisticRepository.getViewStats(
+                LocalDateTime.parse("2023-01-01 00:00:00", formatter),
+                LocalDateTime.parse("2024-01-01 00:00:00", formatter),
+                List.of("/legacy/1", "/legacy/2"), false);
+        assertThat(stat, equalTo(List.of(
+                new ViewStatsDto("app", "/legacy/1", 1L),
+                new ViewStatsDto("app", "/legacy/2", 1L))));
+    }
+
+    @Test
+    void visitorTablesEmptiedAndNotKeptWhenRetentionEnabled() {
+        statisticRepository.save(getEndpointHitWithUriAndIp("/uri", "1.1.1.1"));
+        HitVisitorRepositoryJDBCImpl retained = new HitVisitorRepositoryJDBCImpl(jdbcTemplate, SqlDialect.H2, 3);
+
+        retained.clearWhenDisabled();
+        retained.addHits(List.of(getEndpointHitWithUriAndIp("/uri", "2.2.2.2")));
+
+        assertThat(visitorRepository.isEmpty(), equalTo(true));
+        assertThat(retained.isEmpty(), equalTo(false));
+        assertThat(retained.isEnabled(), equalTo(false));
+    }
+
+    @Test
+    void encodeInRolledBackTransactionDoesNotKeepUriRegistered() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.executeWithoutResult(status -> {
+            dictionaryRepository.encode(List.of(getEndpointHitWithUriAndIp("/rolled-back", "1.1.1.1")));
+            status.setRollbackOnly();
+        });
+
+        assertThat(dictionaryRepository.findUriIds(List.of("/rolled-back")), equalTo(List.of()));
+    }
+
+    @Test
+    void findEntityUriIdsResolvesIdsExtractedFromRegisteredUris() {
+        statisticRepository.saveAll(List.of(
+                getEndpointHitWithUriAndIp("/events/7", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events/8/comments", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events", "1.1.1.1")
+        ));
+
+        Map<Integer, Long> entityIdsByUriId = dictionaryRepository.findEntityUriIds(List.of(7L, 8L, 9L));
+
+        assertThat(entityIdsByUriId.size(), equalTo(1));
+        Map.Entry<Integer, Long> entry = entityIdsByUriId.entrySet().iterator().next();
+        assertThat(entry.getValue(), equalTo(7L));
+        assertThat(dictionaryRepository.getUri(entry.getKey()), equalTo("/events/7"));
+    }
+
+    @Test
+    void getUniqueEntityViewsCountsVisitorOfSeveralAppsOnce() {
+        EndpointHit otherApp = getEndpointHitWithUriAndIp("/events/7", "1.1.1.1");
+        otherApp.setApp("other-app");
+        EndpointHit laterHit = getEndpointHitWithUriAndIp("/events/7", "3.3.3.3");
+        laterHit.setTimestamp(LocalDateTime.parse("2023-07-05 12:00:00", formatter));
+        statisticRepository.saveAll(List.of(
+                getEndpointHitWithUriAndIp("/events/7", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events/7", "2.2.2.2"),
+                otherApp,
+                laterHit
+        ));
+        LocalDateTime start = LocalDateTime.parse("2023-07-01 00:00:00", formatter);
+        Map<Integer, Long> entityIdsByUriId = dictionaryRepository.findEntityUriIds(List.of(7L));
+
+        Map<Long, Long> rawViews = statisticRepository.getUniqueEntityViews(start,
+                LocalDateTime.parse("2023-07-02 00:00:00", formatter), entityIdsByUriId);
+        Map<Long, Long> allTimeViews = statisticRepository.getUniqueEntityViews(start,
+                LocalDateTime.parse("2023-07-10 00:00:00", formatter), entityIdsByUriId);
+
+        assertThat(rawViews, equalTo(Map.of(7L, 2L)));
+        assertThat(allTimeViews, equalTo(Map.of(7L, 3L)));
+    }
+
+    @Test
+    void findChangesReturnsCountersOfUrisViewedAfterCursor() {
+        statisticRepository.save(getEndpointHitWithUriAndIp("/events/1", "1.1.1.1"));
+        statisticRepository.saveAll(List.of(
+                getEndpointHitWithUriAndIp("/events/1", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events/2", "1.1.1.1")
+        ));
+
+        ViewStatsChangesDto all = changeLogRepository.findChanges(0, 100);
+        statisticRepository.save(getEndpointHitWithUriAndIp("/events/2", "2.2.2.2"));
+        ViewStatsChangesDto next = changeLogRepository.findChanges(all.getCursor(), 100);
+        int compacted = changeLogRepository.compact();
+
+        assertThat(all.getChanges(), equalTo(List.of(
+                new ViewStatsChangeDto("app", "/events/1", 2L, 1L),
+                new ViewStatsChangeDto("app", "/events/2", 1L, 1L))));
+        assertThat(next.getChanges(), equalTo(List.of(new ViewStatsChangeDto("app", "/events/2", 2L, 2L))));
+        assertThat(compacted, equalTo(2));
+        assertThat(changeLogRepository.findChanges(0, 100).getChanges().size(), equalTo(2));
+    }
+
+    @Test
+    void findChangesCountsVisitorsOfRetainedHitsWhenRetentionEnabled() {
+        HitChangeLogRepository retainedChangeLog = new HitChangeLogRepositoryJDBCImpl(jdbcTemplate,
+                dictionaryRepository, new HitVisitorRepositoryJDBCImpl(jdbcTemplate, SqlDialect.H2, 3),
+                compactionRepository, Clock.systemUTC(), 10000);
+        statisticRepository.saveAll(List.of(
+                getEndpointHitWithUriAndIp("/events/1", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events/1", "1.1.1.1"),
+                getEndpointHitWithUriAndIp("/events/1", "2.2.2.2")
+        ));
+        jdbcTemplate.update("delete from uri_visitor_count", new MapSqlParameterSource());
+
+        ViewStatsChangesDto changes = retainedChangeLog.findChanges(0, 100);
+
+        assertThat(changes.getChanges(), equalTo(List.of(new ViewStatsChangeDto("app", "/events/1", 3L, 2L))));
+    }
+
+    @Test
+    void findChangesServesEntryCommittedWithIdBelowReadCursor() {
+        statisticRepository.save(getEndpointHitWithUriAndIp("/events/1", "1.1.1.1"));
+        statisticRepository.save(getEndpointHitWithUriAndIp("/events/2", "1.1.1.1"));
+        ViewStatsChangesDto read = changeLogRepository.findChanges(0, 100);
+        Long firstChangeId = jdbcTemplate.queryForObject("select min(change_id) from hit_change_log",
+                new MapSqlParameterSource(), Long.class);
+        // a transaction that took its id before the read but committed after it
+        jdbcTemplate.update("insert into hit_change_log (change_id, app_id, uri_id, changed_at) " +
+                        "overriding system value select :changeId, app_id, uri_id, changed_at from hit_change_log " +
+                        "where change_id = :firstChangeId",
+                new MapSqlParameterSource("changeId", firstChangeId - 1).addValue("firstChangeId", firstChangeId));
+
+        ViewStatsChangesDto next = changeLogRepository.findChanges(read.getCursor(), 100);
+
+        assertThat(read.getChanges().size(), equalTo(2));
+        assertThat(next.getChanges(), equalTo(List.of(new ViewStatsChangeDto("app", "/events/1", 1L, 1L))));
+    }
+
+    @Test
+    void getViewStatsUnionsCompactedDaysWithRawHits() {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (String hit : List.of("2023-07-01 10:00:00 1.1.1.1", "2023-07-01 11:00:00 2.2.2.2",
+                "2023-07-01 12:00:00 1.1.1.1", "2023-07-02 10:00:00 1.1.1.1", "2023-07-02 23:59:59 3.3.3.3",
+                "2023-07-04 10:00:00 4.4.4.4", "2023-07-10 10:00:00 5.5.5.5")) {
+            EndpointHit endpointHit = getEndpointHitWithUriAndIp("/uri", hit.substring(20));
+            endpointHit.setTimestamp(LocalDateTime.parse(hit.substring(0, 19), formatter));
+            hits.add(endpointHit);
+        }
+        statisticRepository.saveAll(hits);
+        LocalDateTime start = LocalDateTime.parse("2023-06-30 00:00:00", formatter);
+        LocalDateTime end = LocalDateTime.parse("2023-07-05 00:00:00", formatter);
+        LocalDateTime cutoff = LocalDateTime.parse("2023-07-03 00:00:00", formatter);
+
+        int compacted = 0;
+        int batch;
+        do {
+            batch = compactionRepository.compactBatch(cutoff, 2);
+            compacted += batch;
+        } while (batch == 2);
+
+        assertThat(compacted, equalTo(5));
+        assertThat(statisticRepository.findAll().size(), equalTo(2));
+        assertThat(compactionRepository.findHorizon().orElseThrow(), equalTo(cutoff));
+        assertThat(statisticRepository.getViewStats(start, end, List.of("/uri"), false).get(0).getHits(),
+                equalTo(6L));
+        assertThat(statisticRepository.getViewStats(start, end, List.of(), true).get(0).getHits(), equalTo(4L));
+        assertThat(statisticRepository.getViewStats(start, LocalDateTime.parse("2023-07-02 00:00:00", formatter),
+                List.of(), false).get(0).getHits(), equalTo(3L));
+        assertThat(statisticRepository.getViewStats(cutoff, end, List.of(), false).get(0).getHits(), equalTo(1L));
+    }
+
+    @Test
+    void getViewStatsCountsRawHitsLeftBelowCompactionHorizon() {
+        List<EndpointHit> hits = new ArrayList<>();
+        for (String hit : List.of("2023-07-01 12:00:00 3.3.3.3", "2023-07-01 10:00:00 1.1.1.1",
+                "2023-07-01 11:00:00 2.2.2.2", "2023-07-02 10:00:00 4.4.4.4", "2023-07-10 10:00:00 9.9.9.9")) {
+            EndpointHit endpointHit = getEndpointHitWithUriAndIp("/uri", hit.substring(20));
+            endpointHit.setTimestamp(LocalDateTime.parse(hit.substring(0, 19), formatter));
+            hits.add(endpointHit);
+        }
+        statisticRepository.saveAll(hits);
+        LocalDateTime start = LocalDateTime.parse("2023-06-30 00:00:00", formatter);
+        LocalDateTime end = LocalDateTime.parse("2023-07-05 00:00:00", formatter);
+
+        int compacted = compactionRepository.compactBatch(LocalDateTime.parse("2023-07-03 00:00:00", formatter), 2);
+        EndpointHit lateHit = getEndpointHitWithUriAndIp("/uri", "5.5.5.5");
+        lateHit.setTimestamp(LocalDateTime.parse("2023-07-01 13:00:00", formatter));
+        statisticRepository.save(lateHit);
+
+        assertThat(compacted, equalTo(2));
+        assertThat(compactionRepository.findHorizon().orElseThrow(),
+                equalTo(LocalDateTime.parse("2023-07-02 00:00:00", formatter)));
+        assertThat(statisticRepository.findAll().stream().map(EndpointHit::getIp).sorted().collect(Collectors.toList()),
+                equalTo(List.of("3.3.3.3", "4.4.4.4", "5.5.5.5", "9.9.9.9")));
+        assertThat(statisticRepository.getViewStats(start, end, List.of("/uri"), false).get(0).getHits(),
+                equalTo(5L));
+        assertThat(statisticRepository.getViewStats(start, end, List.of("/uri"), true).get(0).getHits(),
+                equalTo(5L));
+        ViewStatsDto partialDay = statisticRepository.getViewStats(
+                LocalDateTime.parse("2023-07-01 10:30:00", formatter),
+                LocalDateTime.parse("2023-07-01 23:00:00", formatter), List.of("/uri"), false).get(0);
+        assertThat(partialDay.getHits(), equalTo(3L));
+        assertThat(partialDay.getApproximate(), equalTo(true));
+        assertThat(statisticRepository.getViewStats(LocalDateTime.parse("2023-07-02 00:00:00", formatter), end,
+                List.of("/uri"), false).get(0).getApproximate(), nullValue());
+    }
+
+    @Test
+    void getViewStatsBindsLongUriListsAsArrays() {
+        List<EndpointHit> hits = new ArrayList<>();
+        List<String> uris = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            // every other uri, so the ids don't collapse into ranges
+            if (i % 2 == 0) {
+                hits.add(getEndpointHitWithUriAndIp("/pages/" + i, "1.1.1.1"));
+            }
+            uris.add("/pages/" + i);
+        }
+        statisticRepository.saveAll(hits);
+        hits.forEach(hit -> statisticRepository.save(getEndpointHitWithUriAndIp("/other" + hit.getUri(), "2.2.2.2")));
+        List<String> requested = new ArrayList<>(uris);
+        requested.add("/unknown");
+
+        List<ViewStatsDto> stats = statisticRepository.getViewStats(
+                LocalDateTime.parse("2023-01-01 00:00:00", formatter),
+                LocalDateTime.parse("2024-01-01 00:00:00", formatter),
+                requested,
+                false
+        );
+
+        assertThat(stats.size(), equalTo(50));
+        assertThat(stats.stream().allMatch(stat -> stat.getUri().startsWith("/pages/")), equalTo(true));
+    }
+
     private EndpointHit getEndpointHitWithUriAndIp(String uri, String ip) {
         LocalDateTime timestamp = LocalDateTime.parse("2023-07-01 12:00:00", formatter);
         return EndpointHit.builder()
@@ -0,0 +1,67 @@
+package ru.practicum.ewm.statistic.service.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimate_whenLargeCardinality_thenWithinThreeStandardErrors() {
+        HyperLogLog sketch = new HyperLogLog();
+        int distinct = 200_000;
+        for (int i = 0; i < distinct; i++) {
+            sketch.add(HyperLogLog.hash("10." + (i >> 16) + "." + ((i >> 8) & 0xff) + "." + (i & 0xff)));
+        }
+
+        double relativeError = Math.abs(sketch.estimate() - distinct) / (double) distinct;
+
+        assertThat(relativeError, lessThan(3 * 1.04 / Math.sqrt(1 << HyperLogLog.DEFAULT_PRECISION)));
+    }
+
+    @Test
+    void estimate_whenDuplicatesAdded_thenCountedOnce() {
+        HyperLogLog sketch = new HyperLogLog();
+
+        for (int i = 0; i < 1000; i++) {
+            sketch.add(HyperLogLog.hash("1.1.1." + (i % 10)));
+        }
+
+        assertThat(sketch.estimate(), equalTo(10L));
+    }
+
+    @Test
+    void merge_whenSketchesOverlap_thenUnionEstimated() {
+        HyperLogLog first = new HyperLogLog();
+        HyperLogLog second = new HyperLogLog();
+        for (int i = 0; i < 3000; i++) {
+            first.add(HyperLogLog.hash("ip" + i));
+            second.add(HyperLogLog.hash("ip" + (i + 1500)));
+        }
+
+        first.merge(second);
+
+        assertThat((double) first.estimate(), closeTo(4500, 4500 * 0.05));
+    }
+
+    @Test
+    void fromBytes_whenSparseOrDense_thenRegistersRestored() {
+        HyperLogLog sparse = new HyperLogLog();
+        HyperLogLog dense = new HyperLogLog();
+        for (int i = 0; i < 50_000; i++) {
+            if (i < 5) {
+                sparse.add(HyperLogLog.hash("ip" + i));
+            }
+            dense.add(HyperLogLog.hash("ip" + i));
+        }
+
+        byte[] sparseBytes = sparse.toBytes();
+
+        assertThat(sparseBytes.length, lessThan(32));
+        assertThat(HyperLogLog.fromBytes(sparseBytes).estimate(), equalTo(sparse.estimate()));
+        assertThat(HyperLogLog.fromBytes(dense.toBytes()).estimate(), equalTo(dense.estimate()));
+    }
+}